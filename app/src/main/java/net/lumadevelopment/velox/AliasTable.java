@@ -0,0 +1,113 @@
+package net.lumadevelopment.velox;
+
+import java.util.SplittableRandom;
+
+/**
+ * Samples from a fixed discrete distribution in O(1) per draw using
+ * Walker's alias method (Vose's construction). Building the table is
+ * O(n), so build it once (ex. when a ProblemGenerator is created for
+ * a game) and sample as often as needed.
+ */
+public class AliasTable {
+
+    /**
+     * Chance of keeping column i rather than taking alias[i].
+     */
+    private final double[] probability;
+    private final int[] alias;
+
+    /**
+     * @param weights Relative weight of each outcome. Must be
+     *                non-negative with a positive sum.
+     */
+    public AliasTable(double[] weights) {
+
+        int n = weights.length;
+        double sum = 0;
+
+        for (double weight : weights) {
+
+            if (weight < 0 || Double.isNaN(weight) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Weights must be finite and non-negative");
+            }
+
+            sum += weight;
+
+        }
+
+        if (n == 0 || sum <= 0) {
+            throw new IllegalArgumentException("Weights must have a positive sum");
+        }
+
+        this.probability = new double[n];
+        this.alias = new int[n];
+
+        // Scale so the average column holds exactly 1
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+
+        for (int i = 0; i < n; i++) {
+
+            scaled[i] = weights[i] * n / sum;
+
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+
+        }
+
+        // Fill each under-full column with the remainder of an over-full one
+        while (smallCount > 0 && largeCount > 0) {
+
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+
+            probability[less] = scaled[less];
+            alias[less] = more;
+
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+
+        }
+
+        // Whatever is left is full, up to floating point error
+        while (largeCount > 0) {
+            int i = large[--largeCount];
+            probability[i] = 1;
+            alias[i] = i;
+        }
+
+        while (smallCount > 0) {
+            int i = small[--smallCount];
+            probability[i] = 1;
+            alias[i] = i;
+        }
+
+    }
+
+    public int size() {
+        return probability.length;
+    }
+
+    /**
+     * @param random Source of randomness
+     * @return An outcome index, drawn with probability proportional to its weight.
+     */
+    public int sample(SplittableRandom random) {
+
+        int column = random.nextInt(probability.length);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+
+    }
+
+}
@@ -0,0 +1,270 @@
+package net.lumadevelopment.velox;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTrack;
+import android.os.Build;
+import android.os.VibrationEffect;
+import android.os.Vibrator;
+import android.os.VibratorManager;
+import android.util.Log;
+
+/**
+ * Tells the player right away whether an answer was right: a short
+ * tone and a haptic pulse, fired straight from answer checking rather
+ * than waiting for the next tick to repaint the screen.
+ *
+ * Everything is prepared up front. The tones are synthesized into
+ * static AudioTracks and the vibration effects are built once, so
+ * play() does no decoding and no allocation. Create it off the UI
+ * thread (Game does in init()) and release() it when the game ends.
+ */
+public class AnswerFeedback {
+
+    public static final String LOG_TAG = AnswerFeedback.class.getSimpleName();
+
+    private static final int SAMPLE_RATE = 44100;
+    private static final int FADE_MS = 5;
+
+    // Short and quiet, so the recognizer doesn't mistake them for speech
+    private static final double AMPLITUDE = 0.25;
+    private static final int CORRECT_TONE_HZ = 880;
+    private static final int CORRECT_TONE_MS = 60;
+    private static final int INCORRECT_TONE_HZ = 220;
+    private static final int INCORRECT_TONE_MS = 120;
+
+    private static final long CORRECT_VIBRATION_MS = 20;
+    private static final long INCORRECT_VIBRATION_MS = 60;
+
+    // Null when sounds are off or the track couldn't be created
+    private final AudioTrack correctTrack;
+    private final AudioTrack incorrectTrack;
+
+    // Null when haptics are off or there's no vibrator
+    private final Vibrator vibrator;
+
+    // Only set on API 26+, older versions vibrate for a duration
+    private final VibrationEffect correctEffect;
+    private final VibrationEffect incorrectEffect;
+
+    // Time from the answer being judged until both channels have been
+    // told to play, in ns. Doesn't include the audio output latency.
+    private int count;
+    private long totalLatencyNs;
+    private long maxLatencyNs;
+
+    private boolean released;
+
+    public AnswerFeedback(Context context) {
+
+        if (Config.FEEDBACK_SOUNDS) {
+            this.correctTrack = createTrack(tone(CORRECT_TONE_HZ, CORRECT_TONE_MS));
+            this.incorrectTrack = createTrack(tone(INCORRECT_TONE_HZ, INCORRECT_TONE_MS));
+        } else {
+            this.correctTrack = null;
+            this.incorrectTrack = null;
+        }
+
+        Vibrator vibrator = null;
+
+        if (Config.FEEDBACK_HAPTICS) {
+
+            vibrator = defaultVibrator(context);
+
+            if (vibrator != null && !vibrator.hasVibrator()) {
+                vibrator = null;
+            }
+
+        }
+
+        this.vibrator = vibrator;
+
+        if (vibrator != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            this.correctEffect = VibrationEffect.createOneShot(CORRECT_VIBRATION_MS, VibrationEffect.DEFAULT_AMPLITUDE);
+            this.incorrectEffect = VibrationEffect.createOneShot(INCORRECT_VIBRATION_MS, VibrationEffect.DEFAULT_AMPLITUDE);
+        } else {
+            this.correctEffect = null;
+            this.incorrectEffect = null;
+        }
+
+        Log.d(LOG_TAG, LOG_TAG + " ready, sounds: " + (correctTrack != null && incorrectTrack != null)
+                + ", haptics: " + (vibrator != null));
+
+    }
+
+    /**
+     * @return The device's main vibrator, or null if there isn't one.
+     * API 31 moved vibrators under VibratorManager.
+     */
+    private static Vibrator defaultVibrator(Context context) {
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+
+            VibratorManager manager = context.getSystemService(VibratorManager.class);
+            return manager == null ? null : manager.getDefaultVibrator();
+
+        }
+
+        return context.getSystemService(Vibrator.class);
+
+    }
+
+    /**
+     * A sine tone with short fades at each end so it doesn't click.
+     * @param frequencyHz Pitch of the tone
+     * @param durationMs Length of the tone
+     * @return 16 bit mono PCM at SAMPLE_RATE
+     */
+    static short[] tone(int frequencyHz, int durationMs) {
+
+        int samples = SAMPLE_RATE * durationMs / 1000;
+        int fadeSamples = Math.min(SAMPLE_RATE * FADE_MS / 1000, samples / 2);
+        short[] pcm = new short[samples];
+
+        for (int i = 0; i < samples; i++) {
+
+            double envelope = 1;
+
+            if (i < fadeSamples) {
+                envelope = (double) i / fadeSamples;
+            } else if (i >= samples - fadeSamples) {
+                envelope = (double) (samples - 1 - i) / fadeSamples;
+            }
+
+            double sample = Math.sin(2 * Math.PI * frequencyHz * i / SAMPLE_RATE);
+            pcm[i] = (short) (sample * envelope * AMPLITUDE * Short.MAX_VALUE);
+
+        }
+
+        return pcm;
+
+    }
+
+    /**
+     * @param pcm 16 bit mono PCM at SAMPLE_RATE
+     * @return A static AudioTrack holding pcm, or null if it couldn't be created.
+     */
+    private static AudioTrack createTrack(short[] pcm) {
+
+        try {
+
+            AudioTrack.Builder builder = new AudioTrack.Builder()
+                    .setAudioAttributes(new AudioAttributes.Builder()
+                            .setUsage(AudioAttributes.USAGE_GAME)
+                            .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                            .build())
+                    .setAudioFormat(new AudioFormat.Builder()
+                            .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                            .setSampleRate(SAMPLE_RATE)
+                            .setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+                            .build())
+                    .setTransferMode(AudioTrack.MODE_STATIC)
+                    .setBufferSizeInBytes(pcm.length * 2);
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                builder.setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY);
+            }
+
+            AudioTrack track = builder.build();
+            track.write(pcm, 0, pcm.length);
+
+            if (track.getState() != AudioTrack.STATE_INITIALIZED) {
+
+                Log.e(LOG_TAG, "Feedback AudioTrack didn't initialize, playing without it.");
+                track.release();
+                return null;
+
+            }
+
+            return track;
+
+        } catch (RuntimeException e) {
+
+            Log.e(LOG_TAG, "Couldn't create feedback AudioTrack, playing without it.", e);
+            return null;
+
+        }
+
+    }
+
+    /**
+     * Plays the tone and pulse for a judged answer.
+     * @param correct Whether the answer was right
+     * @param judgedAtNs System.nanoTime() when the answer was judged
+     */
+    @SuppressWarnings("deprecation")
+    public synchronized void play(boolean correct, long judgedAtNs) {
+
+        if (released) {
+            return;
+        }
+
+        Tracer.begin(Tracer.ANSWER_FEEDBACK);
+
+        AudioTrack track = correct ? correctTrack : incorrectTrack;
+
+        if (track != null) {
+
+            // A static track has to be rewound before it plays again,
+            // and stopped first if the last answer's tone is still going
+            track.stop();
+            track.reloadStaticData();
+            track.play();
+
+        }
+
+        if (vibrator != null) {
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                vibrator.vibrate(correct ? correctEffect : incorrectEffect);
+            } else {
+                vibrator.vibrate(correct ? CORRECT_VIBRATION_MS : INCORRECT_VIBRATION_MS);
+            }
+
+        }
+
+        long latencyNs = System.nanoTime() - judgedAtNs;
+        count++;
+        totalLatencyNs += latencyNs;
+        maxLatencyNs = Math.max(maxLatencyNs, latencyNs);
+
+        Tracer.end(Tracer.ANSWER_FEEDBACK);
+
+    }
+
+    /**
+     * @return Feedback count and latency, for the log.
+     */
+    public synchronized String summary() {
+
+        double averageMs = count == 0 ? 0 : totalLatencyNs / (count * 1e6);
+
+        return "Feedback played: " + count
+                + ", average latency: " + ((int) (averageMs * 100)) / 100.0 + "ms"
+                + ", max latency: " + ((int) (maxLatencyNs / 1e4)) / 100.0 + "ms";
+
+    }
+
+    /**
+     * Frees the audio tracks. Later play() calls do nothing.
+     */
+    public synchronized void release() {
+
+        released = true;
+
+        if (correctTrack != null) {
+            correctTrack.release();
+        }
+
+        if (incorrectTrack != null) {
+            incorrectTrack.release();
+        }
+
+        if (vibrator != null) {
+            vibrator.cancel();
+        }
+
+    }
+
+}
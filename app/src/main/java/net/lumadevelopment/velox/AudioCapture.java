@@ -0,0 +1,224 @@
+package net.lumadevelopment.velox;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Keeps the last few seconds of the audio the recognizer heard, so a
+ * misrecognized answer can be saved and listened to. See
+ * Config.AUDIO_CAPTURE.
+ *
+ * The audio is kept in a direct ByteBuffer used as a ring, allocated
+ * once, so copying in each onBufferReceived() chunk allocates nothing
+ * and the audio stays out of the Java heap the GC has to walk.
+ *
+ * The recognizer hands over raw PCM, which in practice is 16 bit
+ * mono at 16 kHz, but the API doesn't promise it (and plenty of
+ * recognizers never call onBufferReceived() at all, in which case
+ * nothing is captured). The WAV files assume that format.
+ *
+ * Not thread safe, SpeechManager only uses it on the main thread.
+ */
+public class AudioCapture {
+
+    public static final String LOG_TAG = AudioCapture.class.getSimpleName();
+
+    // Format of onBufferReceived() audio
+    public static final int SAMPLE_RATE = 16_000;
+    public static final int BITS_PER_SAMPLE = 16;
+    public static final int CHANNELS = 1;
+    public static final int BYTES_PER_FRAME = CHANNELS * BITS_PER_SAMPLE / 8;
+    public static final int BYTES_PER_SECOND = SAMPLE_RATE * BYTES_PER_FRAME;
+
+    private static final int WAV_HEADER_BYTES = 44;
+
+    private final ByteBuffer ring;
+
+    /**
+     * The ring as a plain Buffer, to move its position through. Built
+     * with JDK 9+, ringBuffer.position() links to ByteBuffer's override,
+     * which Android only has from API 29.
+     */
+    private final Buffer ringBuffer;
+
+    /**
+     * Bytes written since the capture started. The oldest byte still
+     * held is at (totalBytes - size()) % capacity.
+     */
+    private long totalBytes;
+
+    /**
+     * @param capacityBytes How much audio to keep, rounded down to
+     *                      whole frames
+     */
+    public AudioCapture(int capacityBytes) {
+
+        int capacity = capacityBytes - capacityBytes % BYTES_PER_FRAME;
+
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be at least one frame, got " + capacityBytes);
+        }
+
+        this.ring = ByteBuffer.allocateDirect(capacity);
+        this.ringBuffer = ring;
+
+    }
+
+    /**
+     * @return A capture holding the last Config.AUDIO_CAPTURE_SECONDS.
+     */
+    public static AudioCapture forConfig() {
+        return new AudioCapture(Config.AUDIO_CAPTURE_SECONDS * BYTES_PER_SECOND);
+    }
+
+    public int capacity() {
+        return ring.capacity();
+    }
+
+    /**
+     * @return How many bytes are held, at most capacity().
+     */
+    public int size() {
+        return (int) Math.min(totalBytes, ring.capacity());
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Copies a chunk of audio in, overwriting the oldest if the ring
+     * is full.
+     */
+    public void write(byte[] bytes) {
+
+        int capacity = ring.capacity();
+        int offset = 0;
+        int length = bytes.length;
+
+        // Only the end of a chunk longer than the ring survives
+        if (length > capacity) {
+            offset = length - capacity;
+            length = capacity;
+        }
+
+        int start = (int) ((totalBytes + offset) % capacity);
+        int first = Math.min(length, capacity - start);
+
+        ringBuffer.position(start);
+        ring.put(bytes, offset, first);
+
+        if (first < length) {
+            ringBuffer.position(0);
+            ring.put(bytes, offset + first, length - first);
+        }
+
+        totalBytes += bytes.length;
+
+    }
+
+    /**
+     * @return A copy of everything held, oldest first, trimmed to
+     * whole frames.
+     */
+    public byte[] snapshot() {
+
+        int capacity = ring.capacity();
+        int size = size();
+        size -= size % BYTES_PER_FRAME;
+
+        byte[] copy = new byte[size];
+        int start = (int) ((totalBytes - size) % capacity);
+        int first = Math.min(size, capacity - start);
+
+        ringBuffer.position(start);
+        ring.get(copy, 0, first);
+
+        if (first < size) {
+            ringBuffer.position(0);
+            ring.get(copy, first, size - first);
+        }
+
+        return copy;
+
+    }
+
+    /**
+     * Writes PCM audio as a WAV file, in the format described above.
+     */
+    public static void writeWav(OutputStream out, byte[] pcm) throws IOException {
+
+        ByteBuffer header = ByteBuffer.allocate(WAV_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        header.put("RIFF".getBytes(StandardCharsets.US_ASCII));
+        header.putInt(WAV_HEADER_BYTES - 8 + pcm.length);
+        header.put("WAVE".getBytes(StandardCharsets.US_ASCII));
+
+        header.put("fmt ".getBytes(StandardCharsets.US_ASCII));
+        header.putInt(16); // fmt chunk size
+        header.putShort((short) 1); // PCM
+        header.putShort((short) CHANNELS);
+        header.putInt(SAMPLE_RATE);
+        header.putInt(BYTES_PER_SECOND);
+        header.putShort((short) BYTES_PER_FRAME);
+        header.putShort((short) BITS_PER_SAMPLE);
+
+        header.put("data".getBytes(StandardCharsets.US_ASCII));
+        header.putInt(pcm.length);
+
+        out.write(header.array());
+        out.write(pcm);
+
+    }
+
+    /**
+     * Saves audio as name.wav, with notes on what was heard as
+     * name.txt next to it. Disk I/O, keep it off the UI thread.
+     */
+    public static void save(File directory, String name, byte[] pcm, String notes) {
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+
+            Log.e(LOG_TAG, "Couldn't create " + directory);
+            return;
+
+        }
+
+        File wavFile = new File(directory, name + ".wav");
+        File notesFile = new File(directory, name + ".txt");
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(wavFile))) {
+
+            writeWav(out, pcm);
+
+        } catch (IOException e) {
+
+            Log.e(LOG_TAG, "Failed to save audio to " + wavFile, e);
+            return;
+
+        }
+
+        try (OutputStream out = new FileOutputStream(notesFile)) {
+
+            out.write(notes.getBytes(StandardCharsets.UTF_8));
+
+        } catch (IOException e) {
+
+            Log.e(LOG_TAG, "Failed to save notes to " + notesFile, e);
+
+        }
+
+        Log.d(LOG_TAG, "Saved " + pcm.length * 1000L / BYTES_PER_SECOND + " ms of audio to " + wavFile);
+
+    }
+
+}
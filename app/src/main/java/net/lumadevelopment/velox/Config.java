@@ -10,10 +10,29 @@ public class Config {
     public static final int TIME_PER_PROBLEM_IN_MS = 3000; // the amount of time available to complete each problem
     public static final long TICKS_PER_SECOND = 30; // how many times Game.update() is called per second
     public static final int COUNTDOWN_TIME_IN_SECONDS = 5; // how long the countdown screen will display before the game starts
+    private static final double[] OPERATION_WEIGHTS = {1, 1, 1, 1}; // relative weight of addition, subtraction, division, multiplication
+    public static final boolean ADAPTIVE_OPERATION_WEIGHTS = false; // whether operations the player struggles with come up more often
+    public static final double ADAPTIVE_EWMA_ALPHA = 0.2; // how quickly adaptive weights react to each answer (0 - 1)
+    public static final double ADAPTIVE_GAIN = 1.0; // how strongly adaptive weights favour difficult operations
+    public static final int MAX_ANSWER_LOOKAHEAD = 2; // how many extra numbers in one utterance can carry over to the following problems
+    public static final int ANSWER_GRACE_MS = 750; // how long a problem stays open past its deadline for answers spoken in time that the recognizer hasn't returned yet
+    public static final boolean FEEDBACK_SOUNDS = true; // whether a tone plays as soon as an answer is judged right or wrong
+    public static final boolean FEEDBACK_HAPTICS = true; // whether the phone vibrates as soon as an answer is judged right or wrong
+    public static final boolean PRACTICE_MODE = false; // whether games are drawn from every fact by spaced repetition, favouring the ones the player gets wrong, rather than at random
+    public static final boolean EYES_FREE = false; // whether each problem is read aloud as it comes up
+    public static final int NARRATION_CLIP_BYTES = 64 * 1024; // roughly how big one synthesized problem clip is (about 1.5 s of 16 bit mono at 22-24 kHz), the narration cache gets this much per problem at MAX_NUMBER
+    public static final long NARRATION_CACHE_MAX_BYTES = 128 * 1024 * 1024; // the most disk the synthesized problem clips can take up, however many problems there are, before the least recently used are deleted
+    public static final int NARRATION_ECHO_GUARD_MS = 250; // how long after a problem is read aloud the recognizer keeps ignoring what it hears
 
     // UI Text variables
     public static final String GAME_TIME_TEXT_PREFIX = "Game Time: ";
     public static final String SCORE_TEXT_PREFIX = "Score: ";
+    public static final String READINESS_WAITING_PREFIX = "Waiting on: ";
+    public static final String READINESS_READY_TEXT = "Ready!";
+    public static final String READINESS_FAILED_PREFIX = "Couldn't start: ";
+    public static final String STARTUP_FAILED_TITLE = "Couldn't Start the Game";
+    public static final String STARTUP_FAILED_MSG = "Something the game needs didn't get ready: ";
+    public static final String[] SPOKEN_OPERATION_WORDS = {"plus", "minus", "divided by", "times"}; // how addition, subtraction, division and multiplication are read aloud in eyes-free mode
 
     // Permission text variables
     public static final String PERMISSION_REQUEST_TITLE = "Microphone Permissions";
@@ -28,5 +47,29 @@ public class Config {
 
     // Speech Recognition Settings
     public static final Locale LOCALE = Locale.US;
+    public static final int MAX_RECOGNITION_RESULTS = 3; // how many alternative transcriptions (N-best) to ask the recognizer for
+    public static final float MIN_ALTERNATIVE_CONFIDENCE = 0.4f; // how confident the recognizer must be in a lower ranked transcription to take it because it matches the solution
+    public static final int PREDICTION_CACHE_SIZE = 64; // how many distinct transcriptions the parse results are remembered for
+    public static final boolean SPEECH_BIASING = true; // whether the recognizer is steered toward the numbers up to MAX_NUMBER (Android 13+)
+    public static final int BIASING_NEIGHBOURS = 2; // how many numbers either side of the current solution are put first in the biasing strings
+    public static final boolean AUDIO_CAPTURE = false; // whether the recognizer's audio is kept, and saved with the predictions when a problem times out after something unparseable was heard
+    public static final int AUDIO_CAPTURE_SECONDS = 10; // how much of the most recent audio is kept and saved
+    public static final int RECOGNIZER_READY_TIMEOUT_MS = 10_000; // how long the recognizer gets to become ready during the countdown before the game gives up on starting
+
+    // Diagnostics
+    public static final boolean TRACING_ENABLED = false; // whether Tracer records events from launch, debug builds can also turn it on or off by long pressing the main screen's title
+    public static final int TRACE_BUFFER_EVENTS = 8192; // how many trace events are kept before the oldest are overwritten
+    public static final int PERF_OVERLAY_REFRESH_MS = 500; // how often the debug performance overlay redraws while it's shown
+    public static final boolean METRICS_HTTP = true; // whether debug builds serve metrics at http://127.0.0.1:METRICS_HTTP_PORT/metrics, release builds never do
+    public static final int METRICS_HTTP_PORT = 9464; // loopback port for the debug metrics endpoint
+    public static final int LAUNCH_TIMINGS_KEPT = 100; // how many launches files/launch_timings.csv keeps the startup timings of, oldest dropped first
+
+    /**
+     * @return OPERATION_WEIGHTS, copied so no caller can change them
+     * for everyone else.
+     */
+    public static double[] operationWeights() {
+        return OPERATION_WEIGHTS.clone();
+    }
 
 }
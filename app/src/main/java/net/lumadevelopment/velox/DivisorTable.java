@@ -0,0 +1,167 @@
+package net.lumadevelopment.velox;
+
+/**
+ * The composite numbers up to a max number, and the divisors of each
+ * other than 1 and itself, for ProblemGenerator's division problems.
+ * Built once per max number and shared, so picking a division problem
+ * is two array reads with nothing allocated, even for max numbers in
+ * the millions.
+ *
+ * Composites come from a smallest prime factor sieve, which runs in
+ * O(n). Divisors are stored CSR style, every number's divisors one
+ * after another in one flat array with offsets into it, filled by
+ * walking the multiples of each divisor in O(n log n). Both lists are
+ * in ascending order, like the ArrayLists ProblemGenerator used to
+ * build, so a seed picks the same problems it always has.
+ *
+ * Immutable, so thread safe.
+ */
+public class DivisorTable {
+
+    /**
+     * The most recently built table. Generators for the same max
+     * number (normally every game in a session) share it.
+     */
+    private static volatile DivisorTable shared;
+
+    private final int maxNumber;
+
+    /**
+     * Every composite number from 4 to maxNumber, ascending.
+     */
+    private final int[] composites;
+
+    /**
+     * The divisors of number n are divisors[offsets[n]] up to (but
+     * not including) divisors[offsets[n + 1]], ascending. Empty for
+     * primes, 0 and 1.
+     */
+    private final int[] offsets;
+    private final int[] divisors;
+
+    public DivisorTable(int maxNumber) {
+
+        if (maxNumber < 0) {
+            throw new IllegalArgumentException("Max number can't be negative, got " + maxNumber);
+        }
+
+        this.maxNumber = maxNumber;
+
+        // Linear sieve: every composite is crossed off exactly once,
+        // by its smallest prime factor
+        int[] smallestPrimeFactors = new int[maxNumber + 1];
+        int[] primes = new int[Math.max(16, maxNumber / 2)];
+        int primeCount = 0;
+        int compositeCount = 0;
+
+        for (int n = 2; n <= maxNumber; n++) {
+
+            if (smallestPrimeFactors[n] == 0) {
+                smallestPrimeFactors[n] = n;
+                primes[primeCount++] = n;
+            }
+
+            for (int i = 0; i < primeCount; i++) {
+
+                int prime = primes[i];
+
+                if (prime > smallestPrimeFactors[n] || (long) prime * n > maxNumber) {
+                    break;
+                }
+
+                smallestPrimeFactors[prime * n] = prime;
+                compositeCount++;
+
+            }
+
+        }
+
+        this.composites = new int[compositeCount];
+
+        for (int n = 4, i = 0; n <= maxNumber; n++) {
+            if (smallestPrimeFactors[n] != n) {
+                composites[i++] = n;
+            }
+        }
+
+        // Count every number's divisors, then fill them in, smallest
+        // divisor first so each number's run comes out sorted
+        this.offsets = new int[maxNumber + 2];
+
+        for (int divisor = 2; divisor <= maxNumber / 2; divisor++) {
+            for (int multiple = 2 * divisor; multiple <= maxNumber; multiple += divisor) {
+                offsets[multiple + 1]++;
+            }
+        }
+
+        for (int n = 0; n <= maxNumber; n++) {
+            offsets[n + 1] += offsets[n];
+        }
+
+        this.divisors = new int[offsets[maxNumber + 1]];
+        int[] next = new int[maxNumber + 1];
+        System.arraycopy(offsets, 0, next, 0, maxNumber + 1);
+
+        for (int divisor = 2; divisor <= maxNumber / 2; divisor++) {
+            for (int multiple = 2 * divisor; multiple <= maxNumber; multiple += divisor) {
+                divisors[next[multiple]++] = divisor;
+            }
+        }
+
+    }
+
+    /**
+     * @return The table for maxNumber, built now if the last one
+     * built was for a different max number.
+     */
+    public static DivisorTable forMaxNumber(int maxNumber) {
+
+        DivisorTable table = shared;
+
+        if (table == null || table.maxNumber != maxNumber) {
+            table = new DivisorTable(maxNumber);
+            shared = table;
+        }
+
+        return table;
+
+    }
+
+    public int getMaxNumber() {
+        return maxNumber;
+    }
+
+    public int getCompositeCount() {
+        return composites.length;
+    }
+
+    /**
+     * @return The index-th composite number, ascending from 4.
+     */
+    public int getComposite(int index) {
+        return composites[index];
+    }
+
+    /**
+     * @return How many divisors other than 1 and itself number has.
+     */
+    public int getDivisorCount(int number) {
+        return offsets[number + 1] - offsets[number];
+    }
+
+    /**
+     * @return The index-th divisor of number, ascending from its
+     * smallest other than 1.
+     */
+    public int getDivisor(int number, int index) {
+        return divisors[offsets[number] + index];
+    }
+
+    /**
+     * @return Roughly how much memory the table holds on to.
+     */
+    public long sizeInBytes() {
+        return 4L * (composites.length + offsets.length + divisors.length);
+    }
+
+}
@@ -0,0 +1,184 @@
+package net.lumadevelopment.velox;
+
+/**
+ * Every distinct problem ProblemGenerator can produce for a max
+ * number, each with a stable id from 0 to size() - 1. Ids are
+ * assigned in a fixed order (additions, subtractions, divisions,
+ * multiplications, each by operand), so they stay the same across
+ * sessions as long as the max number does.
+ *
+ * Stored as one packed int per fact (operandOne << 16 | operandTwo),
+ * about 4 bytes a fact, so even the million or so facts of a max
+ * number of 1000 fit comfortably.
+ */
+public class FactUniverse {
+
+    /**
+     * Operands are packed into 16 bits each.
+     */
+    public static final int MAX_SUPPORTED_NUMBER = 0xFFFF;
+
+    private final int maxNumber;
+
+    /**
+     * operationStarts[op] is the id of the first fact of that
+     * operation, operationStarts[NUM_OF_OPERATIONS] is size().
+     */
+    private final int[] operationStarts;
+
+    private final int[] packedOperands;
+
+    public FactUniverse(int maxNumber) {
+
+        if (maxNumber < 4 || maxNumber > MAX_SUPPORTED_NUMBER) {
+            throw new IllegalArgumentException("Max number must be between 4 and " + MAX_SUPPORTED_NUMBER + ", got " + maxNumber);
+        }
+
+        this.maxNumber = maxNumber;
+        this.operationStarts = new int[ProblemSet.NUM_OF_OPERATIONS + 1];
+
+        // Count first so the array is allocated once
+        long count = 0;
+
+        for (int op = 0; op < ProblemSet.NUM_OF_OPERATIONS; op++) {
+            operationStarts[op] = (int) count;
+            count += enumerate((byte) op, null, 0);
+        }
+
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many facts for max number " + maxNumber);
+        }
+
+        operationStarts[ProblemSet.NUM_OF_OPERATIONS] = (int) count;
+        this.packedOperands = new int[(int) count];
+
+        for (int op = 0; op < ProblemSet.NUM_OF_OPERATIONS; op++) {
+            enumerate((byte) op, packedOperands, operationStarts[op]);
+        }
+
+    }
+
+    /**
+     * Lists every fact of one operation, with the same constraints
+     * ProblemGenerator uses.
+     * @param out Where to write packed operands, or null to just count
+     * @param offset Where in out to start
+     * @return How many facts the operation has
+     */
+    private int enumerate(byte operation, int[] out, int offset) {
+
+        int count = 0;
+
+        switch (operation) {
+            case ProblemSet.ADDITION:
+
+                // x + y = z, z <= maxNumber and x, y > 0
+                for (int a = 1; a <= maxNumber - 1; a++) {
+                    for (int b = 1; b <= maxNumber - a; b++) {
+                        count = put(out, offset, count, a, b);
+                    }
+                }
+
+                break;
+            case ProblemSet.SUBTRACTION:
+
+                // x - y = z, x <= maxNumber and x, y, z > 0
+                for (int a = 2; a <= maxNumber; a++) {
+                    for (int b = 1; b <= a - 1; b++) {
+                        count = put(out, offset, count, a, b);
+                    }
+                }
+
+                break;
+            case ProblemSet.DIVISION:
+
+                // x / y = z, y a divisor of x other than 1 and x. Walking
+                // multiples of each divisor is O(maxNumber log maxNumber).
+                for (int b = 2; b <= maxNumber / 2; b++) {
+                    for (int a = 2 * b; a <= maxNumber; a += b) {
+                        count = put(out, offset, count, a, b);
+                    }
+                }
+
+                break;
+            default:
+
+                // x * y = z, x <= maxNumber / 2, y >= 2 and z <= maxNumber
+                for (int a = 2; a <= maxNumber / 2; a++) {
+                    for (int b = 2; b <= maxNumber / a; b++) {
+                        count = put(out, offset, count, a, b);
+                    }
+                }
+
+                break;
+        }
+
+        return count;
+
+    }
+
+    private static int put(int[] out, int offset, int count, int a, int b) {
+
+        if (out != null) {
+            out[offset + count] = (a << 16) | b;
+        }
+
+        return count + 1;
+
+    }
+
+    public int getMaxNumber() {
+        return maxNumber;
+    }
+
+    public int size() {
+        return packedOperands.length;
+    }
+
+    public byte getOperation(int fact) {
+
+        byte op = 0;
+
+        while (fact >= operationStarts[op + 1]) {
+            op++;
+        }
+
+        return op;
+
+    }
+
+    public int getOperandOne(int fact) {
+        return packedOperands[fact] >>> 16;
+    }
+
+    public int getOperandTwo(int fact) {
+        return packedOperands[fact] & 0xFFFF;
+    }
+
+    public int getSolution(int fact) {
+
+        int a = getOperandOne(fact);
+        int b = getOperandTwo(fact);
+
+        switch (getOperation(fact)) {
+            case ProblemSet.ADDITION:
+                return a + b;
+            case ProblemSet.SUBTRACTION:
+                return a - b;
+            case ProblemSet.DIVISION:
+                return a / b;
+            default:
+                return a * b;
+        }
+
+    }
+
+    /**
+     * Appends a fact to a ProblemSet as a problem.
+     * @return Index of the new problem.
+     */
+    public int addTo(ProblemSet problems, int fact) {
+        return problems.add(getOperation(fact), getOperandOne(fact), getOperandTwo(fact), getSolution(fact));
+    }
+
+}
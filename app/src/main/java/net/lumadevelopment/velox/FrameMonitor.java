@@ -0,0 +1,181 @@
+package net.lumadevelopment.velox;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+/**
+ * Watches frames while a Game is running. A Choreographer callback on
+ * every vsync measures frame intervals (catching main-thread stalls
+ * even when nothing is drawn), and FrameMetrics reports how long each
+ * frame that was drawn took to render. Both feed a FrameStats, broken
+ * down by the game phase set through setPhase().
+ */
+public class FrameMonitor implements Choreographer.FrameCallback {
+
+    public static final String LOG_TAG = FrameMonitor.class.getSimpleName();
+
+    /**
+     * How long after a new problem is shown its frames count as
+     * FrameStats.PHASE_TRANSITION rather than PHASE_PLAYING.
+     */
+    private static final long TRANSITION_WINDOW_NS = 250_000_000L;
+
+    private final Velox main;
+    private final FrameStats stats;
+    private final Handler mainHandler;
+
+    // Only touched on the main thread
+    private boolean running;
+    private long lastFrameTimeNs;
+    private HandlerThread metricsThread;
+    private Window.OnFrameMetricsAvailableListener metricsListener;
+
+    private volatile int phase;
+    private volatile long lastProblemChangeNs;
+
+    public FrameMonitor(Velox main) {
+
+        this.main = main;
+        this.mainHandler = new Handler(Looper.getMainLooper());
+
+        Display display = displayOf(main);
+        float refreshRate = display == null ? 0 : display.getRefreshRate();
+
+        if (refreshRate <= 0) {
+            refreshRate = 60;
+        }
+
+        this.stats = new FrameStats((long) (1_000_000_000L / refreshRate));
+        this.phase = FrameStats.PHASE_COUNTDOWN;
+
+    }
+
+    /**
+     * @return The display the activity is on. WindowManager.getDefaultDisplay()
+     * is deprecated from API 30, but it's all older versions have.
+     */
+    @SuppressWarnings("deprecation")
+    private static Display displayOf(Velox main) {
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return main.getDisplay();
+        }
+
+        return main.getWindowManager().getDefaultDisplay();
+
+    }
+
+    public FrameStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @param phase One of the FrameStats.PHASE_ constants
+     */
+    public void setPhase(int phase) {
+        this.phase = phase;
+    }
+
+    /**
+     * Marks the start of a FrameStats.PHASE_TRANSITION window.
+     */
+    public void onProblemChanged() {
+        lastProblemChangeNs = System.nanoTime();
+    }
+
+    /**
+     * Starts watching frames. Safe to call from any thread.
+     */
+    public void start() {
+
+        mainHandler.post(() -> {
+
+            if (running) {
+                return;
+            }
+
+            running = true;
+            lastFrameTimeNs = 0;
+            Choreographer.getInstance().postFrameCallback(this);
+
+            // Delivered on a separate thread so collecting metrics
+            // doesn't add work to the thread being measured
+            metricsThread = new HandlerThread(LOG_TAG);
+            metricsThread.start();
+
+            metricsListener = (window, frameMetrics, dropCountSinceLastInvocation) ->
+                    stats.addRenderedFrame(currentPhase(System.nanoTime()),
+                            frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION));
+
+            main.getWindow().addOnFrameMetricsAvailableListener(metricsListener, new Handler(metricsThread.getLooper()));
+
+            Log.d(LOG_TAG, "Frame monitor started, expecting a frame every " + stats.getExpectedFrameIntervalNs() + " ns.");
+
+        });
+
+    }
+
+    /**
+     * Stops watching frames. Safe to call from any thread.
+     */
+    public void stop() {
+
+        mainHandler.post(() -> {
+
+            if (!running) {
+                return;
+            }
+
+            running = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+
+            try {
+                main.getWindow().removeOnFrameMetricsAvailableListener(metricsListener);
+            } catch (IllegalArgumentException e) {
+                // Window already dropped the listener
+            }
+
+            metricsThread.quitSafely();
+
+            Log.d(LOG_TAG, "Frame monitor stopped.\n" + stats.summary());
+
+        });
+
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+
+        if (!running) {
+            return;
+        }
+
+        if (lastFrameTimeNs != 0) {
+            stats.addFrameInterval(currentPhase(frameTimeNanos), frameTimeNanos - lastFrameTimeNs);
+        }
+
+        lastFrameTimeNs = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+
+    }
+
+    private int currentPhase(long nowNs) {
+
+        int currentPhase = phase;
+
+        if (currentPhase == FrameStats.PHASE_PLAYING && nowNs - lastProblemChangeNs < TRANSITION_WINDOW_NS) {
+            return FrameStats.PHASE_TRANSITION;
+        }
+
+        return currentPhase;
+
+    }
+
+}
@@ -0,0 +1,190 @@
+package net.lumadevelopment.velox;
+
+import java.util.Locale;
+
+/**
+ * Classifies frame intervals into smooth, janky and frozen frames and
+ * counts main-thread stalls, broken down by game phase. Pure Java so
+ * the classification can be unit tested; FrameMonitor feeds it from
+ * Choreographer and FrameMetrics on the device.
+ *
+ * An interval is the time between two consecutive vsync callbacks:
+ * - janky: at least one vsync was missed (interval > 1.5 frames)
+ * - stall: the main thread was blocked for more than a whole extra
+ *   frame (interval > 2 frames)
+ * - frozen: interval >= FROZEN_FRAME_NS, the threshold Android vitals
+ *   uses for frozen frames
+ */
+public class FrameStats {
+
+    // Game phases
+    public static final int PHASE_COUNTDOWN = 0;
+    public static final int PHASE_PLAYING = 1;
+    public static final int PHASE_TRANSITION = 2; // just after a new problem is shown
+    public static final int NUM_OF_PHASES = 3;
+
+    private static final String[] PHASE_NAMES = {"countdown", "playing", "transition"};
+
+    public static final long FROZEN_FRAME_NS = 700_000_000L;
+
+    private final long expectedFrameIntervalNs;
+
+    // Indexed by phase
+    private final int[] frames = new int[NUM_OF_PHASES];
+    private final int[] jankyFrames = new int[NUM_OF_PHASES];
+    private final int[] frozenFrames = new int[NUM_OF_PHASES];
+    private final int[] stalls = new int[NUM_OF_PHASES];
+    private final long[] stalledTimeNs = new long[NUM_OF_PHASES];
+    private final long[] worstIntervalNs = new long[NUM_OF_PHASES];
+    private final int[] renderedFrames = new int[NUM_OF_PHASES];
+    private final int[] slowRenderedFrames = new int[NUM_OF_PHASES];
+
+    /**
+     * @param expectedFrameIntervalNs One vsync period, ex. 16,666,667 ns at 60 Hz
+     */
+    public FrameStats(long expectedFrameIntervalNs) {
+
+        this.expectedFrameIntervalNs = expectedFrameIntervalNs;
+
+    }
+
+    public long getExpectedFrameIntervalNs() {
+        return expectedFrameIntervalNs;
+    }
+
+    /**
+     * @return Whether an interval missed at least one vsync.
+     */
+    public boolean isJanky(long intervalNs) {
+        return intervalNs * 2 > expectedFrameIntervalNs * 3;
+    }
+
+    /**
+     * @return Whether the main thread was blocked for more than one
+     * extra frame during the interval.
+     */
+    public boolean isStall(long intervalNs) {
+        return intervalNs > expectedFrameIntervalNs * 2;
+    }
+
+    public boolean isFrozen(long intervalNs) {
+        return intervalNs >= FROZEN_FRAME_NS;
+    }
+
+    /**
+     * Records the interval between two vsync callbacks.
+     * @param phase One of the PHASE_ constants
+     * @param intervalNs Time since the previous frame
+     */
+    public synchronized void addFrameInterval(int phase, long intervalNs) {
+
+        frames[phase]++;
+
+        if (isJanky(intervalNs)) {
+            jankyFrames[phase]++;
+        }
+
+        if (isStall(intervalNs)) {
+            stalls[phase]++;
+            stalledTimeNs[phase] += intervalNs - expectedFrameIntervalNs;
+        }
+
+        if (isFrozen(intervalNs)) {
+            frozenFrames[phase]++;
+        }
+
+        worstIntervalNs[phase] = Math.max(worstIntervalNs[phase], intervalNs);
+
+    }
+
+    /**
+     * Records how long a frame that was actually drawn took from
+     * input to swap (FrameMetrics.TOTAL_DURATION).
+     * @param phase One of the PHASE_ constants
+     * @param totalDurationNs Total render duration of the frame
+     */
+    public synchronized void addRenderedFrame(int phase, long totalDurationNs) {
+
+        renderedFrames[phase]++;
+
+        if (totalDurationNs > expectedFrameIntervalNs) {
+            slowRenderedFrames[phase]++;
+        }
+
+    }
+
+    // Getter methods, all indexed by phase
+
+    public synchronized int getFrames(int phase) {
+        return frames[phase];
+    }
+
+    public synchronized int getJankyFrames(int phase) {
+        return jankyFrames[phase];
+    }
+
+    public synchronized int getFrozenFrames(int phase) {
+        return frozenFrames[phase];
+    }
+
+    public synchronized int getStalls(int phase) {
+        return stalls[phase];
+    }
+
+    public synchronized long getStalledTimeNs(int phase) {
+        return stalledTimeNs[phase];
+    }
+
+    public synchronized long getWorstIntervalNs(int phase) {
+        return worstIntervalNs[phase];
+    }
+
+    public synchronized int getRenderedFrames(int phase) {
+        return renderedFrames[phase];
+    }
+
+    public synchronized int getSlowRenderedFrames(int phase) {
+        return slowRenderedFrames[phase];
+    }
+
+    /**
+     * @return Total stalls across every phase.
+     */
+    public synchronized int getTotalStalls() {
+
+        int total = 0;
+
+        for (int phase = 0; phase < NUM_OF_PHASES; phase++) {
+            total += stalls[phase];
+        }
+
+        return total;
+
+    }
+
+    /**
+     * One line per phase, for the game over stats log.
+     */
+    public synchronized String summary() {
+
+        StringBuilder summary = new StringBuilder();
+
+        for (int phase = 0; phase < NUM_OF_PHASES; phase++) {
+
+            if (phase > 0) {
+                summary.append('\n');
+            }
+
+            summary.append(String.format(Locale.US,
+                    "%s: %d frames, %d janky, %d frozen, %d stalls (%.1f ms), worst %.1f ms, %d/%d drawn frames slow",
+                    PHASE_NAMES[phase], frames[phase], jankyFrames[phase], frozenFrames[phase],
+                    stalls[phase], stalledTimeNs[phase] / 1e6, worstIntervalNs[phase] / 1e6,
+                    slowRenderedFrames[phase], renderedFrames[phase]));
+
+        }
+
+        return summary.toString();
+
+    }
+
+}
@@ -1,20 +1,45 @@
 package net.lumadevelopment.velox;
 
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
-import android.widget.ProgressBar;
-import android.widget.TextView;
-
+import android.view.LayoutInflater;
+import android.view.View;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Game object for Velox. Can be instantiated multiple times for replays.
+ * The rules live in GameEngine, this class ties them to the screen, the
+ * speech recognizer and a clock.
  */
-public class Game {
+public class Game implements GameEngine.Listener {
 
     // LOG_TAG changes if class name gets refactored
     public static final String LOG_TAG = Game.class.getSimpleName();
 
+    // Metrics, across every game in the session
+    private static final Metrics.Histogram INIT_US =
+            Metrics.registry().histogram("velox_game_init_microseconds", "Game.init() run time");
+    private static final Metrics.Histogram TICK_JITTER_US =
+            Metrics.registry().histogram("velox_game_tick_jitter_microseconds", "How far each update() tick lands from its schedule");
+    private static final Metrics.Histogram RESPONSE_MS =
+            Metrics.registry().histogram("velox_answer_response_milliseconds", "Time to a correct answer");
+    private static final Metrics.Counter CORRECT =
+            Metrics.registry().counter("velox_problems_correct_total", "Problems answered correctly");
+    private static final Metrics.Counter TIMED_OUT =
+            Metrics.registry().counter("velox_problems_timed_out_total", "Problems that ran out of time");
+    private static final Metrics.Counter LATE_ANSWERS =
+            Metrics.registry().counter("velox_answers_late_total", "Answers dropped because they were spoken after the deadline");
+
     /**
      * We use the Velox class to access the UI thread and
      * UI elements.
@@ -26,6 +51,12 @@ public class Game {
      */
     private final SpeechManager speechMgr;
 
+    /**
+     * Counts janky and frozen frames from the countdown until
+     * the game ends. The results go to the GameOver stats.
+     */
+    private final FrameMonitor frameMonitor;
+
     /**
      * The Timer that runs the update() TimerTask.
      * Stored so we can cancel() and purge() it when we kill()
@@ -39,115 +70,311 @@ public class Game {
     private final int numOfProblems;
 
     /**
-     * Array of problems the game will use. Generated
-     * and assigned to this array in init()
+     * The problems the game will use, along with whether
+     * and how fast the user solved each one. Generated
+     * in init()
      *
      * size = numOfProblems
      */
-    private final Problem[] problems;
+    private final ProblemSet problems;
 
     /**
-     * Array of booleans, each one corresponding to a
-     * problem. The value stores whether or not the
-     * user solved the problem.
-     *
-     * size = numOfProblems
+     * Tracks everything that has to be warm before run() can be
+     * called: problems generated and lexicon loaded by init(), the
+     * problem screen inflated and the recognizer ready for speech
+     * by prepare(). The countdown waits on this rather than a
+     * fixed delay.
+     */
+    private final GameStartup startup;
+
+    /**
+     * Set by the first run() call, so the countdown finishing and
+     * a quick start can't both start the game.
+     */
+    private final AtomicBoolean started;
+
+    /**
+     * The problems are generated from this seed (and operationWeights),
+     * so the journal can regenerate them instead of storing them.
+     */
+    private final long seed;
+
+    /**
+     * Snapshot of OperationWeights for this game, rounded so the
+     * journal can store them exactly.
+     */
+    private final double[] operationWeights;
+
+    /**
+     * Records every answer, problem shown and timeout, so the game
+     * can be replayed with GameReplayer. Saved when the game ends.
+     * Null in practice mode, whose problems come from the
+     * PracticeDeck rather than the seed.
+     */
+    private final GameJournal journal;
+
+    /**
+     * Config.PRACTICE_MODE: problems are picked one at a time by
+     * the PracticeDeck, each as the last one is resolved.
+     */
+    private final boolean practice;
+
+    /**
+     * Practice mode only. Loaded by init(), null until then.
+     */
+    private PracticeDeck practiceDeck;
+
+    /**
+     * Practice mode only, the deck's fact for each problem.
+     */
+    private final int[] practiceFacts;
+
+    /**
+     * Which problem is up, timeouts and answer checking. Only
+     * touched while holding this Game's lock. All times given to
+     * it come from SystemClock.elapsedRealtime(), which (unlike
+     * System.currentTimeMillis()) never jumps.
+     */
+    private final GameEngine engine;
+
+    /**
+     * Plays a tone and haptic pulse the moment an answer is judged.
+     * Created by init(), null until then or if creating it failed.
      */
-    private final boolean[] correctlyAnswered;
+    private volatile AnswerFeedback feedback;
 
     /**
-     * Whether init() has ran successfully or not. Necessary
-     * because init() is ran concurrently while the countdown
-     * is going. In the microscopic chance Game is not
-     * initialized before the countdown is up, an error
-     * will be thrown.
+     * Reads problems aloud, null unless Config.EYES_FREE.
      */
-    private boolean ready;
+    private final ProblemNarrator narrator;
 
     /**
-     * When the game was started, used for the GameOver screen.
+     * problem.xml, inflated during the countdown by prepare().
      */
-    private long gameStart;
+    private View problemView;
 
-    private int currentProblemIndex;
+    /**
+     * Index of the problem most recently drawn on screen by
+     * update(). Handed to the engine on the next tick, so queued
+     * answers are only checked once the player has seen the problem.
+     */
+    private volatile int displayedProblemIndex;
 
     /**
-     * When the current problem we're on is started. Assigned with
-     * System.currentTimeMillis(). Used for the progress bar and
-     * for switching to the next problem when the current one's
-     * time is up.
+     * Draws the equation, time bar and last answer. Only touched
+     * on the UI thread.
      */
-    private long thisProblemStarted;
+    private GameHudView hud;
 
     /**
-     * The last answer the user gave. Obviously we check this
-     * against the solution and display it in the UI.
+     * Debug builds only, null otherwise. Only touched on the UI thread.
      */
-    private String lastAnswer;
+    private PerfOverlay perfOverlay;
 
-    // UI Elements
-    private TextView equation;
-    private ProgressBar progressBar;
-    private TextView lastAnswerTextView;
+    /**
+     * CPU and wall time of each phase, saved with the journal.
+     */
+    private final GameCost cost;
 
-    public Game(Velox main) {
+    // How far update() strays from its schedule. Written in update(),
+    // read by PerfOverlay.
+    private static final long TICK_INTERVAL_NS = 1_000_000_000L / Config.TICKS_PER_SECOND;
+    private long lastTickNs;
+    private volatile long lastTickJitterUs;
+    private volatile long maxTickJitterUs;
+
+    /**
+     * @param cost Accounting already running for this game, see Velox.countdown()
+     */
+    public Game(Velox main, GameCost cost) {
 
-        this.ready = false;
+        this.startup = new GameStartup();
+        this.started = new AtomicBoolean(false);
 
         this.main = main;
-        this.speechMgr = new SpeechManager(main, this);
+        this.cost = cost;
+        this.speechMgr = new SpeechManager(main, this, startup);
+        this.frameMonitor = new FrameMonitor(main);
         this.timer = new Timer();
         this.numOfProblems = Config.NUM_OF_PROBLEMS;
-        this.problems = new Problem[numOfProblems];
-        this.correctlyAnswered = new boolean[numOfProblems];
+        this.problems = new ProblemSet(numOfProblems);
+
+        this.seed = ProblemGenerator.newSeed();
+        this.operationWeights = GameJournal.storableWeights(OperationWeights.session().currentWeights());
+        this.practice = Config.PRACTICE_MODE;
+        this.practiceFacts = practice ? new int[numOfProblems] : null;
+        this.journal = practice ? null : new GameJournal(seed, operationWeights, Config.MAX_NUMBER, numOfProblems,
+                Config.TIME_PER_PROBLEM_IN_MS, Config.ANSWER_GRACE_MS, Config.MAX_ANSWER_LOOKAHEAD);
+        this.engine = new GameEngine(problems, Config.TIME_PER_PROBLEM_IN_MS, Config.ANSWER_GRACE_MS,
+                Config.MAX_ANSWER_LOOKAHEAD, journal);
+        engine.setListener(this);
+
+        // Text to speech has to be bound from the main thread, which
+        // the countdown creates games on
+        this.narrator = Config.EYES_FREE ? new ProblemNarrator(main, startup, speechMgr) : null;
+
+        if (narrator == null) {
+            startup.complete(GameStartup.NARRATION);
+        }
+
+        this.displayedProblemIndex = -1;
 
-        this.currentProblemIndex = 0;
-        this.lastAnswer = "N/A";
+        // Game is created when the countdown starts
+        frameMonitor.start();
+
+    }
 
+    public GameStartup getStartup() {
+        return startup;
     }
 
     /**
-     * Initializes the Game object with problems.
+     * Initializes the Game object with problems and loads the number
+     * lexicon. Runs on its own thread during the countdown.
      */
     public void init() {
 
         Log.d(LOG_TAG, "init() called in " + LOG_TAG);
+        Tracer.begin(Tracer.GAME_INIT);
         long startTime = System.nanoTime();
 
-        ProblemGenerator generator = new ProblemGenerator();
+        try {
+
+            if (practice) {
+
+                // The rest are picked as the game goes, see onProblemResolved()
+                practiceDeck = PracticeDeck.session(main.getFilesDir());
+                addPracticeProblem();
+
+            } else {
+
+                ProblemGenerator generator = new ProblemGenerator(seed, operationWeights, Config.MAX_NUMBER);
+
+                // Repeat generation for ever problem we need.
+                for (int i = 0; i < numOfProblems; i++) {
+
+                    int generatedProblem = generator.generateProblem(problems);
+
+                    // Increases init() run time from 0 -> 1 ms on test device :(
+                    Log.v(LOG_TAG, "Problem " + i + ": " + problems.equationToString(generatedProblem) + " = " + problems.getSolution(generatedProblem));
+
+                }
+
+            }
+
+            startup.complete(GameStartup.PROBLEMS);
+
+        } catch (RuntimeException e) {
+
+            Log.e(LOG_TAG, "Problem generation failed!", e);
+            startup.fail(GameStartup.PROBLEMS, e);
+
+        }
+
+        try {
 
-        // Repeat generation for ever problem we need.
-        for (int i = 0; i < numOfProblems; i++) {
+            // AudioTrack setup is slow enough to keep off the UI thread
+            feedback = new AnswerFeedback(main);
 
-            Problem generatedProblem = generator.generateProblem();
-            problems[i] = generatedProblem;
+        } catch (RuntimeException e) {
 
-            // Increases init() run time from 0 -> 1 ms on test device :(
-            Log.v(LOG_TAG, "Problem " + i + ": " + generatedProblem + " = " + generatedProblem.getSolution());
+            // The game works without it
+            Log.e(LOG_TAG, "Couldn't set up answer feedback!", e);
 
         }
 
-        // Let the Velox class know that run() can be called
-        ready = true;
+        if (narrator != null && startup.isDone(GameStartup.PROBLEMS)) {
+
+            try {
+
+                // Synthesizes whatever isn't cached while the countdown runs
+                narrator.prepare(problems);
+
+            } catch (RuntimeException e) {
+
+                Log.e(LOG_TAG, "Couldn't prepare narration!", e);
+                startup.fail(GameStartup.NARRATION, e);
+
+            }
+
+        }
+
+        try {
+
+            // Also builds the recognizer's first biasing strings, off the main thread
+            speechMgr.prepareBiasing();
+            startup.complete(GameStartup.LEXICON);
+
+        } catch (RuntimeException e) {
+
+            Log.e(LOG_TAG, "Loading the number lexicon failed!", e);
+            startup.fail(GameStartup.LEXICON, e);
+
+        }
+
+        // This thread's done, so this is all the CPU it'll ever use
+        cost.sample(GameCost.THREAD_INIT);
 
         long endTime = System.nanoTime();
         long initializationTime = endTime - startTime;
 
         Log.d(LOG_TAG, LOG_TAG + " initialized in " + initializationTime + " ns.");
+        INIT_US.record(initializationTime / 1000);
+        Tracer.end(Tracer.GAME_INIT);
+
+    }
+
+    /**
+     * Warms up everything that has to happen on the UI thread while the
+     * countdown is showing: inflates the problem screen and gets the
+     * recognizer listening so it's ready for speech. Must be called on
+     * the UI thread.
+     */
+    public void prepare() {
+
+        Tracer.begin(Tracer.INFLATE_PROBLEM);
+        problemView = LayoutInflater.from(main).inflate(R.layout.problem, null);
+        this.hud = problemView.findViewById(R.id.hud);
+        hud.setMax(Config.TIME_PER_PROBLEM_IN_MS);
+
+        if (BuildConfig.DEBUG) {
+
+            perfOverlay = new PerfOverlay(problemView.findViewById(R.id.perfOverlay), this, speechMgr, frameMonitor.getStats());
+
+            hud.setOnLongClickListener(v -> {
+                perfOverlay.toggle();
+                return true;
+            });
+
+        }
+
+        Tracer.end(Tracer.INFLATE_PROBLEM);
+
+        startup.complete(GameStartup.SCREEN);
+
+        speechMgr.warmUp();
 
     }
 
     /**
-     * Start the Game. Pull up the problem.xml layout, assign our time variables
-     * for the first time, and start the update() TimerTask.
+     * Start the Game. Pull up the problem screen, assign our time variables
+     * for the first time, and start the update() TimerTask. Should only be
+     * called once getStartup() is ready; later calls do nothing.
      */
     public void run() {
 
-        if (!ready) {
+        if (!startup.isReady()) {
+
+            // Velox waits on the startup stages before calling run(),
+            // so this means a stage failed.
+            Log.e(LOG_TAG, LOG_TAG + " not ready, cannot run! Waiting on " + startup.pendingStages() + ", failed " + startup.failedStages());
+            return;
+
+        }
+
+        if (!started.compareAndSet(false, true)) {
 
-            // This happens if init() does not finish before the countdown
-            // finishes. Incredibly unlikely, but it's good to be prepared.
-            Log.e(LOG_TAG, LOG_TAG + " not ready, cannot run!");
+            Log.d(LOG_TAG, "run() already called, ignoring.");
             return;
 
         }
@@ -156,13 +383,7 @@ public class Game {
 
         // Android is a stickler about UI threads, so we do all of our UI
         //work in main.runOnUiThread()
-        main.runOnUiThread(() -> {
-            main.setContentView(R.layout.problem);
-            this.equation = main.findViewById(R.id.equation);
-            this.progressBar = main.findViewById(R.id.progressBar);
-            this.lastAnswerTextView = main.findViewById(R.id.lastAnswer);
-            progressBar.setMax(Config.TIME_PER_PROBLEM_IN_MS);
-        });
+        main.runOnUiThread(() -> main.setContentView(problemView));
 
         Log.d(LOG_TAG, "Problem UI successfully initialized!");
 
@@ -174,14 +395,23 @@ public class Game {
             // If there was an issue with speech manager that caused it to not
             // start properly:
 
-            ready = false;
             Log.e(LOG_TAG, SpeechManager.LOG_TAG + " is not ready! Halting!");
             return;
 
         }
 
-        gameStart = System.currentTimeMillis();
-        thisProblemStarted = System.currentTimeMillis();
+        // Answers are delivered on this (the UI) thread too, so none can
+        // arrive before the clock starts
+        synchronized (this) {
+            cost.beginPhase(GameCost.PHASE_PROBLEM, 1, GameCost.THREAD_MAIN);
+            engine.start(SystemClock.elapsedRealtime());
+        }
+
+        if (narrator != null) {
+            narrator.play(problems, 0);
+        }
+
+        frameMonitor.setPhase(FrameStats.PHASE_PLAYING);
 
         // update() TimerTask.
         // period = (1000 / ticks per second) so the task runs
@@ -198,61 +428,131 @@ public class Game {
     }
 
     /**
-     * Responsible for keeping track of time, calling goToNextProblem()
-     * where necessary, and updating the UI
+     * Responsible for keeping track of time, ticking the engine so it
+     * moves on when a problem's time is up, and updating the UI
      */
-    public void update() {
+    public synchronized void update() {
+
+        Tracer.begin(Tracer.GAME_UPDATE);
 
-        int timeOnQuestionInMs = Math.toIntExact(System.currentTimeMillis() - thisProblemStarted);
+        try {
 
-        // Check if the time for this question is over
-        if (timeOnQuestionInMs > Config.TIME_PER_PROBLEM_IN_MS) {
+            long now = SystemClock.elapsedRealtime();
+            measureTickJitter(System.nanoTime());
+            cost.sample(GameCost.THREAD_SCHEDULER);
 
-            Log.d(LOG_TAG, "Time for problem " + (currentProblemIndex + 1) + " is up, moving on to problem " + (currentProblemIndex + 2));
+            // Answers carried over from the last utterance are checked
+            // as soon as the problem they're meant for has been shown
+            engine.problemShown(displayedProblemIndex, now);
 
-            // If the time period for this problem is over and the user
-            // still hasn't submitted the correct answer, call
-            // goToNextProblem() with a false parameter.
-            goToNextProblem(false);
+            // Check if the time for this question is over. If it is,
+            // the engine moves on to the next problem (or ends the game).
+            engine.tick(now);
 
-            // End of game condition
-            if(currentProblemIndex == numOfProblems) {
+            if (engine.isOver()) {
                 Log.d(LOG_TAG, "Game has ended, not continuing update()");
                 return;
             }
 
-            // Reset progress bar
-            timeOnQuestionInMs = 0;
+            int finalTimeOnQuestionInMs = engine.getTimeOnProblemInMs(now);
+            int shownProblemIndex = engine.getCurrentProblemIndex();
+            int answer = engine.getLastAnswer();
+
+            // Update UI
+            main.runOnUiThread(() -> {
+
+                Tracer.begin(Tracer.GAME_UPDATE_UI);
+                cost.sample(GameCost.THREAD_MAIN);
+
+                // The equation and last answer only change a few times a game,
+                // so only re-render them when they do
+                if (displayedProblemIndex != shownProblemIndex) {
+
+                    hud.setEquation(problems, shownProblemIndex);
+                    frameMonitor.onProblemChanged();
+                    speechMgr.problemChanged();
+
+                    if (displayedProblemIndex < 0) {
+
+                        startup.firstProblemShown();
+                        Log.d(LOG_TAG, "STARTUP | " + startup.summary());
+
+                    }
+
+                    displayedProblemIndex = shownProblemIndex;
+
+                }
+
+                // progress is scaled to Config.TIME_PER_PROBLEM_IN_MS
+                hud.setProgress(finalTimeOnQuestionInMs);
+                hud.setLastAnswer(answer);
+
+                Tracer.end(Tracer.GAME_UPDATE_UI);
+
+            });
+
+        } finally {
+
+            Tracer.end(Tracer.GAME_UPDATE);
 
         }
 
-        int finalTimeOnQuestionInMs = timeOnQuestionInMs;
+    }
 
-        // Update UI
-        main.runOnUiThread(() -> {
+    /**
+     * Records how far this tick landed from one interval after the
+     * last, for PerfOverlay. Cheap enough to always run.
+     */
+    private void measureTickJitter(long nowNs) {
 
-            Problem p = problems[currentProblemIndex];
-            equation.setText(p.toString());
+        if (lastTickNs != 0) {
 
-            // progress is scaled to Config.TIME_PER_PROBLEM_IN_MS
-            progressBar.setProgress(finalTimeOnQuestionInMs);
+            long jitterUs = Math.abs(nowNs - lastTickNs - TICK_INTERVAL_NS) / 1000;
+            lastTickJitterUs = jitterUs;
+            TICK_JITTER_US.record(jitterUs);
 
-            lastAnswerTextView.setText(lastAnswer);
+            if (jitterUs > maxTickJitterUs) {
+                maxTickJitterUs = jitterUs;
+            }
 
-        });
+        }
+
+        lastTickNs = nowNs;
+
+    }
+
+    public long getLastTickJitterUs() {
+        return lastTickJitterUs;
+    }
+
+    public long getMaxTickJitterUs() {
+        return maxTickJitterUs;
+    }
+
+    /**
+     * Plays the right or wrong feedback straight away, rather than
+     * leaving the player to notice the next repaint.
+     */
+    @Override
+    public void onAnswerChecked(int index, int answer, boolean correct) {
+
+        long judgedAtNs = System.nanoTime();
+        AnswerFeedback feedback = this.feedback;
+
+        if (feedback != null) {
+            feedback.play(correct, judgedAtNs);
+        }
 
     }
 
     /**
-     * Records whether or not the user answered the problem correctly,
-     * advances the problem index, and resets the problem start clock.
-     * Ends the game if we've done all questions.
-     * @param answeredCorrectly True if the user answered correctly.
-     *                          False if the user ran out of time.
+     * Logs how the problem went and feeds it to the operation
+     * mix of the next game.
      */
-    public void goToNextProblem(boolean answeredCorrectly) {
+    @Override
+    public void onProblemResolved(int index, boolean answeredCorrectly, int responseTimeInMs) {
 
-        String log = "Problem " + (currentProblemIndex + 1) + " was answered ";
+        String log = "Problem " + (index + 1) + " was answered ";
 
         if(!answeredCorrectly) {
             log += "in";
@@ -261,43 +561,108 @@ public class Game {
         log += "correctly";
         Log.d(LOG_TAG, log);
 
-        correctlyAnswered[currentProblemIndex] = answeredCorrectly;
-        currentProblemIndex++;
-        thisProblemStarted = System.currentTimeMillis();
+        OperationWeights.session().record(problems.getOperation(index), answeredCorrectly, responseTimeInMs);
+
+        if (answeredCorrectly) {
+            CORRECT.increment();
+            RESPONSE_MS.record(responseTimeInMs);
+        } else {
+            TIMED_OUT.increment();
+            speechMgr.problemTimedOut(index, problems.equationToString(index), problems.getSolution(index));
+        }
 
-        if(currentProblemIndex == numOfProblems) {
+        if (practice) {
+
+            practiceDeck.record(practiceFacts[index], answeredCorrectly, responseTimeInMs, System.currentTimeMillis() / 1000);
+
+            // The engine checks whether the game's over after this, so the
+            // next problem is always there in time
+            if (problems.size() < numOfProblems) {
+                addPracticeProblem();
+            }
 
-            Log.d(LOG_TAG, "Final index of problems reached, game over!");
+        }
 
-            // All questions have been done
-            gameOver();
+        if (narrator != null && index + 1 < problems.size()) {
+            narrator.play(problems, index + 1);
+        }
 
+        if (index + 1 < problems.size()) {
+            cost.beginPhase(GameCost.PHASE_PROBLEM, index + 2, currentThread());
         }
 
     }
 
     /**
-     * Called when the user has provided a new answer.
-     * Updates the lastAnswer instance variable and calls
-     * goToNextProblem(true) if the user got the answer right.
-     * @param answer The user's answer
+     * Appends the fact the PracticeDeck wants practiced next.
      */
-    public void newAnswer(int answer) {
+    private void addPracticeProblem() {
 
-        Log.d(LOG_TAG, "User has submitted new answer: " + answer);
+        int fact = practiceDeck.next(System.currentTimeMillis() / 1000);
+        int index = practiceDeck.getUniverse().addTo(problems, fact);
+        practiceFacts[index] = fact;
 
-        lastAnswer = String.valueOf(answer);
+        if (narrator != null) {
 
-        if (answer == problems[currentProblemIndex].getSolution()) {
+            // Read off this thread, which can be holding Game's lock
+            narrator.preload(problems, index);
 
-            Log.d(LOG_TAG, "User submitted answer correct!");
-            goToNextProblem(true);
+        }
 
-        } else {
+        Log.v(LOG_TAG, "Practice problem " + index + ": " + problems.equationToString(index) + " = " + problems.getSolution(index)
+                + " (box " + practiceDeck.getBox(fact) + ")");
 
-            Log.d(LOG_TAG, "User submitted answer incorrect.");
+    }
 
-        }
+    @Override
+    public void onGameOver() {
+
+        // All questions have been done
+        cost.beginPhase(GameCost.PHASE_GAME_OVER, 0, currentThread());
+        gameOver();
+
+    }
+
+    /**
+     * @return Which GameCost thread the caller is. The engine calls
+     * back on the main thread for answers and the scheduler for timeouts.
+     */
+    private static int currentThread() {
+        return Looper.myLooper() == Looper.getMainLooper() ? GameCost.THREAD_MAIN : GameCost.THREAD_SCHEDULER;
+    }
+
+    /**
+     * @return The solution to the problem currently on screen, or -1
+     * if the game hasn't started or is over.
+     */
+    public synchronized int getCurrentSolution() {
+        return engine.getCurrentSolution();
+    }
+
+    /**
+     * @return The epoch (index) of the problem currently up, for
+     * SpeechManager to tag speech with as it's heard.
+     */
+    public synchronized int getProblemEpoch() {
+        return engine.getCurrentProblemIndex();
+    }
+
+    /**
+     * Called when the user has provided one or more answers in a
+     * single utterance. The first answer is checked against the
+     * current problem, and up to Config.MAX_ANSWER_LOOKAHEAD more
+     * are queued to be checked against the problems that follow.
+     * @param answers The user's answers, in the order spoken
+     * @param epoch getProblemEpoch() when the player started speaking
+     * @param startedAtMs SystemClock.elapsedRealtime() when the player started speaking
+     * @param spokenAtMs SystemClock.elapsedRealtime() when the answers were spoken
+     */
+    public synchronized void newAnswers(List<Integer> answers, int epoch, long startedAtMs, long spokenAtMs) {
+
+        long now = SystemClock.elapsedRealtime();
+
+        Log.d(LOG_TAG, "User has submitted new answer(s): " + answers + ", spoken " + (now - spokenAtMs) + " ms ago");
+        engine.answers(answers, epoch, startedAtMs, spokenAtMs, now);
 
     }
 
@@ -310,12 +675,80 @@ public class Game {
 
         // Pass in main for UI accessibility
         // Pass in the other variables for end of game stats
-        new GameOver(main, correctlyAnswered, gameStart);
+        new GameOver(main, problems, engine.getGameTimeInMs(), frameMonitor.getStats());
+        byte[] journalBytes = journal != null ? journal.toByteArray() : null;
+
+        // GameOver sets its screen up on the UI thread, this runs right after
+        main.runOnUiThread(() -> {
+
+            cost.finish(GameCost.THREAD_MAIN);
+            Log.d(LOG_TAG, "COST STATS | " + cost.summary());
+            String costCsv = cost.toCsv();
+
+            // Small, but still disk I/O, so keep it off the UI thread
+            new Thread(() -> saveRecord(journalBytes, costCsv), "Save game record").start();
+
+        });
 
         Log.d(LOG_TAG, LOG_TAG + " killed, passing over to " + GameOver.LOG_TAG);
 
     }
 
+    /**
+     * Writes the journal to files/games, where GameReplayer can
+     * pick it up, with the game's cost next to it. In practice mode
+     * there's no journal, the deck is saved instead.
+     * @param journalBytes Bytes from GameJournal.toByteArray(), null in practice mode
+     * @param costCsv From GameCost.toCsv()
+     */
+    private void saveRecord(byte[] journalBytes, String costCsv) {
+
+        if (practice) {
+            PracticeDeck.saveSession();
+        }
+
+        File directory = new File(main.getFilesDir(), "games");
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+
+            Log.e(LOG_TAG, "Couldn't create " + directory);
+            return;
+
+        }
+
+        String baseName = "velox-" + System.currentTimeMillis();
+        File journalFile = new File(directory, baseName + ".journal");
+        File costFile = new File(directory, baseName + ".cost.csv");
+
+        if (journalBytes != null) {
+
+            try (OutputStream out = new FileOutputStream(journalFile)) {
+
+                out.write(journalBytes);
+
+            } catch (IOException e) {
+
+                Log.e(LOG_TAG, "Failed to save game journal to " + journalFile, e);
+                return;
+
+            }
+
+            Log.d(LOG_TAG, "Saved " + journalBytes.length + " byte game journal (seed " + seed + ") to " + journalFile);
+
+        }
+
+        try (OutputStream out = new FileOutputStream(costFile)) {
+
+            out.write(costCsv.getBytes(StandardCharsets.UTF_8));
+
+        } catch (IOException e) {
+
+            Log.e(LOG_TAG, "Failed to save game cost to " + costFile, e);
+
+        }
+
+    }
+
     /**
      * Kill all threads.
      */
@@ -327,6 +760,28 @@ public class Game {
         timer.purge();
 
         speechMgr.kill();
+        frameMonitor.stop();
+
+        main.runOnUiThread(() -> {
+            if (perfOverlay != null) {
+                perfOverlay.stop();
+            }
+        });
+
+        Log.d(LOG_TAG, "ANSWER STATS | Dropped as late: " + engine.getLateAnswerCount());
+        LATE_ANSWERS.add(engine.getLateAnswerCount());
+
+        AnswerFeedback feedback = this.feedback;
+
+        if (feedback != null) {
+            Log.d(LOG_TAG, "FEEDBACK STATS | " + feedback.summary());
+            feedback.release();
+        }
+
+        if (narrator != null) {
+            Log.d(LOG_TAG, "NARRATION STATS | " + narrator.summary());
+            narrator.release();
+        }
 
     }
 
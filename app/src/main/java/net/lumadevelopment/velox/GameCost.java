@@ -0,0 +1,306 @@
+package net.lumadevelopment.velox;
+
+import android.os.Build;
+import android.os.Debug;
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * What one game cost to play, phase by phase: wall time, CPU time of
+ * the whole process, and CPU time of each thread the game runs on.
+ * Saved next to the game's journal, so regressions between app
+ * versions show up in real play data.
+ *
+ * Debug.threadCpuTimeNanos() only reads the calling thread, so each
+ * tracked thread publishes its own reading with sample() at points it
+ * passes anyway (the scheduler every tick, the main thread every UI
+ * update, the init thread when it's done), and a phase boundary takes
+ * the difference between the latest readings. A thread's figure for a
+ * phase can be off by the work it did since its last sample, a tick
+ * at most while a game is running.
+ *
+ * Thread safe.
+ */
+public class GameCost {
+
+    // Phases, in the order a game goes through them
+    public static final byte PHASE_PERMISSION = 0; // Go pressed to microphone permission granted
+    public static final byte PHASE_COUNTDOWN = 1; // countdown screen, Game.init() and prepare()
+    public static final byte PHASE_PROBLEM = 2; // one per problem
+    public static final byte PHASE_GAME_OVER = 3; // last problem resolved to the GameOver screen set up
+    private static final String[] PHASE_NAMES = {"permission", "countdown", "problem", "game over"};
+
+    // Threads
+    public static final int THREAD_MAIN = 0;
+    public static final int THREAD_SCHEDULER = 1; // Game's update() Timer
+    public static final int THREAD_INIT = 2; // Game.init()
+    public static final int NUM_OF_THREADS = 3;
+
+    /**
+     * Latest CPU time each thread reported, ns. Threads that haven't
+     * reported yet count as 0, which is right for the scheduler and
+     * init threads since they're created for the game.
+     */
+    private final AtomicLongArray threadCpuNs;
+
+    // Readings when the current phase began
+    private byte currentPhase;
+    private int currentProblem;
+    private long phaseStartWallMs;
+    private long phaseStartProcessCpuMs;
+    private final long[] phaseStartThreadCpuNs;
+    private boolean finished;
+
+    // Finished phases, as parallel arrays like ProblemSet
+    private byte[] phases;
+    private int[] problemNumbers;
+    private long[] wallMs;
+    private long[] processCpuMs;
+    private long[][] threadCpuMs;
+    private int size;
+
+    /**
+     * Starts accounting. Must be called on the main thread.
+     * @param firstPhase PHASE_PERMISSION, or PHASE_COUNTDOWN if the
+     *                   game was started from the GameOver screen
+     */
+    public GameCost(byte firstPhase) {
+
+        this(firstPhase, SystemClock.elapsedRealtime(), Process.getElapsedCpuTime());
+        // The main thread has been running since launch, only count from here
+        sample(THREAD_MAIN);
+        phaseStartThreadCpuNs[THREAD_MAIN] = threadCpuNs.get(THREAD_MAIN);
+
+    }
+
+    /**
+     * Starts accounting from explicit readings rather than the
+     * device's clocks, for tests.
+     */
+    GameCost(byte firstPhase, long wallMs, long processCpuMs) {
+
+        this.threadCpuNs = new AtomicLongArray(NUM_OF_THREADS);
+        this.phaseStartThreadCpuNs = new long[NUM_OF_THREADS];
+
+        this.phases = new byte[8];
+        this.problemNumbers = new int[8];
+        this.wallMs = new long[8];
+        this.processCpuMs = new long[8];
+        this.threadCpuMs = new long[8][];
+
+        this.currentPhase = firstPhase;
+        this.phaseStartWallMs = wallMs;
+        this.phaseStartProcessCpuMs = processCpuMs;
+
+    }
+
+    /**
+     * Publishes the calling thread's CPU time. Cheap (a clock read),
+     * so it can be called every tick.
+     * @param thread Which thread the caller is, THREAD_
+     */
+    public void sample(int thread) {
+
+        long cpuNs = Debug.threadCpuTimeNanos();
+
+        // -1 where the platform can't measure it
+        if (cpuNs >= 0) {
+            threadCpuNs.set(thread, cpuNs);
+        }
+
+    }
+
+    /**
+     * Ends the current phase and starts the next.
+     * @param phase The phase starting now, PHASE_
+     * @param problemNumber For PHASE_PROBLEM, which one (from 1)
+     * @param thread Which thread the caller is, THREAD_
+     */
+    public void beginPhase(byte phase, int problemNumber, int thread) {
+
+        sample(thread);
+        beginPhase(phase, problemNumber, SystemClock.elapsedRealtime(), Process.getElapsedCpuTime());
+
+    }
+
+    synchronized void beginPhase(byte phase, int problemNumber, long nowWallMs, long nowProcessCpuMs) {
+
+        if (finished) {
+            return;
+        }
+
+        closePhase(nowWallMs, nowProcessCpuMs);
+
+        currentPhase = phase;
+        currentProblem = problemNumber;
+
+    }
+
+    /**
+     * Ends the last phase. Later calls to beginPhase() and finish() do
+     * nothing.
+     * @param thread Which thread the caller is, THREAD_
+     */
+    public void finish(int thread) {
+
+        sample(thread);
+        finish(SystemClock.elapsedRealtime(), Process.getElapsedCpuTime());
+
+    }
+
+    synchronized void finish(long nowWallMs, long nowProcessCpuMs) {
+
+        if (finished) {
+            return;
+        }
+
+        closePhase(nowWallMs, nowProcessCpuMs);
+        finished = true;
+
+    }
+
+    /**
+     * For tests, sets a thread's reading directly.
+     */
+    void recordThreadCpuNs(int thread, long cpuNs) {
+        threadCpuNs.set(thread, cpuNs);
+    }
+
+    private void closePhase(long nowWallMs, long nowProcessCpuMs) {
+
+        if (size == phases.length) {
+
+            int capacity = size * 2;
+            phases = Arrays.copyOf(phases, capacity);
+            problemNumbers = Arrays.copyOf(problemNumbers, capacity);
+            wallMs = Arrays.copyOf(wallMs, capacity);
+            processCpuMs = Arrays.copyOf(processCpuMs, capacity);
+            threadCpuMs = Arrays.copyOf(threadCpuMs, capacity);
+
+        }
+
+        long[] threadMs = new long[NUM_OF_THREADS];
+
+        for (int thread = 0; thread < NUM_OF_THREADS; thread++) {
+
+            long nowNs = threadCpuNs.get(thread);
+            threadMs[thread] = Math.max(0, nowNs - phaseStartThreadCpuNs[thread]) / 1_000_000;
+            phaseStartThreadCpuNs[thread] = nowNs;
+
+        }
+
+        phases[size] = currentPhase;
+        problemNumbers[size] = currentProblem;
+        wallMs[size] = nowWallMs - phaseStartWallMs;
+        processCpuMs[size] = Math.max(0, nowProcessCpuMs - phaseStartProcessCpuMs);
+        threadCpuMs[size] = threadMs;
+        size++;
+
+        phaseStartWallMs = nowWallMs;
+        phaseStartProcessCpuMs = nowProcessCpuMs;
+
+    }
+
+    // Getter methods, for finished phases
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized byte getPhase(int index) {
+        return phases[index];
+    }
+
+    public synchronized long getWallMs(int index) {
+        return wallMs[index];
+    }
+
+    public synchronized long getProcessCpuMs(int index) {
+        return processCpuMs[index];
+    }
+
+    public synchronized long getThreadCpuMs(int index, int thread) {
+        return threadCpuMs[index][thread];
+    }
+
+    /**
+     * @return Total CPU time of the process over every finished phase.
+     */
+    public synchronized long getTotalProcessCpuMs() {
+
+        long total = 0;
+
+        for (int i = 0; i < size; i++) {
+            total += processCpuMs[i];
+        }
+
+        return total;
+
+    }
+
+    /**
+     * One line per finished phase, with a header saying which app
+     * version and device the figures came from.
+     */
+    public synchronized String toCsv() {
+
+        StringBuilder csv = new StringBuilder();
+
+        csv.append(String.format(Locale.US, "# Velox %s (%d), %s %s, SDK %d%n", BuildConfig.VERSION_NAME,
+                BuildConfig.VERSION_CODE, Build.MANUFACTURER, Build.MODEL, Build.VERSION.SDK_INT));
+        csv.append("phase,problem,wall_ms,process_cpu_ms,main_cpu_ms,scheduler_cpu_ms,init_cpu_ms\n");
+
+        for (int i = 0; i < size; i++) {
+
+            csv.append(PHASE_NAMES[phases[i]]).append(',')
+                    .append(phases[i] == PHASE_PROBLEM ? Integer.toString(problemNumbers[i]) : "").append(',')
+                    .append(wallMs[i]).append(',')
+                    .append(processCpuMs[i]);
+
+            for (int thread = 0; thread < NUM_OF_THREADS; thread++) {
+                csv.append(',').append(threadCpuMs[i][thread]);
+            }
+
+            csv.append('\n');
+
+        }
+
+        return csv.toString();
+
+    }
+
+    /**
+     * Totals by phase type, for the log.
+     */
+    public synchronized String summary() {
+
+        long[] wall = new long[PHASE_NAMES.length];
+        long[] cpu = new long[PHASE_NAMES.length];
+
+        for (int i = 0; i < size; i++) {
+            wall[phases[i]] += wallMs[i];
+            cpu[phases[i]] += processCpuMs[i];
+        }
+
+        StringBuilder summary = new StringBuilder();
+
+        for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+
+            if (phase > 0) {
+                summary.append(", ");
+            }
+
+            summary.append(PHASE_NAMES[phase]).append(' ').append(cpu[phase])
+                    .append(" ms CPU / ").append(wall[phase]).append(" ms");
+
+        }
+
+        return summary.toString();
+
+    }
+
+}
@@ -0,0 +1,402 @@
+package net.lumadevelopment.velox;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * The rules of a game, without any of the Android around them: which
+ * problem is up, when it times out, and what happens to the answers
+ * the player gives. Every method takes the current time rather than
+ * reading a clock, and every input is written to a GameJournal (if
+ * there is one), so a game can be replayed exactly on the JVM.
+ *
+ * Recognizer results can arrive well after the player stopped
+ * speaking, so answers are judged by when they were spoken, not when
+ * they arrived. Each one is tagged with the epoch (index) of the
+ * problem on screen when the player started saying it, and counts if
+ * it was started before the deadline: the recognizer only notices the
+ * end of speech after a stretch of silence, which isn't the player's
+ * fault. A problem stays open for a grace window past its deadline so
+ * answers spoken in time can still land. Answers for a problem that's already been resolved are
+ * dropped rather than checked against the next one.
+ *
+ * Not thread safe. Game calls it under its own lock.
+ */
+public class GameEngine {
+
+    public static final String LOG_TAG = GameEngine.class.getSimpleName();
+
+    public static final int NO_ANSWER = -1;
+
+    /**
+     * Told about everything that isn't part of the rules themselves
+     * (answer feedback, adaptive weights, the GameOver screen).
+     */
+    public interface Listener {
+
+        /**
+         * Called as soon as an answer has been checked, before the
+         * engine moves on if it was right.
+         */
+        void onAnswerChecked(int index, int answer, boolean correct);
+
+        void onProblemResolved(int index, boolean answeredCorrectly, int responseTimeInMs);
+
+        void onGameOver();
+
+    }
+
+    private final ProblemSet problems;
+    private final int timePerProblemInMs;
+    private final int answerGraceMs;
+    private final int maxAnswerLookahead;
+
+    /**
+     * Null when replaying.
+     */
+    private final GameJournal journal;
+    private Listener listener;
+
+    /**
+     * Answers heard but not yet checked. A player can answer
+     * several problems in one breath ("twelve seven"), so the
+     * first answer goes to the current problem and each of the
+     * rest goes to the problem after the one before it, once
+     * that problem is on screen.
+     *
+     * size <= 1 + maxAnswerLookahead
+     */
+    private final ArrayDeque<Integer> pendingAnswers;
+
+    /**
+     * When the most recent answers were spoken. A correct answer's
+     * response time runs up to here rather than to when it arrived.
+     */
+    private long pendingSpokenAtMs;
+
+    private boolean started;
+    private long gameStartedMs;
+    private long gameEndedMs;
+
+    private int currentProblemIndex;
+    private long problemStartedMs;
+
+    /**
+     * Index of the problem most recently shown to the player.
+     * Queued answers are only checked against a problem once
+     * the player has actually seen it.
+     */
+    private int shownProblemIndex;
+
+    private int lastAnswer;
+
+    // Answers thrown away for arriving too late, for stats
+    private int lateAnswerCount;
+
+    /**
+     * @param problems Problems to play, already generated
+     * @param answerGraceMs How long past its deadline a problem waits
+     *                      for answers that were spoken in time
+     * @param journal Where to record inputs, or null to not record them
+     */
+    public GameEngine(ProblemSet problems, int timePerProblemInMs, int answerGraceMs,
+                      int maxAnswerLookahead, GameJournal journal) {
+
+        this.problems = problems;
+        this.timePerProblemInMs = timePerProblemInMs;
+        this.answerGraceMs = answerGraceMs;
+        this.maxAnswerLookahead = maxAnswerLookahead;
+        this.journal = journal;
+
+        this.pendingAnswers = new ArrayDeque<>();
+        this.currentProblemIndex = 0;
+        this.shownProblemIndex = -1;
+        this.lastAnswer = NO_ANSWER;
+
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts the clock on the first problem.
+     */
+    public void start(long nowMs) {
+
+        started = true;
+        gameStartedMs = nowMs;
+        problemStartedMs = nowMs;
+
+        if (journal != null) {
+            journal.start(nowMs);
+        }
+
+    }
+
+    /**
+     * Called once a problem has been drawn on screen. Answers carried
+     * over from the last utterance are checked as soon as the problem
+     * they're meant for has been shown.
+     * @param index Index of the problem that was drawn
+     */
+    public void problemShown(int index, long nowMs) {
+
+        if (!started || isOver() || index != currentProblemIndex || index == shownProblemIndex) {
+            return;
+        }
+
+        if (journal != null) {
+            journal.shown(nowMs);
+        }
+
+        shownProblemIndex = index;
+        consumePendingAnswers(nowMs);
+
+    }
+
+    /**
+     * Called when the user has provided one or more answers in a
+     * single utterance. The first answer is checked against the
+     * current problem, and up to maxAnswerLookahead more are queued
+     * to be checked against the problems that follow. Dropped if the
+     * problem they were spoken for has been resolved since, or if the
+     * player only started saying them after its deadline.
+     * @param answers The user's answers, in the order spoken
+     * @param epoch getCurrentProblemIndex() when the player started speaking
+     * @param startedAtMs When the player started speaking, judged against the deadline
+     * @param spokenAtMs When the player finished speaking, the end of the response time
+     */
+    public void answers(List<Integer> answers, int epoch, long startedAtMs, long spokenAtMs, long nowMs) {
+
+        if (!started || isOver() || answers.isEmpty()) {
+            return;
+        }
+
+        int answersToQueue = Math.min(answers.size(), 1 + maxAnswerLookahead);
+
+        if (answersToQueue < answers.size()) {
+            Log.d(LOG_TAG, "Ignoring " + (answers.size() - answersToQueue) + " answer(s) beyond the look-ahead limit.");
+            answers = answers.subList(0, answersToQueue);
+        }
+
+        spokenAtMs = Math.min(spokenAtMs, nowMs);
+        startedAtMs = Math.min(startedAtMs, spokenAtMs);
+
+        if (journal != null) {
+            journal.answers(answers, epoch, startedAtMs, spokenAtMs, nowMs);
+        }
+
+        if (epoch != currentProblemIndex) {
+
+            // Meant for a problem that's already been answered or timed
+            // out, checking it against this one would be wrong either way
+            Log.d(LOG_TAG, "Dropping " + answers + ", spoken during problem " + (epoch + 1)
+                    + " which has already been resolved.");
+            lateAnswerCount++;
+            return;
+
+        }
+
+        if (startedAtMs - problemStartedMs > timePerProblemInMs) {
+
+            Log.d(LOG_TAG, "Dropping " + answers + ", started " + (startedAtMs - problemStartedMs - timePerProblemInMs)
+                    + " ms after problem " + (currentProblemIndex + 1) + "'s deadline.");
+            lateAnswerCount++;
+            return;
+
+        }
+
+        pendingSpokenAtMs = spokenAtMs;
+        pendingAnswers.addAll(answers);
+        consumePendingAnswers(nowMs);
+
+    }
+
+    /**
+     * Moves on to the next problem if the current one's time, plus the
+     * grace window for answers still on their way, is up.
+     * @return True if the current problem timed out.
+     */
+    public boolean tick(long nowMs) {
+
+        if (!started || isOver() || nowMs - problemStartedMs <= timePerProblemInMs + answerGraceMs) {
+            return false;
+        }
+
+        Log.d(LOG_TAG, "Time for problem " + (currentProblemIndex + 1) + " is up");
+
+        if (journal != null) {
+            journal.timeout(nowMs);
+        }
+
+        goToNextProblem(false, nowMs);
+        return true;
+
+    }
+
+    /**
+     * Checks queued answers against the problem on screen. Updates
+     * lastAnswer and calls goToNextProblem(true) if the user got the
+     * answer right. Once a problem is solved, the remaining answers
+     * wait until the next one has been shown. A wrong answer leaves
+     * the problem open, so the answers after it, which were meant for
+     * the problems that follow, are discarded rather than checked
+     * against this one.
+     */
+    private void consumePendingAnswers(long nowMs) {
+
+        while (!pendingAnswers.isEmpty() && !isOver()) {
+
+            if (shownProblemIndex != currentProblemIndex) {
+
+                // The player hasn't seen this problem yet, wait for problemShown()
+                return;
+
+            }
+
+            int answer = pendingAnswers.poll();
+            lastAnswer = answer;
+            boolean correct = answer == problems.getSolution(currentProblemIndex);
+
+            if (listener != null) {
+                listener.onAnswerChecked(currentProblemIndex, answer, correct);
+            }
+
+            if (correct) {
+
+                Log.d(LOG_TAG, "User submitted answer correct!");
+                goToNextProblem(true, nowMs);
+
+            } else {
+
+                Log.d(LOG_TAG, "User submitted answer incorrect.");
+
+                if (!pendingAnswers.isEmpty()) {
+
+                    Log.d(LOG_TAG, "Discarding " + pendingAnswers.size() + " answer(s) meant for later problems.");
+                    pendingAnswers.clear();
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Records whether or not the user answered the problem correctly,
+     * advances the problem index, and resets the problem start clock.
+     * Ends the game if we've done all questions.
+     */
+    private void goToNextProblem(boolean answeredCorrectly, long nowMs) {
+
+        if (!answeredCorrectly && !pendingAnswers.isEmpty()) {
+
+            // Anything still queued was meant for a problem that
+            // timed out, don't let it spill onto the next one
+            Log.d(LOG_TAG, "Discarding " + pendingAnswers.size() + " queued answer(s).");
+            pendingAnswers.clear();
+
+        }
+
+        // A correct answer took as long as it took to say, ignoring any
+        // recognizer delay (answers carried over from an earlier problem
+        // took no time at all). A timeout took the whole time allowed,
+        // however much grace it was given.
+        int responseTimeInMs = answeredCorrectly
+                ? (int) Math.max(0, pendingSpokenAtMs - problemStartedMs)
+                : timePerProblemInMs;
+
+        problems.recordOutcome(currentProblemIndex,
+                answeredCorrectly ? ProblemSet.CORRECT : ProblemSet.TIMED_OUT,
+                responseTimeInMs);
+
+        if (listener != null) {
+            listener.onProblemResolved(currentProblemIndex, answeredCorrectly, responseTimeInMs);
+        }
+
+        currentProblemIndex++;
+        problemStartedMs = nowMs;
+
+        if (isOver()) {
+
+            Log.d(LOG_TAG, "Final index of problems reached, game over!");
+            gameEndedMs = nowMs;
+
+            if (journal != null) {
+                journal.end(problems.countOutcome(ProblemSet.CORRECT), nowMs);
+            }
+
+            if (listener != null) {
+                listener.onGameOver();
+            }
+
+        }
+
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    public boolean isOver() {
+        return currentProblemIndex >= problems.size();
+    }
+
+    public ProblemSet getProblems() {
+        return problems;
+    }
+
+    public int getCurrentProblemIndex() {
+        return currentProblemIndex;
+    }
+
+    /**
+     * @return The solution to the problem on screen, or -1 if the
+     * first problem hasn't been shown yet or the game is over.
+     */
+    public int getCurrentSolution() {
+
+        if (shownProblemIndex < 0 || isOver()) {
+            return -1;
+        }
+
+        return problems.getSolution(currentProblemIndex);
+
+    }
+
+    /**
+     * @return How many answers were dropped for being spoken too late,
+     * or for a problem that had already been resolved.
+     */
+    public int getLateAnswerCount() {
+        return lateAnswerCount;
+    }
+
+    /**
+     * @return How long the current problem has been up, for the progress bar.
+     * Can exceed the time per problem during the grace window.
+     */
+    public int getTimeOnProblemInMs(long nowMs) {
+        return (int) Math.min(nowMs - problemStartedMs, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return The last answer checked, or NO_ANSWER.
+     */
+    public int getLastAnswer() {
+        return lastAnswer;
+    }
+
+    /**
+     * @return Time from start() to the last problem being resolved.
+     */
+    public long getGameTimeInMs() {
+        return gameEndedMs - gameStartedMs;
+    }
+
+}
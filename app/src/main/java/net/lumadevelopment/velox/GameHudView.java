@@ -0,0 +1,251 @@
+package net.lumadevelopment.velox;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+import android.view.View;
+
+/**
+ * The problem screen: equation, time bar and the player's last answer,
+ * drawn straight onto a Canvas. Replaces the TextViews and ProgressBar
+ * problem.xml used to have, whose setText() calls 30 times a second
+ * could each ask for a measure/layout pass.
+ *
+ * This view's size never depends on what it shows, so nothing in here
+ * calls requestLayout(). Text is only measured when it changes, and a
+ * tick that just moves the bar invalidates the strip of the bar that
+ * changed, nothing else. All methods must be called on the UI thread.
+ */
+public class GameHudView extends View {
+
+    public static final String LOG_TAG = GameHudView.class.getSimpleName();
+
+    // Sizes match what problem.xml used to use
+    private static final float EQUATION_TEXT_SIZE_SP = 60;
+    private static final float HEADER_TEXT_SIZE_SP = 14;
+    private static final float ANSWER_TEXT_SIZE_SP = 34;
+    private static final float BAR_HEIGHT_DP = 4;
+    private static final float BAR_MARGIN_TOP_DP = 16;
+    private static final float HEADER_MARGIN_TOP_DP = 36;
+    private static final float ANSWER_MARGIN_TOP_DP = 24;
+
+    private static final String ANSWER_HEADER = "YOUR LAST ANSWER WAS:";
+    private static final char[] NO_ANSWER_TEXT = "N/A".toCharArray();
+
+    private final Paint equationPaint;
+    private final Paint headerPaint;
+    private final Paint answerPaint;
+    private final Paint barPaint;
+    private final Paint barTrackPaint;
+
+    private final char[] equation = new char[ProblemSet.MAX_EQUATION_LENGTH];
+    private int equationLength;
+    private float equationX;
+
+    private final char[] answer = new char[ProblemSet.MAX_EQUATION_LENGTH];
+    private int answerLength;
+    private float answerX;
+    private int renderedAnswer;
+
+    private float headerWidth;
+    private float headerX;
+
+    // Set in onSizeChanged()
+    private float equationBaseline;
+    private float headerBaseline;
+    private float answerBaseline;
+    private int barLeft;
+    private int barTop;
+    private int barRight;
+    private int barBottom;
+
+    private int progressMax;
+    private int progress;
+
+    /**
+     * Right edge of the filled part of the bar, in px. Ticks that
+     * don't move it by at least a pixel don't redraw anything.
+     */
+    private int barFilledRight;
+
+    public GameHudView(Context context) {
+        this(context, null);
+    }
+
+    public GameHudView(Context context, AttributeSet attrs) {
+
+        super(context, attrs);
+
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+
+        TypedArray theme = context.obtainStyledAttributes(new int[]{
+                android.R.attr.textColorPrimary, android.R.attr.colorAccent});
+        int textColor = theme.getColor(0, 0xFF000000);
+        int barColor = theme.getColor(1, 0xFF018786);
+        theme.recycle();
+
+        this.equationPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        equationPaint.setTypeface(Typeface.DEFAULT_BOLD);
+        equationPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, EQUATION_TEXT_SIZE_SP, metrics));
+        equationPaint.setColor(textColor);
+
+        this.headerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        headerPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, HEADER_TEXT_SIZE_SP, metrics));
+        headerPaint.setColor(textColor);
+
+        this.answerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        answerPaint.setTypeface(Typeface.MONOSPACE);
+        answerPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, ANSWER_TEXT_SIZE_SP, metrics));
+        answerPaint.setColor(textColor);
+
+        this.barPaint = new Paint();
+        barPaint.setColor(barColor);
+
+        this.barTrackPaint = new Paint();
+        barTrackPaint.setColor(barColor);
+        barTrackPaint.setAlpha(0x40);
+
+        // Measured once, it never changes
+        this.headerWidth = headerPaint.measureText(ANSWER_HEADER);
+
+        this.progressMax = 1;
+        this.renderedAnswer = GameEngine.NO_ANSWER;
+        System.arraycopy(NO_ANSWER_TEXT, 0, answer, 0, NO_ANSWER_TEXT.length);
+        this.answerLength = NO_ANSWER_TEXT.length;
+
+    }
+
+    /**
+     * Takes whatever size the parent gives, so changing the text
+     * never needs another layout pass.
+     */
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+
+        setMeasuredDimension(getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec),
+                getDefaultSize(getSuggestedMinimumHeight(), heightMeasureSpec));
+
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+
+        // Laid out top to bottom from a bit above the middle of the screen
+        equationBaseline = h * 0.4f;
+
+        barLeft = w / 6;
+        barRight = w - w / 6;
+        barTop = (int) (equationBaseline + equationPaint.descent()
+                + TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, BAR_MARGIN_TOP_DP, metrics));
+        barBottom = barTop + (int) Math.ceil(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, BAR_HEIGHT_DP, metrics));
+
+        headerBaseline = barBottom - headerPaint.ascent()
+                + TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, HEADER_MARGIN_TOP_DP, metrics);
+        answerBaseline = headerBaseline + headerPaint.descent() - answerPaint.ascent()
+                + TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, ANSWER_MARGIN_TOP_DP, metrics);
+
+        headerX = (w - headerWidth) / 2;
+        equationX = (w - equationPaint.measureText(equation, 0, equationLength)) / 2;
+        answerX = (w - answerPaint.measureText(answer, 0, answerLength)) / 2;
+        barFilledRight = filledRight(progress);
+
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+
+        canvas.drawText(equation, 0, equationLength, equationX, equationBaseline, equationPaint);
+
+        canvas.drawRect(barLeft, barTop, barRight, barBottom, barTrackPaint);
+        canvas.drawRect(barLeft, barTop, barFilledRight, barBottom, barPaint);
+
+        canvas.drawText(ANSWER_HEADER, headerX, headerBaseline, headerPaint);
+        canvas.drawText(answer, 0, answerLength, answerX, answerBaseline, answerPaint);
+
+    }
+
+    /**
+     * Shows a new problem. Only a few times a game, so this one
+     * redraws the whole view.
+     * @param problems Set holding the problem
+     * @param index Index of the problem to show
+     */
+    public void setEquation(ProblemSet problems, int index) {
+
+        equationLength = problems.renderEquation(index, equation);
+        equationX = (getWidth() - equationPaint.measureText(equation, 0, equationLength)) / 2;
+        invalidate();
+
+    }
+
+    /**
+     * @param answer The last answer the player gave, or GameEngine.NO_ANSWER
+     */
+    public void setLastAnswer(int answer) {
+
+        if (answer == renderedAnswer) {
+            return;
+        }
+
+        if (answer == GameEngine.NO_ANSWER) {
+            System.arraycopy(NO_ANSWER_TEXT, 0, this.answer, 0, NO_ANSWER_TEXT.length);
+            answerLength = NO_ANSWER_TEXT.length;
+        } else {
+            answerLength = ProblemSet.writeNumber(answer, this.answer, 0);
+        }
+
+        answerX = (getWidth() - answerPaint.measureText(this.answer, 0, answerLength)) / 2;
+        renderedAnswer = answer;
+        invalidate();
+
+    }
+
+    /**
+     * @param max Progress that fills the bar, ex. Config.TIME_PER_PROBLEM_IN_MS
+     */
+    public void setMax(int max) {
+
+        progressMax = Math.max(1, max);
+        setProgress(progress);
+
+    }
+
+    /**
+     * Moves the time bar. Called every tick, so it only invalidates
+     * the part of the bar that changed, and nothing at all if the
+     * bar didn't move by a whole pixel.
+     * @param progress Out of the max given to setMax()
+     */
+    @SuppressWarnings("deprecation")
+    public void setProgress(int progress) {
+
+        this.progress = progress;
+        int filledRight = filledRight(progress);
+
+        if (filledRight == barFilledRight) {
+            return;
+        }
+
+        // Hardware accelerated views re-record their whole display
+        // list regardless of the rect, but that's still just a few
+        // draw calls and never a measure/layout
+        invalidate(Math.min(filledRight, barFilledRight), barTop, Math.max(filledRight, barFilledRight), barBottom);
+        barFilledRight = filledRight;
+
+    }
+
+    private int filledRight(int progress) {
+
+        int clamped = Math.max(0, Math.min(progress, progressMax));
+        return barLeft + (int) ((long) (barRight - barLeft) * clamped / progressMax);
+
+    }
+
+}
@@ -0,0 +1,421 @@
+package net.lumadevelopment.velox;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact record of one game: the seed and settings its problems
+ * were generated from, followed by every input that changed the
+ * game's state (answers heard, problems shown, problems timed out)
+ * with a monotonic timestamp. Feeding the same inputs to a new
+ * GameEngine reproduces the game exactly, see GameReplayer.
+ *
+ * Layout, all integers unsigned LEB128 varints unless noted:
+ *
+ *   byte     VERSION
+ *   8 bytes  seed, big endian
+ *   varint   max number, number of problems, time per problem in ms,
+ *            answer grace in ms, answer look-ahead, number of
+ *            operation weights
+ *   4 bytes  each operation weight, float bits, big endian
+ *   events   varint (ms since the previous event << 2 | type), the
+ *            first one counts from the start of the game, then:
+ *              ANSWERS  varint count, varint each answer, varint
+ *                       epoch, varint ms from being spoken to arriving,
+ *                       varint ms from starting to finishing speaking
+ *              SHOWN    nothing
+ *              TIMEOUT  nothing
+ *              END      varint score
+ *
+ * The header is about 30 bytes and most events take 2 to 7, so a
+ * 15 problem game comes out at around a hundred bytes. Version 1
+ * journals (no answer grace, epoch or spoken time) and version 2
+ * journals (no time speech started) can still be read.
+ * Not thread safe, GameEngine only touches it under Game's lock.
+ */
+public class GameJournal {
+
+    public static final byte VERSION = 3;
+
+    // Event types, kept to 2 bits so they share a varint with the time
+    public static final byte ANSWERS = 0;
+    public static final byte SHOWN = 1;
+    public static final byte TIMEOUT = 2;
+    public static final byte END = 3;
+
+    private static final int TYPE_BITS = 2;
+    private static final int TYPE_MASK = (1 << TYPE_BITS) - 1;
+
+    /**
+     * Returned by Reader.next() once every event has been read.
+     */
+    public static final byte NO_MORE_EVENTS = -1;
+
+    /**
+     * Reader.getEpoch() of answers from a version 1 journal, which
+     * were always meant for the problem that was up when they arrived.
+     */
+    public static final int UNKNOWN_EPOCH = -1;
+
+    private byte[] bytes;
+    private int length;
+
+    /**
+     * Time of the most recent event, deltas are taken from here.
+     */
+    private long lastEventMs;
+
+    /**
+     * Starts a journal with the header for a game.
+     * @param seed Seed the game's ProblemGenerator was created with
+     * @param operationWeights Weights the ProblemGenerator was created with,
+     *                         see storableWeights()
+     */
+    public GameJournal(long seed, double[] operationWeights, int maxNumber, int numOfProblems,
+                       int timePerProblemInMs, int answerGraceMs, int maxAnswerLookahead) {
+
+        this.bytes = new byte[64];
+        this.length = 0;
+
+        writeByte(VERSION);
+
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            writeByte((byte) (seed >>> shift));
+        }
+
+        writeVarint(maxNumber);
+        writeVarint(numOfProblems);
+        writeVarint(timePerProblemInMs);
+        writeVarint(answerGraceMs);
+        writeVarint(maxAnswerLookahead);
+        writeVarint(operationWeights.length);
+
+        for (double weight : operationWeights) {
+            writeInt(Float.floatToIntBits((float) weight));
+        }
+
+    }
+
+    /**
+     * The journal keeps weights as floats. Generate problems from
+     * the result of this, not the raw weights, so replaying the
+     * journal picks exactly the same operations.
+     * @param operationWeights Weights to round
+     * @return A copy of the weights, rounded to float precision
+     */
+    public static double[] storableWeights(double[] operationWeights) {
+
+        double[] rounded = new double[operationWeights.length];
+
+        for (int i = 0; i < rounded.length; i++) {
+            rounded[i] = (float) operationWeights[i];
+        }
+
+        return rounded;
+
+    }
+
+    /**
+     * Sets the time the first event's delta counts from.
+     */
+    public void start(long nowMs) {
+        lastEventMs = nowMs;
+    }
+
+    /**
+     * @param epoch Index of the problem on screen when the answers were spoken
+     * @param startedAtMs When the player started speaking, no later than spokenAtMs
+     * @param spokenAtMs When the answers were spoken, no later than nowMs
+     */
+    public void answers(List<Integer> answers, int epoch, long startedAtMs, long spokenAtMs, long nowMs) {
+
+        writeEvent(ANSWERS, nowMs);
+        writeVarint(answers.size());
+
+        for (int i = 0; i < answers.size(); i++) {
+            writeVarint(answers.get(i));
+        }
+
+        writeVarint(epoch);
+        writeVarint((int) Math.min(Math.max(0, nowMs - spokenAtMs), Integer.MAX_VALUE));
+        writeVarint((int) Math.min(Math.max(0, spokenAtMs - startedAtMs), Integer.MAX_VALUE));
+
+    }
+
+    public void shown(long nowMs) {
+        writeEvent(SHOWN, nowMs);
+    }
+
+    public void timeout(long nowMs) {
+        writeEvent(TIMEOUT, nowMs);
+    }
+
+    public void end(int score, long nowMs) {
+
+        writeEvent(END, nowMs);
+        writeVarint(score);
+
+    }
+
+    public int size() {
+        return length;
+    }
+
+    /**
+     * @return A copy of everything written so far.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    private void writeEvent(byte type, long nowMs) {
+
+        // Timestamps come from a monotonic clock, but don't let a
+        // caller that got that wrong write a negative varint
+        long delta = Math.max(0, nowMs - lastEventMs);
+        lastEventMs = nowMs;
+
+        writeVarint((int) (Math.min(delta, Integer.MAX_VALUE >> TYPE_BITS) << TYPE_BITS) | type);
+
+    }
+
+    private void writeByte(byte b) {
+
+        if (length == bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        }
+
+        bytes[length++] = b;
+
+    }
+
+    private void writeInt(int value) {
+
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            writeByte((byte) (value >>> shift));
+        }
+
+    }
+
+    private void writeVarint(int value) {
+
+        if (value < 0) {
+            throw new IllegalArgumentException("Journal values must be non-negative, got " + value);
+        }
+
+        while ((value & ~0x7F) != 0) {
+            writeByte((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        writeByte((byte) value);
+
+    }
+
+    /**
+     * Reads a journal back, header first, then one event at a time.
+     * Throws IllegalArgumentException if the bytes aren't a journal
+     * this version wrote.
+     */
+    public static class Reader {
+
+        private final byte[] bytes;
+        private int position;
+
+        public final byte version;
+        public final long seed;
+        public final int maxNumber;
+        public final int numOfProblems;
+        public final int timePerProblemInMs;
+        public final int answerGraceMs;
+        public final int maxAnswerLookahead;
+        public final double[] operationWeights;
+
+        // The current event, set by next()
+        private byte type;
+        private long timeMs;
+        private int[] answers;
+        private int answerCount;
+        private int epoch;
+        private long startedAtMs;
+        private long spokenAtMs;
+        private int score;
+
+        public Reader(byte[] bytes) {
+
+            this.bytes = bytes;
+            this.position = 0;
+
+            this.version = readByte();
+
+            if (version < 1 || version > VERSION) {
+                throw new IllegalArgumentException("Unknown journal version " + version);
+            }
+
+            long seed = 0;
+
+            for (int i = 0; i < 8; i++) {
+                seed = (seed << 8) | (readByte() & 0xFF);
+            }
+
+            this.seed = seed;
+            this.maxNumber = readVarint();
+            this.numOfProblems = readVarint();
+            this.timePerProblemInMs = readVarint();
+            this.answerGraceMs = version >= 2 ? readVarint() : 0;
+            this.maxAnswerLookahead = readVarint();
+            this.operationWeights = new double[readVarint()];
+
+            for (int i = 0; i < operationWeights.length; i++) {
+                operationWeights[i] = Float.intBitsToFloat(readInt());
+            }
+
+            this.answers = new int[1 + maxAnswerLookahead];
+
+        }
+
+        /**
+         * Moves on to the next event.
+         * @return The event's type, or NO_MORE_EVENTS once there are no more.
+         */
+        public byte next() {
+
+            if (position == bytes.length) {
+                type = NO_MORE_EVENTS;
+                return type;
+            }
+
+            int typeAndDelta = readVarint();
+            type = (byte) (typeAndDelta & TYPE_MASK);
+            timeMs += typeAndDelta >>> TYPE_BITS;
+
+            switch (type) {
+                case ANSWERS:
+
+                    answerCount = readVarint();
+
+                    if (answerCount > answers.length) {
+                        answers = new int[answerCount];
+                    }
+
+                    for (int i = 0; i < answerCount; i++) {
+                        answers[i] = readVarint();
+                    }
+
+                    if (version >= 2) {
+                        epoch = readVarint();
+                        spokenAtMs = timeMs - readVarint();
+                    } else {
+                        epoch = UNKNOWN_EPOCH;
+                        spokenAtMs = timeMs;
+                    }
+
+                    // Before version 3, the deadline was judged by the end of speech
+                    startedAtMs = version >= 3 ? spokenAtMs - readVarint() : spokenAtMs;
+
+                    break;
+                case SHOWN:
+                case TIMEOUT:
+                    break;
+                default:
+                    // END, the only type left in 2 bits
+                    score = readVarint();
+                    break;
+            }
+
+            return type;
+
+        }
+
+        /**
+         * @return When the current event happened, in ms since the game started.
+         */
+        public long getTimeMs() {
+            return timeMs;
+        }
+
+        public int getAnswerCount() {
+            return answerCount;
+        }
+
+        public int getAnswer(int i) {
+            return answers[i];
+        }
+
+        /**
+         * @return Index of the problem the current answers were spoken
+         * during, or UNKNOWN_EPOCH for a version 1 journal.
+         */
+        public int getEpoch() {
+            return epoch;
+        }
+
+        /**
+         * @return When the player started saying the current answers,
+         * in ms since the game started.
+         */
+        public long getStartedAtMs() {
+            return startedAtMs;
+        }
+
+        /**
+         * @return When the current answers were spoken, in ms since the game started.
+         */
+        public long getSpokenAtMs() {
+            return spokenAtMs;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        private byte readByte() {
+
+            if (position >= bytes.length) {
+                throw new IllegalArgumentException("Journal truncated at byte " + position);
+            }
+
+            return bytes[position++];
+
+        }
+
+        private int readInt() {
+
+            int value = 0;
+
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | (readByte() & 0xFF);
+            }
+
+            return value;
+
+        }
+
+        private int readVarint() {
+
+            int value = 0;
+
+            for (int shift = 0; shift < 35; shift += 7) {
+
+                byte b = readByte();
+                value |= (b & 0x7F) << shift;
+
+                if ((b & 0x80) == 0) {
+
+                    if (value < 0) {
+                        break;
+                    }
+
+                    return value;
+
+                }
+
+            }
+
+            throw new IllegalArgumentException("Malformed varint before byte " + position);
+
+        }
+
+    }
+
+}
@@ -12,21 +12,30 @@ public class GameOver {
 
     public static final String LOG_TAG = GameOver.class.getSimpleName();
 
+    private static final Metrics.Counter GAMES =
+            Metrics.registry().counter("velox_games_finished_total", "Games played to the end");
+    private static final Metrics.Histogram SCORES =
+            Metrics.registry().histogram("velox_game_score", "Problems answered correctly per game");
+    private static final Metrics.Gauge LAST_GAME_MS =
+            Metrics.registry().gauge("velox_last_game_milliseconds", "How long the last game took");
+
     // Passed in from Game
     private final Velox main;
-    private final boolean[] correctlyAnswered;
-    private final long gameStart;
+    private final ProblemSet problems;
+    private final long gameTimeInMs;
+    private final FrameStats frameStats;
 
     // UI elements
     private TextView gameTime;
     private TextView score;
     private Button goAgainButton;
 
-    public GameOver(Velox main, boolean[] correctlyAnswered, long gameStart) {
+    public GameOver(Velox main, ProblemSet problems, long gameTimeInMs, FrameStats frameStats) {
 
         this.main = main;
-        this.correctlyAnswered = correctlyAnswered;
-        this.gameStart = gameStart;
+        this.problems = problems;
+        this.gameTimeInMs = gameTimeInMs;
+        this.frameStats = frameStats;
 
         // When GameOver is initialized, it's because the game is over, so
         // there's no need to wait to run()
@@ -42,33 +51,35 @@ public class GameOver {
 
         Log.d(LOG_TAG, "run() in " + LOG_TAG + " called!");
 
-        long gameEnd = System.currentTimeMillis();
-
         // Convert from ms to seconds
-        double gameTimeInS = (gameEnd - gameStart) / 1000.0;
+        double gameTimeInS = gameTimeInMs / 1000.0;
 
         Log.d(LOG_TAG, "Precise game time in seconds: " + gameTimeInS);
 
         // Round by cutting off everything after two decimal places
         double roundedGameTimeInS = ((int) (gameTimeInS * 100))/ 100.0;
 
-        int points = 0;
-
         // 1 point for each question answered correctly
-        for (boolean questionAnsweredCorrectly : correctlyAnswered) {
-            if (questionAnsweredCorrectly) {
-                points++;
-            }
-        }
+        int points = problems.countOutcome(ProblemSet.CORRECT);
 
         // pointsPossible is equivalent to Config.NUM_OF_PROBLEMS
-        int pointsPossible = correctlyAnswered.length;
+        int pointsPossible = problems.size();
 
-        Log.d(LOG_TAG, "GAME STATS | Game time: " + roundedGameTimeInS + "s, Score: " + points + "/" + pointsPossible);
+        Log.d(LOG_TAG, "GAME STATS | Game time: " + roundedGameTimeInS + "s, Score: " + points + "/" + pointsPossible
+                + ", average correct answer: " + problems.averageResponseTimeInMs(ProblemSet.CORRECT) + " ms");
+        Log.d(LOG_TAG, "FRAME STATS | " + frameStats.summary().replace("\n", " | "));
+
+        GAMES.increment();
+        SCORES.record(points);
+        LAST_GAME_MS.set(gameTimeInMs);
+
+        // A game's end is a consistent point to snapshot at
+        new Thread(Metrics.registry()::publish, "Publish metrics").start();
 
         int finalPoints = points;
         main.runOnUiThread(() -> {
 
+            Tracer.begin(Tracer.INFLATE_GAME_OVER);
             main.setContentView(R.layout.game_over);
             gameTime = main.findViewById(R.id.gameTime);
             score = main.findViewById(R.id.score);
@@ -88,6 +99,21 @@ public class GameOver {
 
             });
 
+            // Long press the title to save this session's trace
+            main.findViewById(R.id.gameOverText).setOnLongClickListener(v -> {
+
+                if (Tracer.isEnabled()) {
+                    Tracer.export(main);
+                } else {
+                    Log.d(LOG_TAG, "Tracing is disabled, nothing to export.");
+                }
+
+                return true;
+
+            });
+
+            Tracer.end(Tracer.INFLATE_GAME_OVER);
+
         });
 
         Log.d(LOG_TAG, "Game over UI successfully shown!");
@@ -0,0 +1,95 @@
+package net.lumadevelopment.velox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plays a GameJournal back through a fresh GameEngine: regenerates the
+ * problems from the journal's seed, then feeds in the recorded inputs
+ * at their recorded times. Pure Java, so games can be re-verified on
+ * the JVM (ex. after changing the rules or the problem generator).
+ */
+public final class GameReplayer {
+
+    private GameReplayer() {}
+
+    /**
+     * @param journal Bytes from GameJournal.toByteArray()
+     * @return The replayed problems, with outcomes and response times.
+     * @throws IllegalArgumentException If the journal is malformed or
+     * doesn't agree with the replay (a timeout that wouldn't have
+     * happened, a different final score).
+     */
+    public static ProblemSet replay(byte[] journal) {
+
+        GameJournal.Reader reader = new GameJournal.Reader(journal);
+
+        ProblemSet problems = new ProblemSet(reader.numOfProblems);
+        ProblemGenerator generator = new ProblemGenerator(reader.seed, reader.operationWeights, reader.maxNumber);
+
+        for (int i = 0; i < reader.numOfProblems; i++) {
+            generator.generateProblem(problems);
+        }
+
+        GameEngine engine = new GameEngine(problems, reader.timePerProblemInMs, reader.answerGraceMs,
+                reader.maxAnswerLookahead, null);
+        engine.start(0);
+
+        List<Integer> answers = new ArrayList<>(1 + reader.maxAnswerLookahead);
+        byte type;
+
+        while ((type = reader.next()) != GameJournal.NO_MORE_EVENTS) {
+
+            long timeMs = reader.getTimeMs();
+
+            switch (type) {
+                case GameJournal.ANSWERS:
+
+                    answers.clear();
+
+                    for (int i = 0; i < reader.getAnswerCount(); i++) {
+                        answers.add(reader.getAnswer(i));
+                    }
+
+                    // Version 1 journals didn't tag answers, they were
+                    // always checked against the problem that was up
+                    int epoch = reader.getEpoch() == GameJournal.UNKNOWN_EPOCH
+                            ? engine.getCurrentProblemIndex() : reader.getEpoch();
+
+                    engine.answers(answers, epoch, reader.getStartedAtMs(), reader.getSpokenAtMs(), timeMs);
+                    break;
+
+                case GameJournal.SHOWN:
+
+                    engine.problemShown(engine.getCurrentProblemIndex(), timeMs);
+                    break;
+
+                case GameJournal.TIMEOUT:
+
+                    if (!engine.tick(timeMs)) {
+                        throw new IllegalArgumentException("Problem " + (engine.getCurrentProblemIndex() + 1)
+                                + " timed out at " + timeMs + " ms but had only been up "
+                                + engine.getTimeOnProblemInMs(timeMs) + " ms");
+                    }
+
+                    break;
+
+                case GameJournal.END:
+
+                    int score = problems.countOutcome(ProblemSet.CORRECT);
+
+                    if (!engine.isOver() || score != reader.getScore()) {
+                        throw new IllegalArgumentException("Journal ended with a score of " + reader.getScore()
+                                + ", replay scored " + score + (engine.isOver() ? "" : " and isn't over"));
+                    }
+
+                    break;
+            }
+
+        }
+
+        return problems;
+
+    }
+
+}
@@ -0,0 +1,203 @@
+package net.lumadevelopment.velox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Everything that has to be warm before a Game can start, modelled as
+ * one future per stage. The countdown waits on whenReady() instead of
+ * a fixed delay, can show which stages are still pending, and the
+ * time each stage took is kept for the startup log.
+ */
+public class GameStartup {
+
+    // Stages
+    public static final int PROBLEMS = 0; // problems generated
+    public static final int LEXICON = 1; // number lexicon loaded
+    public static final int RECOGNIZER = 2; // recognizer bound and ready for speech
+    public static final int SCREEN = 3; // problem screen inflated
+    public static final int NARRATION = 4; // problems synthesized for eyes-free mode, straight away otherwise
+    public static final int NUM_OF_STAGES = 5;
+
+    private static final String[] STAGE_NAMES = {"problems", "lexicon", "recognizer", "screen", "narration"};
+
+    private final long startNs;
+    private final CompletableFuture<Void>[] stages;
+    private final long[] stageTimesNs;
+    private final CompletableFuture<Void> all;
+
+    /**
+     * When the first problem was shown, relative to startNs.
+     * 0 until then.
+     */
+    private volatile long firstProblemNs;
+
+    @SuppressWarnings("unchecked")
+    public GameStartup() {
+
+        this.startNs = System.nanoTime();
+        this.stages = new CompletableFuture[NUM_OF_STAGES];
+        this.stageTimesNs = new long[NUM_OF_STAGES];
+
+        for (int i = 0; i < NUM_OF_STAGES; i++) {
+            stages[i] = new CompletableFuture<>();
+        }
+
+        // allOf() alone would wait for every stage even after one failed,
+        // so any failure also fails the whole pipeline straight away
+        this.all = new CompletableFuture<>();
+
+        CompletableFuture.allOf(stages).thenRun(() -> all.complete(null));
+
+        for (CompletableFuture<Void> stage : stages) {
+            stage.exceptionally(cause -> {
+                all.completeExceptionally(cause);
+                return null;
+            });
+        }
+
+    }
+
+    public static String stageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+
+    /**
+     * Marks a stage as done. Later calls for the same stage are ignored,
+     * so callbacks that fire repeatedly (ex. onReadyForSpeech) can call
+     * this every time.
+     */
+    public void complete(int stage) {
+
+        long elapsed = System.nanoTime() - startNs;
+
+        synchronized (stageTimesNs) {
+            if (!stages[stage].isDone()) {
+                stageTimesNs[stage] = elapsed;
+            }
+        }
+
+        stages[stage].complete(null);
+
+    }
+
+    /**
+     * Marks a stage as failed, which fails whenReady() too.
+     */
+    public void fail(int stage, Throwable cause) {
+
+        stages[stage].completeExceptionally(cause);
+
+    }
+
+    /**
+     * @return Completes once every stage has, or exceptionally as soon as
+     * any stage fails.
+     */
+    public CompletableFuture<Void> whenReady() {
+        return all;
+    }
+
+    public boolean isReady() {
+        return all.isDone() && !all.isCompletedExceptionally();
+    }
+
+    public boolean isDone(int stage) {
+        return stages[stage].isDone();
+    }
+
+    public boolean isFailed(int stage) {
+        return stages[stage].isCompletedExceptionally();
+    }
+
+    /**
+     * @return Names of every stage that hasn't completed, in stage order.
+     */
+    public List<String> pendingStages() {
+
+        List<String> pending = new ArrayList<>();
+
+        for (int i = 0; i < NUM_OF_STAGES; i++) {
+            if (!stages[i].isDone()) {
+                pending.add(STAGE_NAMES[i]);
+            }
+        }
+
+        return pending;
+
+    }
+
+    /**
+     * @return Names of every stage that failed, in stage order.
+     */
+    public List<String> failedStages() {
+
+        List<String> failed = new ArrayList<>();
+
+        for (int i = 0; i < NUM_OF_STAGES; i++) {
+            if (stages[i].isCompletedExceptionally()) {
+                failed.add(STAGE_NAMES[i]);
+            }
+        }
+
+        return failed;
+
+    }
+
+    /**
+     * Records that the first problem is on screen, ending startup.
+     */
+    public void firstProblemShown() {
+
+        if (firstProblemNs == 0) {
+            firstProblemNs = System.nanoTime() - startNs;
+        }
+
+    }
+
+    /**
+     * @return How long a stage took from startup, in ns. 0 if it hasn't
+     * completed.
+     */
+    public long getStageTimeNs(int stage) {
+
+        synchronized (stageTimesNs) {
+            return stageTimesNs[stage];
+        }
+
+    }
+
+    public long getFirstProblemNs() {
+        return firstProblemNs;
+    }
+
+    /**
+     * One line with every stage's time, for the startup log.
+     */
+    public String summary() {
+
+        StringBuilder summary = new StringBuilder();
+
+        for (int i = 0; i < NUM_OF_STAGES; i++) {
+
+            summary.append(STAGE_NAMES[i]).append(' ');
+
+            if (stages[i].isCompletedExceptionally()) {
+                summary.append("failed");
+            } else if (!stages[i].isDone()) {
+                summary.append("pending");
+            } else {
+                summary.append(String.format(Locale.US, "%.1f ms", getStageTimeNs(i) / 1e6));
+            }
+
+            summary.append(", ");
+
+        }
+
+        return summary.append(String.format(Locale.US, "first problem %.1f ms", firstProblemNs / 1e6)).toString();
+
+    }
+
+}
@@ -0,0 +1,140 @@
+package net.lumadevelopment.velox;
+
+/**
+ * A binary min-heap over the ids 0 to size() - 1, each with a long
+ * key, that can change any id's key in O(log n). Every id is always
+ * in the heap; position[] tracks where, so there's no searching and
+ * nothing is boxed.
+ *
+ * Not thread safe.
+ */
+public class IndexedMinHeap {
+
+    private final long[] keys;
+
+    /**
+     * heap[i] is the id at heap slot i.
+     */
+    private final int[] heap;
+
+    /**
+     * position[id] is the heap slot the id is in.
+     */
+    private final int[] position;
+
+    /**
+     * Builds the heap in O(n).
+     * @param keys Initial key of each id. Kept and modified, not copied.
+     */
+    public IndexedMinHeap(long[] keys) {
+
+        this.keys = keys;
+        this.heap = new int[keys.length];
+        this.position = new int[keys.length];
+
+        for (int id = 0; id < keys.length; id++) {
+            heap[id] = id;
+            position[id] = id;
+        }
+
+        for (int slot = keys.length / 2 - 1; slot >= 0; slot--) {
+            siftDown(slot);
+        }
+
+    }
+
+    public int size() {
+        return heap.length;
+    }
+
+    /**
+     * @return The id with the smallest key, ties in no particular order.
+     */
+    public int peek() {
+
+        if (heap.length == 0) {
+            throw new IllegalStateException("Heap is empty");
+        }
+
+        return heap[0];
+
+    }
+
+    public long getKey(int id) {
+        return keys[id];
+    }
+
+    /**
+     * Changes an id's key and restores the heap, O(log n).
+     */
+    public void update(int id, long key) {
+
+        long oldKey = keys[id];
+        keys[id] = key;
+
+        if (key < oldKey) {
+            siftUp(position[id]);
+        } else {
+            siftDown(position[id]);
+        }
+
+    }
+
+    private void siftUp(int slot) {
+
+        int id = heap[slot];
+        long key = keys[id];
+
+        while (slot > 0) {
+
+            int parent = (slot - 1) >>> 1;
+            int parentId = heap[parent];
+
+            if (keys[parentId] <= key) {
+                break;
+            }
+
+            heap[slot] = parentId;
+            position[parentId] = slot;
+            slot = parent;
+
+        }
+
+        heap[slot] = id;
+        position[id] = slot;
+
+    }
+
+    private void siftDown(int slot) {
+
+        int id = heap[slot];
+        long key = keys[id];
+        int half = heap.length >>> 1;
+
+        while (slot < half) {
+
+            int child = 2 * slot + 1;
+            int right = child + 1;
+
+            if (right < heap.length && keys[heap[right]] < keys[heap[child]]) {
+                child = right;
+            }
+
+            int childId = heap[child];
+
+            if (key <= keys[childId]) {
+                break;
+            }
+
+            heap[slot] = childId;
+            position[childId] = slot;
+            slot = child;
+
+        }
+
+        heap[slot] = id;
+        position[id] = slot;
+
+    }
+
+}
@@ -0,0 +1,242 @@
+package net.lumadevelopment.velox;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * How long one launch of Velox took, from the process starting (or,
+ * when the process was already running, Velox.onCreate() starting) to
+ * the first frame, and on to fully drawn: the point
+ * Activity.reportFullyDrawn() is called, once the warm up deferred past
+ * the first frame is done and pressing Go won't stall on it.
+ *
+ * Every mark is SystemClock.elapsedRealtime(), in ms. Each launch is
+ * appended as a row of files/launch_timings.csv so a regression shows
+ * up as a step in the numbers.
+ *
+ * Marks are set on the main thread; the rest is safe from any thread
+ * once fully drawn is marked.
+ */
+public class LaunchTimings {
+
+    // Phases of a launch, in order. The ids index into PHASE_NAMES.
+    public static final int PHASE_PROCESS = 0; // Process start to onCreate(): forking, Application, class loading, the constructor
+    public static final int PHASE_CREATE = 1; // onCreate(): inflating activity_main.xml
+    public static final int PHASE_FIRST_FRAME = 2; // onCreate() returning to the first frame being drawn
+    public static final int PHASE_WARM_UP = 3; // First frame to fully drawn: the deferred warm up
+
+    public static final String[] PHASE_NAMES = {"process", "create", "first_frame", "warm_up"};
+
+    public static final String CSV_HEADER = "launch,process_ms,create_ms,first_frame_ms,warm_up_ms,to_first_frame_ms,to_fully_drawn_ms";
+
+    private static final long UNSET = -1;
+
+    /**
+     * Whether this is the first Velox.onCreate() in the process, so
+     * the time since the process started is part of the launch.
+     */
+    private final boolean cold;
+
+    private final long processStartMs;
+    private long createStartMs = UNSET;
+    private long createEndMs = UNSET;
+    private long firstFrameMs = UNSET;
+    private long fullyDrawnMs = UNSET;
+
+    /**
+     * @param cold Whether the process started for this launch
+     * @param processStartMs android.os.Process.getStartElapsedRealtime(),
+     * only used for cold launches
+     */
+    public LaunchTimings(boolean cold, long processStartMs) {
+
+        this.cold = cold;
+        this.processStartMs = processStartMs;
+
+    }
+
+    public void markCreateStart(long nowMs) {
+        createStartMs = nowMs;
+    }
+
+    public void markCreateEnd(long nowMs) {
+        createEndMs = nowMs;
+    }
+
+    public void markFirstFrame(long nowMs) {
+        firstFrameMs = nowMs;
+    }
+
+    public void markFullyDrawn(long nowMs) {
+        fullyDrawnMs = nowMs;
+    }
+
+    public boolean isCold() {
+        return cold;
+    }
+
+    /**
+     * @return When the launch began: the process start for cold
+     * launches, onCreate() otherwise.
+     */
+    private long launchStartMs() {
+        return cold ? processStartMs : createStartMs;
+    }
+
+    /**
+     * @return How long phase took, -1 if it hasn't finished or isn't
+     * part of this launch (PHASE_PROCESS of a warm launch).
+     */
+    public long phaseMs(int phase) {
+
+        switch (phase) {
+
+            case PHASE_PROCESS:
+                return cold ? between(processStartMs, createStartMs) : UNSET;
+
+            case PHASE_CREATE:
+                return between(createStartMs, createEndMs);
+
+            case PHASE_FIRST_FRAME:
+                return between(createEndMs, firstFrameMs);
+
+            case PHASE_WARM_UP:
+                return between(firstFrameMs, fullyDrawnMs);
+
+            default:
+                throw new IllegalArgumentException("No phase " + phase);
+
+        }
+
+    }
+
+    public long toFirstFrameMs() {
+        return between(launchStartMs(), firstFrameMs);
+    }
+
+    public long toFullyDrawnMs() {
+        return between(launchStartMs(), fullyDrawnMs);
+    }
+
+    private static long between(long fromMs, long toMs) {
+        return fromMs == UNSET || toMs == UNSET ? UNSET : toMs - fromMs;
+    }
+
+    /**
+     * @return This launch as a row under CSV_HEADER, without the line
+     * break. Phases that don't apply are left empty.
+     */
+    public String toCsvRow() {
+
+        StringBuilder row = new StringBuilder(cold ? "cold" : "warm");
+
+        for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+            appendMs(row, phaseMs(phase));
+        }
+
+        appendMs(row, toFirstFrameMs());
+        appendMs(row, toFullyDrawnMs());
+
+        return row.toString();
+
+    }
+
+    private static void appendMs(StringBuilder row, long ms) {
+
+        row.append(',');
+
+        if (ms != UNSET) {
+            row.append(ms);
+        }
+
+    }
+
+    /**
+     * @return A one line breakdown for logcat.
+     */
+    public String summary() {
+
+        StringBuilder summary = new StringBuilder(cold ? "Cold" : "Warm");
+        summary.append(String.format(Locale.US, " launch, first frame in %d ms, fully drawn in %d ms (",
+                toFirstFrameMs(), toFullyDrawnMs()));
+
+        boolean first = true;
+
+        for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+
+            long ms = phaseMs(phase);
+
+            if (ms == UNSET) {
+                continue;
+            }
+
+            if (!first) {
+                summary.append(", ");
+            }
+
+            summary.append(PHASE_NAMES[phase]).append(' ').append(ms).append(" ms");
+            first = false;
+
+        }
+
+        return summary.append(')').toString();
+
+    }
+
+    /**
+     * Adds this launch to the end of file, dropping the oldest launches
+     * past maxLaunches. Disk I/O, keep it off the UI thread.
+     */
+    public void appendTo(File file, int maxLaunches) throws IOException {
+
+        List<String> rows = new ArrayList<>();
+
+        if (file.isFile()) {
+
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+
+                String line;
+
+                while ((line = in.readLine()) != null) {
+
+                    if (!line.isEmpty() && !line.equals(CSV_HEADER)) {
+                        rows.add(line);
+                    }
+
+                }
+
+            }
+
+        }
+
+        rows.add(toCsvRow());
+
+        StringBuilder csv = new StringBuilder(CSV_HEADER).append('\n');
+
+        for (int i = Math.max(0, rows.size() - maxLaunches); i < rows.size(); i++) {
+            csv.append(rows.get(i)).append('\n');
+        }
+
+        // Renamed into place, so a crash mid write can't lose the history
+        File temp = new File(file.getPath() + ".tmp");
+
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(csv.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        if (!temp.renameTo(file)) {
+            throw new IOException("Couldn't replace " + file);
+        }
+
+    }
+
+}
@@ -0,0 +1,366 @@
+package net.lumadevelopment.velox;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Counters, gauges and histograms that any thread can record into
+ * without taking a lock, and exporters that publish them in the
+ * Prometheus text format.
+ *
+ * Subsystems register their metrics once, as static fields, and
+ * record into them from then on:
+ *
+ *   private static final Metrics.Counter RESULTS =
+ *           Metrics.registry().counter("velox_speech_results_total", "Recognizer results");
+ *
+ * Counters are LongAdders, striped across cells so threads don't
+ * fight over one value. Histograms have a bucket per power of two,
+ * each an independent atomic, so recording is a leading zero count
+ * and two atomic adds.
+ *
+ * Thread safe.
+ */
+public class Metrics {
+
+    public static final String LOG_TAG = Metrics.class.getSimpleName();
+
+    private static final Metrics registry = new Metrics();
+
+    private static final Pattern NAME = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+
+    private final ConcurrentHashMap<String, Metric> metrics;
+    private final CopyOnWriteArrayList<Exporter> exporters;
+
+    /**
+     * Publishes metrics somewhere. See PrometheusFileExporter and
+     * MetricsHttpServer.
+     */
+    public interface Exporter {
+
+        /**
+         * Publishes the registry's current values. Called by
+         * Metrics.publish(), off the UI thread.
+         */
+        void export(Metrics metrics) throws IOException;
+
+        /**
+         * Stops the exporter and frees what it holds.
+         */
+        void close();
+
+    }
+
+    /**
+     * Registries other than registry() are for tests.
+     */
+    Metrics() {
+
+        this.metrics = new ConcurrentHashMap<>();
+        this.exporters = new CopyOnWriteArrayList<>();
+
+    }
+
+    /**
+     * @return The registry the whole app records into.
+     */
+    public static Metrics registry() {
+        return registry;
+    }
+
+    public Counter counter(String name, String help) {
+        return register(new Counter(name, help));
+    }
+
+    public Gauge gauge(String name, String help) {
+        return register(new Gauge(name, help));
+    }
+
+    public Histogram histogram(String name, String help) {
+        return register(new Histogram(name, help));
+    }
+
+    /**
+     * @return The metric already registered under the name, or this one.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Metric> T register(T metric) {
+
+        if (!NAME.matcher(metric.name).matches()) {
+            throw new IllegalArgumentException("Invalid metric name " + metric.name);
+        }
+
+        Metric registered = metrics.putIfAbsent(metric.name, metric);
+
+        if (registered == null) {
+            return metric;
+        }
+
+        if (registered.getClass() != metric.getClass()) {
+            throw new IllegalArgumentException(metric.name + " is already a " + registered.type());
+        }
+
+        return (T) registered;
+
+    }
+
+    public void addExporter(Exporter exporter) {
+        exporters.add(exporter);
+    }
+
+    public void removeExporter(Exporter exporter) {
+
+        if (exporters.remove(exporter)) {
+            exporter.close();
+        }
+
+    }
+
+    /**
+     * Hands the current values to every exporter. Can do disk I/O,
+     * keep it off the UI thread.
+     */
+    public void publish() {
+
+        for (Exporter exporter : exporters) {
+
+            try {
+
+                exporter.export(this);
+
+            } catch (IOException | RuntimeException e) {
+
+                Log.e(LOG_TAG, "Exporting metrics with " + exporter.getClass().getSimpleName() + " failed", e);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * @return Every metric in the Prometheus text exposition format,
+     * sorted by name. Each metric is read without stopping writers, so
+     * metrics can be a few updates apart from each other.
+     */
+    public String toPrometheusText() {
+
+        StringBuilder text = new StringBuilder();
+
+        for (Metric metric : new TreeMap<>(metrics).values()) {
+
+            text.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+            text.append("# TYPE ").append(metric.name).append(' ').append(metric.type()).append('\n');
+            metric.write(text);
+
+        }
+
+        return text.toString();
+
+    }
+
+    /**
+     * For tests.
+     */
+    Map<String, Metric> getMetrics() {
+        return metrics;
+    }
+
+    public abstract static class Metric {
+
+        final String name;
+        final String help;
+
+        Metric(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        abstract String type();
+
+        abstract void write(StringBuilder text);
+
+    }
+
+    /**
+     * Only ever goes up.
+     */
+    public static final class Counter extends Metric {
+
+        private final LongAdder value = new LongAdder();
+
+        Counter(String name, String help) {
+            super(name, help);
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+
+            if (amount < 0) {
+                throw new IllegalArgumentException("Counters can't go down, got " + amount);
+            }
+
+            value.add(amount);
+
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        @Override
+        String type() {
+            return "counter";
+        }
+
+        @Override
+        void write(StringBuilder text) {
+            text.append(name).append(' ').append(value.sum()).append('\n');
+        }
+
+    }
+
+    /**
+     * A value that's set, ex. the last game's score.
+     */
+    public static final class Gauge extends Metric {
+
+        private final AtomicLong value = new AtomicLong();
+
+        Gauge(String name, String help) {
+            super(name, help);
+        }
+
+        public void set(long newValue) {
+            value.set(newValue);
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+
+        @Override
+        String type() {
+            return "gauge";
+        }
+
+        @Override
+        void write(StringBuilder text) {
+            text.append(name).append(' ').append(value.get()).append('\n');
+        }
+
+    }
+
+    /**
+     * Distribution of non-negative values, ex. latencies, in buckets
+     * doubling in size: bucket 0 holds 0 (and anything negative),
+     * bucket i holds 2^(i - 1) to 2^i - 1. Covers all of long, so
+     * any unit works; put it in the metric's name.
+     */
+    public static final class Histogram extends Metric {
+
+        public static final int NUM_OF_BUCKETS = 64;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(NUM_OF_BUCKETS);
+        private final LongAdder sum = new LongAdder();
+
+        Histogram(String name, String help) {
+            super(name, help);
+        }
+
+        static int bucketOf(long value) {
+            return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+        }
+
+        /**
+         * @return The largest value in a bucket.
+         */
+        static long upperBound(int bucket) {
+            return bucket == NUM_OF_BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+
+        public void record(long value) {
+
+            // Bucket 63 is everything from 2^62 up
+            buckets.incrementAndGet(Math.min(bucketOf(value), NUM_OF_BUCKETS - 1));
+            sum.add(Math.max(0, value));
+
+        }
+
+        public long getCount() {
+
+            long count = 0;
+
+            for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+                count += buckets.get(i);
+            }
+
+            return count;
+
+        }
+
+        public long getSum() {
+            return sum.sum();
+        }
+
+        public long getBucketCount(int bucket) {
+            return buckets.get(bucket);
+        }
+
+        @Override
+        String type() {
+            return "histogram";
+        }
+
+        @Override
+        void write(StringBuilder text) {
+
+            long[] counts = new long[NUM_OF_BUCKETS];
+            int last = 0;
+
+            for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+
+                counts[i] = buckets.get(i);
+
+                if (counts[i] > 0) {
+                    last = i;
+                }
+
+            }
+
+            // Cumulative, up to the highest bucket with anything in it
+            long cumulative = 0;
+
+            for (int i = 0; i <= last; i++) {
+
+                cumulative += counts[i];
+                text.append(name).append("_bucket{le=\"").append(upperBound(i)).append("\"} ")
+                        .append(cumulative).append('\n');
+
+            }
+
+            text.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+            text.append(name).append("_sum ").append(sum.sum()).append('\n');
+            text.append(name).append("_count ").append(cumulative).append('\n');
+
+        }
+
+    }
+
+}
@@ -0,0 +1,132 @@
+package net.lumadevelopment.velox;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves the live metrics at http://127.0.0.1:port/metrics, for debug
+ * builds (see Config.METRICS_HTTP). Bound to the loopback address
+ * only, so nothing off the device can reach it. From a computer:
+ *
+ *   adb forward tcp:9464 tcp:9464
+ *   curl localhost:9464/metrics
+ *
+ * One connection at a time on a single daemon thread, plenty for a
+ * scraper and a developer with curl.
+ */
+public class MetricsHttpServer implements Metrics.Exporter {
+
+    public static final String LOG_TAG = MetricsHttpServer.class.getSimpleName();
+
+    private static final int READ_TIMEOUT_MS = 2000;
+
+    private final Metrics metrics;
+    private final ServerSocket serverSocket;
+    private final Thread thread;
+
+    /**
+     * Binds the socket and starts serving. Network I/O, keep it off
+     * the UI thread.
+     * @param port Port to listen on, 0 for any free one
+     */
+    public MetricsHttpServer(Metrics metrics, int port) throws IOException {
+
+        this.metrics = metrics;
+        this.serverSocket = new ServerSocket(port, 4, InetAddress.getLoopbackAddress());
+        this.thread = new Thread(this::serve, LOG_TAG);
+
+        thread.setDaemon(true);
+        thread.start();
+
+        Log.d(LOG_TAG, "Serving metrics on http://127.0.0.1:" + getPort() + "/metrics");
+
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void serve() {
+
+        while (!serverSocket.isClosed()) {
+
+            try (Socket socket = serverSocket.accept()) {
+
+                socket.setSoTimeout(READ_TIMEOUT_MS);
+                respond(socket);
+
+            } catch (IOException e) {
+
+                if (!serverSocket.isClosed()) {
+                    Log.e(LOG_TAG, "Metrics request failed", e);
+                }
+
+            }
+
+        }
+
+    }
+
+    private void respond(Socket socket) throws IOException {
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        String requestLine = in.readLine();
+
+        // Headers aren't needed, but are read so the client isn't reset
+        String header = in.readLine();
+        while (header != null && !header.isEmpty()) {
+            header = in.readLine();
+        }
+
+        String status;
+        String body;
+
+        if (requestLine != null && (requestLine.startsWith("GET /metrics ") || requestLine.startsWith("GET / "))) {
+            status = "200 OK";
+            body = metrics.toPrometheusText();
+        } else {
+            status = "404 Not Found";
+            body = "Try /metrics\n";
+        }
+
+        byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        String headers = "HTTP/1.0 " + status + "\r\n"
+                + "Content-Type: text/plain; version=0.0.4; charset=utf-8\r\n"
+                + "Content-Length: " + bodyBytes.length + "\r\n"
+                + "Connection: close\r\n\r\n";
+
+        OutputStream out = socket.getOutputStream();
+        out.write(headers.getBytes(StandardCharsets.US_ASCII));
+        out.write(bodyBytes);
+        out.flush();
+
+    }
+
+    /**
+     * Always serves live values, so publishing has nothing to do.
+     */
+    @Override
+    public void export(Metrics metrics) {
+
+    }
+
+    @Override
+    public void close() {
+
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Couldn't close the metrics server", e);
+        }
+
+    }
+
+}
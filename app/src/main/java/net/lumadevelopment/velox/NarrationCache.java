@@ -0,0 +1,209 @@
+package net.lumadevelopment.velox;
+
+import android.util.Log;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Synthesized problem clips on disk, one WAV file per (locale,
+ * equation), so text to speech only has to run for problems the
+ * player hasn't heard before. Bounded by total size, least recently
+ * used first out. forMaxNumber() sizes it to hold a clip for every
+ * problem up to a max number (about 60 MB for the 974 at the default
+ * MAX_NUMBER of 30), within Config.NARRATION_CACHE_MAX_BYTES, so after
+ * a few sessions almost every clip is a hit.
+ *
+ * Recency survives restarts through each file's modified time, which
+ * get() bumps.
+ *
+ * Thread safe.
+ */
+public class NarrationCache {
+
+    public static final String LOG_TAG = NarrationCache.class.getSimpleName();
+
+    private static final String EXTENSION = ".wav";
+    private static final String[] OPERATION_NAMES = {"plus", "minus", "div", "times"};
+
+    private final File directory;
+    private final long maxBytes;
+
+    /**
+     * Cached clip sizes by key, least recently used first.
+     */
+    private final LinkedHashMap<String, Long> entries;
+    private long totalBytes;
+
+    private int hits;
+    private int misses;
+    private int evictions;
+
+    /**
+     * Scans what's already cached. Disk I/O, keep it off the UI thread.
+     * @param directory Where the clips live, created if needed
+     * @param maxBytes How big the clips can get in total
+     */
+    public NarrationCache(File directory, long maxBytes) {
+
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.entries = new LinkedHashMap<>(64, 0.75f, true);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(LOG_TAG, "Couldn't create " + directory);
+        }
+
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+
+        if (files != null) {
+
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+
+            for (File file : files) {
+
+                String name = file.getName();
+                entries.put(name.substring(0, name.length() - EXTENSION.length()), file.length());
+                totalBytes += file.length();
+
+            }
+
+        }
+
+        evict();
+
+    }
+
+    /**
+     * @return A cache in directory with room for a clip of every
+     * problem up to maxNumber, within Config.NARRATION_CACHE_MAX_BYTES.
+     * Disk I/O, keep it off the UI thread.
+     */
+    public static NarrationCache forMaxNumber(File directory, int maxNumber) {
+        return new NarrationCache(directory, bytesFor(new FactUniverse(maxNumber).size()));
+    }
+
+    /**
+     * @return How much room clips of that many problems take up,
+     * within Config.NARRATION_CACHE_MAX_BYTES.
+     */
+    static long bytesFor(int problems) {
+        return Math.min((long) problems * Config.NARRATION_CLIP_BYTES, Config.NARRATION_CACHE_MAX_BYTES);
+    }
+
+    /**
+     * @return The cache key for a problem, also its file name, ex.
+     * "en-US_7_times_4".
+     */
+    public static String key(Locale locale, byte operation, int operandOne, int operandTwo) {
+        return locale.toLanguageTag() + "_" + operandOne + "_" + OPERATION_NAMES[operation] + "_" + operandTwo;
+    }
+
+    /**
+     * @return The cached clip for key, or null if there isn't one.
+     * Counts as a use.
+     */
+    public synchronized File get(String key) {
+
+        if (entries.get(key) == null) {
+            misses++;
+            return null;
+        }
+
+        File file = fileFor(key);
+
+        if (!file.isFile()) {
+
+            // Cleared from under us, ex. by the system freeing cache space
+            totalBytes -= entries.remove(key);
+            misses++;
+            return null;
+
+        }
+
+        hits++;
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+
+    }
+
+    /**
+     * @return Where to synthesize a clip for key before handing it to
+     * put(), so a half written clip is never mistaken for a cached one.
+     */
+    public File pendingFileFor(String key) {
+        return new File(directory, key + ".pending");
+    }
+
+    /**
+     * Moves a freshly synthesized clip into the cache, evicting the
+     * least recently used clips if it's now over size.
+     * @return The clip's place in the cache, or null if it couldn't be moved.
+     */
+    public synchronized File put(String key, File pending) {
+
+        File file = fileFor(key);
+        Long previous = entries.remove(key);
+
+        if (previous != null) {
+            totalBytes -= previous;
+        }
+
+        if (!pending.renameTo(file)) {
+
+            Log.e(LOG_TAG, "Couldn't move " + pending + " into the cache");
+            return null;
+
+        }
+
+        long size = file.length();
+        entries.put(key, size);
+        totalBytes += size;
+        evict();
+
+        return entries.containsKey(key) ? file : null;
+
+    }
+
+    private void evict() {
+
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+
+            Map.Entry<String, Long> entry = eldest.next();
+            totalBytes -= entry.getValue();
+            eldest.remove();
+            evictions++;
+
+            if (!fileFor(entry.getKey()).delete()) {
+                Log.e(LOG_TAG, "Couldn't evict " + entry.getKey());
+            }
+
+        }
+
+    }
+
+    private File fileFor(String key) {
+        return new File(directory, key + EXTENSION);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized String summary() {
+        return "Clips cached: " + entries.size() + " (" + totalBytes / 1024 + " KB), hits: " + hits
+                + ", misses: " + misses + ", evictions: " + evictions;
+    }
+
+}
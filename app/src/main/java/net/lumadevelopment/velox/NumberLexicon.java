@@ -0,0 +1,213 @@
+package net.lumadevelopment.velox;
+
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * The number words for every number from 0 (inclusive) to
+ * NumberLexiconTables.MAX_NUMBER (inclusive) in one locale, just in
+ * case the phone predicts a number word instead of an actual number
+ * for the audio.
+ *
+ * The words are generated at build time by the generateNumberLexicon
+ * Gradle task, so nothing here needs a number-to-words library at
+ * runtime. Words are normalized: lower case, hyphens replaced by
+ * spaces ("twenty one").
+ */
+public class NumberLexicon {
+
+    public static final String LOG_TAG = NumberLexicon.class.getSimpleName();
+
+    /**
+     * Every number word in sorted order, separated by '\n'.
+     */
+    private final String sortedWords;
+
+    /**
+     * charAt(i) is the value of the i-th word in sortedWords.
+     */
+    private final String sortedValues;
+
+    /**
+     * Where each word starts in sortedWords. Has one extra entry
+     * at the end so word i always spans
+     * [wordStarts[i], wordStarts[i + 1] - 1).
+     */
+    private final int[] wordStarts;
+
+    /**
+     * The words for each value, split out of sortedWords once so
+     * wordFor() doesn't allocate.
+     */
+    private final String[] wordsByValue;
+
+    /**
+     * The most space separated words any number word spans,
+     * for example "twenty one" spans two.
+     */
+    private final int maxWordsPerNumber;
+
+    private NumberLexicon(String sortedWords, String sortedValues) {
+
+        this.sortedWords = sortedWords;
+        this.sortedValues = sortedValues;
+
+        int count = sortedValues.length();
+
+        this.wordStarts = new int[count + 1];
+        this.wordsByValue = new String[count];
+
+        int start = 0;
+        int mostWords = 1;
+
+        for (int i = 0; i < count; i++) {
+
+            int end = sortedWords.indexOf('\n', start);
+
+            if (end < 0) {
+                end = sortedWords.length();
+            }
+
+            int value = sortedValues.charAt(i);
+
+            wordStarts[i] = start;
+            wordsByValue[value] = sortedWords.substring(start, end);
+
+            int words = 1;
+            for (int c = start; c < end; c++) {
+                if (sortedWords.charAt(c) == ' ') {
+                    words++;
+                }
+            }
+
+            mostWords = Math.max(mostWords, words);
+            start = end + 1;
+
+        }
+
+        wordStarts[count] = start;
+        this.maxWordsPerNumber = mostWords;
+
+    }
+
+    /**
+     * Finds the generated lexicon for a locale. Matches on the full
+     * language tag first, then just the language, then falls back to
+     * the first generated locale, the same way Tradukisto's
+     * getByLocaleOrDefault() falls back to English.
+     * @param locale Locale the speech recognizer is listening in
+     * @return The lexicon for that locale (or the fallback)
+     */
+    public static NumberLexicon forLocale(Locale locale) {
+
+        String[] locales = NumberLexiconTables.LOCALES;
+        int match = -1;
+
+        for (int i = 0; i < locales.length && match < 0; i++) {
+            if (Locale.forLanguageTag(locales[i]).equals(locale)) {
+                match = i;
+            }
+        }
+
+        for (int i = 0; i < locales.length && match < 0; i++) {
+            if (Locale.forLanguageTag(locales[i]).getLanguage().equals(locale.getLanguage())) {
+                match = i;
+            }
+        }
+
+        if (match < 0) {
+
+            Log.e(LOG_TAG, "No number lexicon generated for " + locale + ", falling back to " + locales[0]
+                    + ". Add it to veloxLexiconLocales in gradle.properties.");
+            match = 0;
+
+        }
+
+        return new NumberLexicon(NumberLexiconTables.SORTED_WORDS[match], NumberLexiconTables.SORTED_VALUES[match]);
+
+    }
+
+    /**
+     * @return The largest number this lexicon has a word for.
+     */
+    public int maxNumber() {
+        return wordsByValue.length - 1;
+    }
+
+    /**
+     * @return The most space separated words any number word spans.
+     */
+    public int maxWordsPerNumber() {
+        return maxWordsPerNumber;
+    }
+
+    /**
+     * @param value Number from 0 (inclusive) to maxNumber() (inclusive)
+     * @return The number word for value, or null if out of range.
+     */
+    public String wordFor(int value) {
+
+        if (value < 0 || value >= wordsByValue.length) {
+            return null;
+        }
+
+        return wordsByValue[value];
+
+    }
+
+    /**
+     * Binary searches the sorted words for an exact match.
+     * @param word A normalized number word, ex. "twenty one"
+     * @return The number the word stands for, or -1 if it isn't
+     * a number word.
+     */
+    public int valueOf(CharSequence word) {
+
+        int low = 0;
+        int high = sortedValues.length() - 1;
+
+        while (low <= high) {
+
+            int mid = (low + high) >>> 1;
+            int comparison = compareWord(mid, word);
+
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return sortedValues.charAt(mid);
+            }
+
+        }
+
+        return -1;
+
+    }
+
+    /**
+     * Compares the index-th sorted word against word the same way
+     * String.compareTo() does, without copying the sorted word out.
+     */
+    private int compareWord(int index, CharSequence word) {
+
+        int start = wordStarts[index];
+        int length = wordStarts[index + 1] - 1 - start;
+        int shared = Math.min(length, word.length());
+
+        for (int i = 0; i < shared; i++) {
+
+            int difference = sortedWords.charAt(start + i) - word.charAt(i);
+
+            if (difference != 0) {
+                return difference;
+            }
+
+        }
+
+        return length - word.length();
+
+    }
+
+}
@@ -0,0 +1,59 @@
+package net.lumadevelopment.velox;
+
+import java.util.Locale;
+
+/**
+ * What RecognizerReadiness needs to know about on device speech
+ * recognition. PlatformOnDeviceRecognition asks Android; tests hand
+ * RecognizerReadiness a fake.
+ */
+public interface OnDeviceRecognition {
+
+    // How far along the on device model for a language is
+    int SUPPORT_INSTALLED = 0; // On the device, ready to use
+    int SUPPORT_DOWNLOADING = 1; // Download already in progress
+    int SUPPORT_DOWNLOADABLE = 2; // Supported, but not on the device yet
+    int SUPPORT_UNSUPPORTED = 3; // No on device model for the language
+
+    /**
+     * Receives the answer to checkSupport(), on the main thread.
+     */
+    interface SupportCallback {
+
+        /**
+         * @param support One of the SUPPORT_ constants
+         */
+        void onSupport(int support);
+
+        /**
+         * @param error A SpeechRecognizer.ERROR_ code
+         */
+        void onError(int error);
+
+    }
+
+    /**
+     * @return Whether the device has an on device recognizer at all.
+     */
+    boolean isAvailable();
+
+    /**
+     * @return Whether checkSupport() and triggerModelDownload() work,
+     * API 33 and up.
+     */
+    boolean canCheckSupport();
+
+    /**
+     * Asks whether the on device recognizer has a model for locale.
+     * Answers exactly once, through callback.
+     */
+    void checkSupport(Locale locale, SupportCallback callback);
+
+    /**
+     * Asks the system to download the on device model for locale in
+     * the background. Returns straight away.
+     * @return Whether the request was handed to the recognition service
+     */
+    boolean triggerModelDownload(Locale locale);
+
+}
@@ -0,0 +1,94 @@
+package net.lumadevelopment.velox;
+
+/**
+ * How often each operation should come up. Starts from
+ * Config.operationWeights() and, when Config.ADAPTIVE_OPERATION_WEIGHTS
+ * is on, leans towards the operations the player is slow or inaccurate
+ * at. Each answer updates an exponentially weighted moving average of
+ * the player's accuracy and response time for that operation in O(1);
+ * ProblemGenerator turns a snapshot of the weights into an AliasTable
+ * between games.
+ */
+public class OperationWeights {
+
+    /**
+     * Shared by every game in this process, so what's learned in one
+     * game carries over to the next.
+     */
+    private static final OperationWeights session = new OperationWeights(Config.operationWeights());
+
+    private final double[] baseWeights;
+
+    // EWMAs, indexed by operation
+    private final double[] accuracy;
+    private final double[] responseTimeInMs;
+
+    public OperationWeights(double[] baseWeights) {
+
+        this.baseWeights = baseWeights.clone();
+        this.accuracy = new double[baseWeights.length];
+        this.responseTimeInMs = new double[baseWeights.length];
+
+        // Until we know better, assume the player is right
+        // every time, half way through the time limit
+        for (int i = 0; i < baseWeights.length; i++) {
+            accuracy[i] = 1;
+            responseTimeInMs[i] = Config.TIME_PER_PROBLEM_IN_MS / 2.0;
+        }
+
+    }
+
+    public static OperationWeights session() {
+        return session;
+    }
+
+    /**
+     * Folds one answer into the operation's averages.
+     * @param operation ProblemSet operation constant
+     * @param correct Whether the player got it before the time ran out
+     * @param responseTimeInMs How long the player took
+     */
+    public synchronized void record(int operation, boolean correct, int responseTimeInMs) {
+
+        double alpha = Config.ADAPTIVE_EWMA_ALPHA;
+
+        accuracy[operation] += alpha * ((correct ? 1 : 0) - accuracy[operation]);
+        this.responseTimeInMs[operation] += alpha * (responseTimeInMs - this.responseTimeInMs[operation]);
+
+    }
+
+    /**
+     * @return Weight per operation for the next game. The base weights
+     * if adaptive weights are off, otherwise each base weight scaled
+     * up by how much trouble the player has with that operation.
+     */
+    public synchronized double[] currentWeights() {
+
+        double[] weights = baseWeights.clone();
+
+        if (!Config.ADAPTIVE_OPERATION_WEIGHTS) {
+            return weights;
+        }
+
+        for (int i = 0; i < weights.length; i++) {
+
+            // 0 when always right instantly, up to 2 when always timing out
+            double difficulty = (1 - accuracy[i]) + Math.min(1, responseTimeInMs[i] / Config.TIME_PER_PROBLEM_IN_MS);
+
+            weights[i] *= 1 + Config.ADAPTIVE_GAIN * difficulty;
+
+        }
+
+        return weights;
+
+    }
+
+    public synchronized double getAccuracy(int operation) {
+        return accuracy[operation];
+    }
+
+    public synchronized double getResponseTimeInMs(int operation) {
+        return responseTimeInMs[operation];
+    }
+
+}
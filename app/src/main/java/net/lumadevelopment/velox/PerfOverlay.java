@@ -0,0 +1,115 @@
+package net.lumadevelopment.velox;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.View;
+import android.widget.TextView;
+
+import java.util.Locale;
+
+/**
+ * A text overlay on the problem screen for diagnosing lag on a
+ * tester's phone without logcat. Debug builds only, toggled by long
+ * pressing the HUD.
+ *
+ * Everything shown is a counter something else already keeps (tick
+ * jitter in Game, recognizer state and stage latencies in
+ * SpeechManager, stalls in FrameStats), read a couple of times a
+ * second on the UI thread. Showing the overlay adds one small
+ * TextView layout per refresh and no work to the paths it measures.
+ */
+public class PerfOverlay {
+
+    public static final String LOG_TAG = PerfOverlay.class.getSimpleName();
+
+    private final TextView view;
+    private final Game game;
+    private final SpeechManager speechMgr;
+    private final FrameStats frameStats;
+    private final Handler handler;
+    private final StringBuilder text;
+
+    // Only touched on the UI thread
+    private boolean shown;
+
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+
+            if (!shown) {
+                return;
+            }
+
+            render();
+            handler.postDelayed(this, Config.PERF_OVERLAY_REFRESH_MS);
+
+        }
+    };
+
+    public PerfOverlay(TextView view, Game game, SpeechManager speechMgr, FrameStats frameStats) {
+
+        this.view = view;
+        this.game = game;
+        this.speechMgr = speechMgr;
+        this.frameStats = frameStats;
+        this.handler = new Handler(Looper.getMainLooper());
+        this.text = new StringBuilder(256);
+
+    }
+
+    /**
+     * Shows or hides the overlay. UI thread only.
+     */
+    public void toggle() {
+
+        shown = !shown;
+        view.setVisibility(shown ? View.VISIBLE : View.GONE);
+        handler.removeCallbacks(refresh);
+
+        Log.d(LOG_TAG, "Performance overlay " + (shown ? "shown" : "hidden"));
+
+        if (shown) {
+            refresh.run();
+        }
+
+    }
+
+    /**
+     * Stops refreshing for good. UI thread only.
+     */
+    public void stop() {
+
+        shown = false;
+        handler.removeCallbacks(refresh);
+
+    }
+
+    private void render() {
+
+        long nowNs = System.nanoTime();
+        long lastStartNs = speechMgr.getLastStartListeningNs();
+        Runtime runtime = Runtime.getRuntime();
+        long heapUsedKb = (runtime.totalMemory() - runtime.freeMemory()) / 1024;
+
+        text.setLength(0);
+        text.append(String.format(Locale.US, "tick jitter   %d us (max %d us)%n",
+                game.getLastTickJitterUs(), game.getMaxTickJitterUs()));
+        text.append(String.format(Locale.US, "recognizer    %s, %s since start%n",
+                speechMgr.getStateName(), lastStartNs == 0 ? "-" : (nowNs - lastStartNs) / 1_000_000 + " ms"));
+        text.append(String.format(Locale.US, "last speech   ready %s, wait %s, speak %s, recognize %s%n",
+                stage(speechMgr.getLastReadyMs()), stage(speechMgr.getLastWaitMs()),
+                stage(speechMgr.getLastSpeakingMs()), stage(speechMgr.getLastRecognitionMs())));
+        text.append(String.format(Locale.US, "restarts      %d%n", speechMgr.getRestartCount()));
+        text.append(String.format(Locale.US, "main stalls   %d%n", frameStats.getTotalStalls()));
+        text.append(String.format(Locale.US, "heap          %,d KB", heapUsedKb));
+
+        view.setText(text);
+
+    }
+
+    private static String stage(int ms) {
+        return ms < 0 ? "-" : ms + " ms";
+    }
+
+}
@@ -0,0 +1,147 @@
+package net.lumadevelopment.velox;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.speech.RecognitionSupport;
+import android.speech.RecognitionSupportCallback;
+import android.speech.RecognizerIntent;
+import android.speech.SpeechRecognizer;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * OnDeviceRecognition backed by Android's SpeechRecognizer. Like any
+ * SpeechRecognizer use, call it from the main thread.
+ */
+public class PlatformOnDeviceRecognition implements OnDeviceRecognition {
+
+    private final Context context;
+
+    /**
+     * The recognizer the last download request went through. The
+     * request waits in it until its service is bound, and destroy()
+     * would drop it, so it's only destroyed by the next check.
+     */
+    private SpeechRecognizer downloadRecognizer;
+
+    public PlatformOnDeviceRecognition(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && SpeechRecognizer.isOnDeviceRecognitionAvailable(context);
+    }
+
+    @Override
+    public boolean canCheckSupport() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU;
+    }
+
+    @Override
+    public void checkSupport(Locale locale, SupportCallback callback) {
+
+        if (!canCheckSupport()) {
+            callback.onError(SpeechRecognizer.ERROR_CLIENT);
+            return;
+        }
+
+        // By now the download request has long since reached the service
+        destroyDownloadRecognizer();
+
+        // Support is asked of a recognizer, which is only needed until it answers
+        SpeechRecognizer recognizer = SpeechRecognizer.createOnDeviceSpeechRecognizer(context);
+
+        recognizer.checkRecognitionSupport(intentFor(locale), context.getMainExecutor(), new RecognitionSupportCallback() {
+
+            @Override
+            public void onSupportResult(RecognitionSupport support) {
+
+                recognizer.destroy();
+                callback.onSupport(classify(support, locale));
+
+            }
+
+            @Override
+            public void onError(int error) {
+
+                recognizer.destroy();
+                callback.onError(error);
+
+            }
+
+        });
+
+    }
+
+    @Override
+    public boolean triggerModelDownload(Locale locale) {
+
+        if (!canCheckSupport()) {
+            return false;
+        }
+
+        destroyDownloadRecognizer();
+
+        // Kept alive until its service connects and takes the request
+        downloadRecognizer = SpeechRecognizer.createOnDeviceSpeechRecognizer(context);
+        downloadRecognizer.triggerModelDownload(intentFor(locale));
+        return true;
+
+    }
+
+    private void destroyDownloadRecognizer() {
+
+        if (downloadRecognizer != null) {
+            downloadRecognizer.destroy();
+            downloadRecognizer = null;
+        }
+
+    }
+
+    private static Intent intentFor(Locale locale) {
+
+        Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
+        intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM);
+        intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE, locale.toLanguageTag());
+        return intent;
+
+    }
+
+    private static int classify(RecognitionSupport support, Locale locale) {
+
+        String tag = locale.toLanguageTag();
+
+        if (contains(support.getInstalledOnDeviceLanguages(), tag)) {
+            return SUPPORT_INSTALLED;
+        }
+
+        if (contains(support.getPendingOnDeviceLanguages(), tag)) {
+            return SUPPORT_DOWNLOADING;
+        }
+
+        if (contains(support.getSupportedOnDeviceLanguages(), tag)) {
+            return SUPPORT_DOWNLOADABLE;
+        }
+
+        return SUPPORT_UNSUPPORTED;
+
+    }
+
+    private static boolean contains(List<String> languages, String tag) {
+
+        for (String language : languages) {
+
+            if (language.equalsIgnoreCase(tag)) {
+                return true;
+            }
+
+        }
+
+        return false;
+
+    }
+
+}
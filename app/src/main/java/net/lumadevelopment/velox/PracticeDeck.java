@@ -0,0 +1,449 @@
+package net.lumadevelopment.velox;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Spaced repetition over every fact in a FactUniverse, for practice
+ * mode. Each fact the player has seen sits in an IndexedMinHeap keyed
+ * on when it's next due and, among facts due at the same time, how
+ * often the player gets it wrong. The next problem is the top of the
+ * heap whenever it's due, and a new fact otherwise, so reviews always
+ * come before new material. Each answer reschedules its fact in
+ * O(log n).
+ *
+ * Facts move up a box each time they're answered correctly and
+ * quickly, and each box waits four times longer than the one before
+ * (30 s, 2 min, 8 min, ... about 3 months). A miss drops the fact
+ * back to the first box. New facts are introduced in shuffled order,
+ * so a new deck doesn't start with 1 + 1, 1 + 2, ...
+ *
+ * Only the facts the player has seen are saved, about 5 bytes each,
+ * so the file stays small and loading is a read plus an O(n) heapify
+ * even with a million facts in the universe.
+ *
+ * Thread safe.
+ */
+public class PracticeDeck {
+
+    public static final String LOG_TAG = PracticeDeck.class.getSimpleName();
+
+    public static final byte VERSION = 1;
+
+    /**
+     * How long each box waits before its facts are due again, in
+     * seconds. Four times longer each box.
+     */
+    private static final int[] BOX_INTERVALS_S = {30, 120, 480, 1_920, 7_680, 30_720, 122_880, 491_520, 1_966_080, 7_864_320};
+
+    private static final int MAX_ERROR_SCORE = 255;
+
+    /**
+     * Due time of facts never seen, far past any real one, so they
+     * sink below every seen fact in the heap.
+     */
+    private static final long NEVER = 1L << 40;
+
+    /**
+     * The deck shared by every practice game in this process, see session().
+     */
+    private static PracticeDeck session;
+    private static File sessionFile;
+
+    private final FactUniverse universe;
+
+    /**
+     * Due times are stored in seconds since this wall clock second,
+     * so they fit the heap key with room to spare.
+     */
+    private final long baseSeconds;
+
+    /**
+     * Shuffles the order new facts are introduced in.
+     */
+    private final long seed;
+
+    private final byte[] boxes;
+    private final int[] errorScores;
+    private final IndexedMinHeap heap;
+    private int seenCount;
+
+    /**
+     * Every fact in the order they're introduced, and how far into it
+     * the deck is. Facts before newCursor have all been seen.
+     */
+    private final int[] newOrder;
+    private int newCursor;
+
+    /**
+     * @param keys Heap key of every fact, taken over by the heap
+     */
+    private PracticeDeck(FactUniverse universe, long baseSeconds, long seed, byte[] boxes, int[] errorScores,
+                         long[] keys, int seenCount) {
+
+        this.universe = universe;
+        this.baseSeconds = baseSeconds;
+        this.seed = seed;
+        this.boxes = boxes;
+        this.errorScores = errorScores;
+        this.seenCount = seenCount;
+
+        // One O(n) heapify, however many facts have been seen
+        this.heap = new IndexedMinHeap(keys);
+
+        int size = universe.size();
+        this.newOrder = new int[size];
+        SplittableRandom random = new SplittableRandom(seed);
+
+        for (int i = 0; i < size; i++) {
+
+            int j = random.nextInt(i + 1);
+            newOrder[i] = newOrder[j];
+            newOrder[j] = i;
+
+        }
+
+    }
+
+    /**
+     * @return A deck where every fact is new.
+     */
+    public static PracticeDeck create(FactUniverse universe, long nowSeconds, long seed) {
+
+        int size = universe.size();
+        long[] keys = new long[size];
+        Arrays.fill(keys, key(NEVER, 0));
+
+        return new PracticeDeck(universe, nowSeconds, seed, new byte[size], new int[size], keys, 0);
+
+    }
+
+    /**
+     * The practice deck for Config.MAX_NUMBER, loaded from (and saved
+     * to, see saveSession()) the app's files directory the first time
+     * it's asked for. Starts a new deck if there isn't a usable one.
+     */
+    public static synchronized PracticeDeck session(File filesDir) {
+
+        if (session != null) {
+            return session;
+        }
+
+        long startTime = System.nanoTime();
+        FactUniverse universe = new FactUniverse(Config.MAX_NUMBER);
+        sessionFile = new File(filesDir, "practice-" + Config.MAX_NUMBER + ".deck");
+
+        if (sessionFile.isFile()) {
+
+            try (InputStream in = new FileInputStream(sessionFile)) {
+
+                session = read(in, universe);
+
+            } catch (IOException e) {
+
+                Log.e(LOG_TAG, "Couldn't load " + sessionFile + ", starting a new deck", e);
+
+            }
+
+        }
+
+        if (session == null) {
+            session = create(universe, System.currentTimeMillis() / 1000, ProblemGenerator.newSeed());
+        }
+
+        Log.d(LOG_TAG, "Practice deck of " + universe.size() + " facts (" + session.getSeenCount()
+                + " seen) ready in " + (System.nanoTime() - startTime) / 1000 + " us.");
+
+        return session;
+
+    }
+
+    /**
+     * Writes the session deck back to where session() loaded it from.
+     * Disk I/O, keep it off the UI thread.
+     */
+    public static void saveSession() {
+
+        PracticeDeck deck;
+        File file;
+
+        synchronized (PracticeDeck.class) {
+            deck = session;
+            file = sessionFile;
+        }
+
+        if (deck == null) {
+            return;
+        }
+
+        // Written next to the old deck and renamed over it, so a crash
+        // mid-write can't lose the player's progress
+        File temp = new File(file.getPath() + ".tmp");
+
+        try (OutputStream out = new FileOutputStream(temp)) {
+
+            deck.write(out);
+
+        } catch (IOException e) {
+
+            Log.e(LOG_TAG, "Failed to save practice deck to " + temp, e);
+            return;
+
+        }
+
+        if (!temp.renameTo(file)) {
+            Log.e(LOG_TAG, "Failed to replace " + file);
+        }
+
+    }
+
+    /**
+     * Heap key: due time first, then the higher error score first.
+     */
+    private static long key(long dueSeconds, int errorScore) {
+        return (dueSeconds << 8) | (MAX_ERROR_SCORE - errorScore);
+    }
+
+    private long relativeSeconds(long nowSeconds) {
+        return nowSeconds - baseSeconds;
+    }
+
+    public FactUniverse getUniverse() {
+        return universe;
+    }
+
+    /**
+     * @param nowSeconds Wall clock time, in seconds
+     * @return The fact to practice next: the most overdue seen fact if
+     * any are due, otherwise the next new one, otherwise (every fact
+     * seen) whichever seen fact is due soonest.
+     */
+    public synchronized int next(long nowSeconds) {
+
+        int top = heap.peek();
+
+        if (!isNew(top) && heap.getKey(top) >> 8 <= relativeSeconds(nowSeconds)) {
+            return top;
+        }
+
+        while (newCursor < newOrder.length && !isNew(newOrder[newCursor])) {
+            newCursor++;
+        }
+
+        return newCursor < newOrder.length ? newOrder[newCursor] : top;
+
+    }
+
+    /**
+     * Reschedules a fact after the player answered it.
+     * @param correct Whether they got it before the time ran out
+     * @param responseTimeInMs How long they took
+     * @param nowSeconds Wall clock time, in seconds
+     */
+    public synchronized void record(int fact, boolean correct, int responseTimeInMs, long nowSeconds) {
+
+        if (isNew(fact)) {
+            seenCount++;
+        }
+
+        int box = boxes[fact];
+        int errorScore = errorScores[fact];
+
+        if (!correct) {
+
+            box = 0;
+            errorScore += (MAX_ERROR_SCORE - errorScore + 1) / 2;
+
+        } else {
+
+            // Correct but slow stays in its box
+            if (responseTimeInMs <= Config.TIME_PER_PROBLEM_IN_MS / 2) {
+                box = Math.min(box + 1, BOX_INTERVALS_S.length - 1);
+            }
+
+            errorScore -= (errorScore + 3) / 4;
+
+        }
+
+        boxes[fact] = (byte) box;
+        errorScores[fact] = errorScore;
+        heap.update(fact, key(relativeSeconds(nowSeconds) + BOX_INTERVALS_S[box], errorScore));
+
+    }
+
+    private boolean isNew(int fact) {
+        return heap.getKey(fact) >> 8 == NEVER;
+    }
+
+    public synchronized int getSeenCount() {
+        return seenCount;
+    }
+
+    public synchronized int getBox(int fact) {
+        return boxes[fact];
+    }
+
+    public synchronized int getErrorScore(int fact) {
+        return errorScores[fact];
+    }
+
+    /**
+     * @return When the fact is next due, in wall clock seconds, or
+     * Long.MAX_VALUE if it's never been seen.
+     */
+    public synchronized long getDueSeconds(int fact) {
+        return isNew(fact) ? Long.MAX_VALUE : baseSeconds + (heap.getKey(fact) >> 8);
+    }
+
+    /**
+     * Layout, all integers unsigned LEB128 varints unless noted:
+     *
+     *   byte     VERSION
+     *   varint   max number, number of facts
+     *   8 bytes  base seconds, seed
+     *   varint   number of seen facts
+     *   each seen fact, by id:
+     *     varint id minus the previous seen id
+     *     byte   box
+     *     byte   error score
+     *     varint due, seconds since base
+     */
+    public synchronized void write(OutputStream stream) throws IOException {
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+
+        out.writeByte(VERSION);
+        writeVarint(out, universe.getMaxNumber());
+        writeVarint(out, universe.size());
+        out.writeLong(baseSeconds);
+        out.writeLong(seed);
+        writeVarint(out, seenCount);
+
+        int previous = 0;
+
+        for (int fact = 0; fact < universe.size(); fact++) {
+
+            if (isNew(fact)) {
+                continue;
+            }
+
+            writeVarint(out, fact - previous);
+            out.writeByte(boxes[fact]);
+            out.writeByte(errorScores[fact]);
+            writeVarint(out, (int) Math.min(heap.getKey(fact) >> 8, Integer.MAX_VALUE));
+            previous = fact;
+
+        }
+
+        out.flush();
+
+    }
+
+    /**
+     * Reads a deck written by write().
+     * @param universe The universe for the deck's max number
+     * @throws IOException If the deck is malformed or for another universe.
+     */
+    public static PracticeDeck read(InputStream stream, FactUniverse universe) throws IOException {
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+
+        byte version = in.readByte();
+
+        if (version != VERSION) {
+            throw new IOException("Unknown practice deck version " + version);
+        }
+
+        int maxNumber = readVarint(in);
+        int size = readVarint(in);
+
+        if (maxNumber != universe.getMaxNumber() || size != universe.size()) {
+            throw new IOException("Deck is for max number " + maxNumber + " (" + size + " facts), not "
+                    + universe.getMaxNumber() + " (" + universe.size() + " facts)");
+        }
+
+        long baseSeconds = in.readLong();
+        long seed = in.readLong();
+        int seen = readVarint(in);
+
+        byte[] boxes = new byte[size];
+        int[] errorScores = new int[size];
+        long[] keys = new long[size];
+        Arrays.fill(keys, key(NEVER, 0));
+
+        int fact = 0;
+
+        for (int i = 0; i < seen; i++) {
+
+            fact += readVarint(in);
+
+            if (fact >= size) {
+                throw new IOException("Fact " + fact + " out of range");
+            }
+
+            int box = in.readUnsignedByte();
+
+            if (box >= BOX_INTERVALS_S.length) {
+                throw new IOException("Fact " + fact + " in unknown box " + box);
+            }
+
+            boxes[fact] = (byte) box;
+            errorScores[fact] = in.readUnsignedByte();
+            keys[fact] = key(readVarint(in), errorScores[fact]);
+
+        }
+
+        return new PracticeDeck(universe, baseSeconds, seed, boxes, errorScores, keys, seen);
+
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte(value);
+
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+
+        int value = 0;
+
+        for (int shift = 0; shift < 35; shift += 7) {
+
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+
+                if (value < 0) {
+                    break;
+                }
+
+                return value;
+
+            }
+
+        }
+
+        throw new EOFException("Malformed varint in practice deck");
+
+    }
+
+}
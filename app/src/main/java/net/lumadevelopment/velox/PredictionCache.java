@@ -0,0 +1,199 @@
+package net.lumadevelopment.velox;
+
+import java.util.Locale;
+
+/**
+ * Remembers what recognizer hypotheses parsed to. A session hears the
+ * same few strings ("12", "twelve", "12th", "to") over and over, so
+ * most parses can be answered without lower-casing and rescanning.
+ * Results that contained no number are cached too.
+ *
+ * Fixed capacity with CLOCK eviction: a hit only sets a reference bit,
+ * and a miss sweeps the clock hand past recently used entries to find
+ * one to replace. Entries live in parallel arrays and lookups compare
+ * String.hashCode() (cached by String) before equals(), so a hit
+ * allocates nothing. Capacity is small, so a linear scan beats the
+ * bookkeeping of a hash index.
+ *
+ * Thread safe, results can arrive on whichever thread the recognizer
+ * calls back on.
+ *
+ * @param <V> Parse result. Must not be changed once it's cached.
+ */
+public class PredictionCache<V> {
+
+    /**
+     * Stored in place of a null result, so a cached "no number"
+     * can be told apart from a miss.
+     */
+    private static final Object NO_RESULT = new Object();
+
+    private final int[] hashes;
+    private final String[] keys;
+    private final Object[] values;
+    private final boolean[] referenced;
+
+    private int size;
+    private int hand;
+
+    private long hits;
+    private long misses;
+
+    // What the cached results were parsed for, see setContext()
+    private Locale locale;
+    private int maxNumber;
+
+    public PredictionCache(int capacity) {
+
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+
+        this.hashes = new int[capacity];
+        this.keys = new String[capacity];
+        this.values = new Object[capacity];
+        this.referenced = new boolean[capacity];
+
+    }
+
+    /**
+     * Results depend on the lexicon's locale and on MAX_NUMBER, so
+     * the cache empties itself when either changes.
+     */
+    public synchronized void setContext(Locale locale, int maxNumber) {
+
+        if (!locale.equals(this.locale) || maxNumber != this.maxNumber) {
+
+            clear();
+            this.locale = locale;
+            this.maxNumber = maxNumber;
+
+        }
+
+    }
+
+    /**
+     * Empties the cache. The hit and miss counters are kept.
+     */
+    public synchronized void clear() {
+
+        for (int i = 0; i < size; i++) {
+            keys[i] = null;
+            values[i] = null;
+            referenced[i] = false;
+        }
+
+        size = 0;
+        hand = 0;
+
+    }
+
+    /**
+     * @param parser Parses key on a miss
+     * @return The cached result for key, parsing it first if there isn't one.
+     */
+    public V get(String key, Parser<V> parser) {
+
+        int hash = key.hashCode();
+
+        synchronized (this) {
+
+            for (int i = 0; i < size; i++) {
+
+                if (hashes[i] == hash && key.equals(keys[i])) {
+
+                    hits++;
+                    referenced[i] = true;
+                    return unwrap(values[i]);
+
+                }
+
+            }
+
+            misses++;
+
+        }
+
+        // Parse outside the lock, it's the slow part. Two threads missing
+        // on the same key at once just both parse it.
+        V value = parser.parse(key);
+        put(hash, key, value);
+        return value;
+
+    }
+
+    private synchronized void put(int hash, String key, V value) {
+
+        // Another thread may have added it in the meantime
+        for (int i = 0; i < size; i++) {
+            if (hashes[i] == hash && key.equals(keys[i])) {
+                return;
+            }
+        }
+
+        int slot;
+
+        if (size < keys.length) {
+
+            slot = size++;
+
+        } else {
+
+            // Give every recently used entry a second chance
+            while (referenced[hand]) {
+                referenced[hand] = false;
+                hand = (hand + 1) % keys.length;
+            }
+
+            slot = hand;
+            hand = (hand + 1) % keys.length;
+
+        }
+
+        hashes[slot] = hash;
+        keys[slot] = key;
+        values[slot] = value == null ? NO_RESULT : value;
+        referenced[slot] = false;
+
+    }
+
+    @SuppressWarnings("unchecked")
+    private V unwrap(Object value) {
+        return value == NO_RESULT ? null : (V) value;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Fraction of lookups that were hits, 0 if there were none.
+     */
+    public synchronized double getHitRate() {
+
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+
+    }
+
+    public synchronized String summary() {
+        return String.format(Locale.US, "%d hits, %d misses (%.1f%% hit rate), %d/%d entries",
+                hits, misses, getHitRate() * 100, size, keys.length);
+    }
+
+    /**
+     * Parses a hypothesis the cache doesn't have yet.
+     */
+    public interface Parser<V> {
+        V parse(String key);
+    }
+
+}
@@ -2,19 +2,33 @@ package net.lumadevelopment.velox;
 
 import android.util.Log;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Mathematically determines viable problems, generates them, and
- * packages them into Problem objects.
+ * appends them to a ProblemSet.
  */
 public class ProblemGenerator {
 
     public static final String LOG_TAG = ProblemGenerator.class.getSimpleName();
 
-    private final Random random;
+    private static final Metrics.Counter GENERATED =
+            Metrics.registry().counter("velox_problems_generated_total", "Problems generated");
+
+    /**
+     * Hands out one seed per game. Every problem in a game comes from a
+     * generator seeded with that game's seed, so the seed (and the
+     * weights) are all it takes to generate the same problems again.
+     */
+    private static final SplittableRandom seeds = new SplittableRandom();
+
+    private final SplittableRandom random;
+
+    /**
+     * Picks the type of each problem, weighted by OperationWeights.
+     * Built once per generator, so weights only change between games.
+     */
+    private final AliasTable operationTable;
 
     /**
      * Solutions should never go beyond this number.
@@ -22,45 +36,71 @@ public class ProblemGenerator {
     private final int maxNumber;
 
     /**
-     * All non-prime numbers that are less than maxNumber.
+     * All non-prime numbers up to maxNumber, and their factors.
      *
-     * We use these values often, so we store them so we don't
-     * have to recalculate them every time.
+     * We use these values often, so they're calculated once per
+     * max number and shared by every generator.
      */
-    private final List<Integer> nonPrimeSubMaxNums;
+    private final DivisorTable divisorTable;
 
     public ProblemGenerator() {
 
-        this.random = new Random();
-        this.maxNumber = Config.MAX_NUMBER;
+        this(newSeed(), OperationWeights.session().currentWeights(), Config.MAX_NUMBER);
 
-        // Assigned via function
-        this.nonPrimeSubMaxNums = getNonPrimeNumbers(maxNumber);
+    }
+
+    /**
+     * @param seed Seed for every random choice this generator makes
+     * @param operationWeights Relative weight of each ProblemSet operation
+     * @param maxNumber Solutions should never go beyond this number
+     */
+    public ProblemGenerator(long seed, double[] operationWeights, int maxNumber) {
+
+        this.random = new SplittableRandom(seed);
+        this.maxNumber = maxNumber;
+        this.operationTable = new AliasTable(operationWeights);
+
+        this.divisorTable = DivisorTable.forMaxNumber(maxNumber);
 
     }
 
     /**
-     * Randomly chooses what type of problem to generate and returns
-     * a Problem of that type.
-     * @return Randomly generated problem.
+     * @return A fresh seed for the next game's generator.
      */
-    public Problem generateProblem() {
+    public static long newSeed() {
 
-        int typeOfProblem = random.nextInt(4);
+        // SplittableRandom isn't thread safe, and games can be
+        // initialized from more than one thread
+        synchronized (seeds) {
+            return seeds.nextLong();
+        }
+
+    }
+
+    /**
+     * Randomly chooses what type of problem to generate (in O(1), with
+     * the alias table) and appends a problem of that type to the set.
+     * @param problems Set to append the problem to
+     * @return Index of the generated problem, -1 if generation failed.
+     */
+    public int generateProblem(ProblemSet problems) {
+
+        int typeOfProblem = operationTable.sample(random);
+        GENERATED.increment();
 
         switch (typeOfProblem) {
-            case 0:
-                return randomAdditionProblem();
-            case 1:
-                return randomSubtractionProblem();
-            case 2:
-                return randomDivisionProblem();
-            case 3:
-                return randomMultiplicationProblem();
+            case ProblemSet.ADDITION:
+                return randomAdditionProblem(problems);
+            case ProblemSet.SUBTRACTION:
+                return randomSubtractionProblem(problems);
+            case ProblemSet.DIVISION:
+                return randomDivisionProblem(problems);
+            case ProblemSet.MULTIPLICATION:
+                return randomMultiplicationProblem(problems);
             default:
                 // How did we get here?
                 Log.e(LOG_TAG, "Generated something other than 0, 1, 2, or 3 in generateProblem()");
-                return null;
+                return -1;
         }
 
     }
@@ -68,9 +108,10 @@ public class ProblemGenerator {
     /**
      * Creates a random addition problem (x + y = z) where
      * z <= maxNumber and (x, y, and z) > 0
-     * @return Random addition problem
+     * @param problems Set to append the problem to
+     * @return Index of the random addition problem
      */
-    private Problem randomAdditionProblem() {
+    private int randomAdditionProblem(ProblemSet problems) {
 
         // If maxNumber = 30, numberOne could be any number
         // between 1 (inclusive) and 29 (inclusive)
@@ -80,19 +121,19 @@ public class ProblemGenerator {
         // be any number between 1 (inclusive) and 15 (inclusive)
         int numberTwo = random.nextInt(maxNumber - numberOne) + 1;
 
-        String equationText = numberOne + " + " + numberTwo;
         int solution = numberOne + numberTwo;
 
-        return new Problem(equationText, solution);
+        return problems.add(ProblemSet.ADDITION, numberOne, numberTwo, solution);
 
     }
 
     /**
      * Creates a random subtraction problem (x - y = z) where
      * x <= maxNumber and (x, y, and z) > 0
-     * @return A random subtraction problem
+     * @param problems Set to append the problem to
+     * @return Index of the random subtraction problem
      */
-    private Problem randomSubtractionProblem() {
+    private int randomSubtractionProblem(ProblemSet problems) {
 
         // If maxNumber = 30, numberOne could be any number
         // between 2 (inclusive) and 30 (inclusive)
@@ -102,42 +143,41 @@ public class ProblemGenerator {
         // between 1 (inclusive) and 14 (inclusive)
         int numberTwo = random.nextInt(numberOne - 1) + 1;
 
-        String equationText = numberOne + " - " + numberTwo;
         int solution = numberOne - numberTwo;
 
-        return new Problem(equationText, solution);
+        return problems.add(ProblemSet.SUBTRACTION, numberOne, numberTwo, solution);
 
     }
 
     /**
      * Creates a random division problem (x / y = z) where x is
      * not prime, x <= maxNumber, y != 1, and x % y = 0
-     * @return A random division problem
+     * @param problems Set to append the problem to
+     * @return Index of the random division problem
      */
-    private Problem randomDivisionProblem() {
+    private int randomDivisionProblem(ProblemSet problems) {
 
         // Get a random non-prime number that caps out at maxNumber
-        int randomIndex = random.nextInt(nonPrimeSubMaxNums.size());
-        int numberOne = nonPrimeSubMaxNums.get(randomIndex);
+        int randomIndex = random.nextInt(divisorTable.getCompositeCount());
+        int numberOne = divisorTable.getComposite(randomIndex);
 
         // Get a random non-1 number that evenly divides numberOne
-        List<Integer> factorsOfNumOne = getFactorsOfNumber(numberOne);
-        randomIndex = random.nextInt(factorsOfNumOne.size());
-        int numberTwo = factorsOfNumOne.get(randomIndex);
+        randomIndex = random.nextInt(divisorTable.getDivisorCount(numberOne));
+        int numberTwo = divisorTable.getDivisor(numberOne, randomIndex);
 
-        String equation = numberOne + " / " + numberTwo;
         int solution = numberOne / numberTwo;
 
-        return new Problem(equation, solution);
+        return problems.add(ProblemSet.DIVISION, numberOne, numberTwo, solution);
 
     }
 
     /**
      * Creates a random multiplication problem (x * y = z) where
      * x <= (maxNumber / 2), y <= (maxNumber / x), and z <= maxNumber
-     * @return A random multiplication problem
+     * @param problems Set to append the problem to
+     * @return Index of the random multiplication problem
      */
-    private Problem randomMultiplicationProblem() {
+    private int randomMultiplicationProblem(ProblemSet problems) {
 
         // If maxNumber = 30, generates a number between
         // 2 (inclusive) and 15 (inclusive)
@@ -147,82 +187,9 @@ public class ProblemGenerator {
         // number between 2 (inclusive) and 4 (inclusive)
         int numberTwo = random.nextInt((maxNumber / numberOne) - 1) + 2;
 
-        String equation = numberOne + " * " + numberTwo;
         int solution = numberOne * numberTwo;
 
-        return new Problem(equation, solution);
-
-    }
-
-    /**
-     * Returns whether or not the parameter is prime.
-     * @param number Number to check if prime or not.
-     * @return Whether or not the parameter is prime.
-     */
-    private boolean isPrime(int number) {
-
-        // Loop from 2 (inclusive) to number/2 (inclusive)
-        for (int i = 2; i <= (number / 2); i++) {
-
-            if ((number % i) == 0) {
-
-                // If the number is evenly divisible by a number
-                // that is not itself or 1, then it is not prime.
-                return false;
-
-            }
-        }
-
-        // Number is prime
-        return true;
-
-    }
-
-    /**
-     * Get all numbers that are not prime from 2 (inclusive) to max (inclusive)
-     * @param max The stopping point for the non prime number search.
-     * @return An Integer list of all non-prime numbers in the defined range.
-     */
-    private List<Integer> getNonPrimeNumbers(int max) {
-
-        List<Integer> nonPrimes = new ArrayList<>();
-
-        for (int i = 2; i <= max; i++) {
-
-            // Use the isPrime() function to check if
-            // i is prime or not
-            if (!isPrime(i)) {
-                nonPrimes.add(i);
-            }
-
-        }
-
-        return nonPrimes;
-
-    }
-
-    /**
-     * Get all numbers that evenly divide the parameter that
-     * are not 1 or itself. Basically, every number that would
-     * make the parameter not prime.
-     * @param number The number we are checking for factors of
-     * @return An Integer list of all factors of the parameter
-     */
-    private List<Integer> getFactorsOfNumber(int number) {
-
-        List<Integer> factors = new ArrayList<>();
-
-        for (int i = 2; i < number; i++) {
-
-            // if the modulus is 0, the number divides evenly
-            // this means we add it to the list
-            if (number % i == 0) {
-                factors.add(i);
-            }
-
-        }
-
-        return factors;
+        return problems.add(ProblemSet.MULTIPLICATION, numberOne, numberTwo, solution);
 
     }
 
@@ -0,0 +1,651 @@
+package net.lumadevelopment.velox;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTrack;
+import android.os.Build;
+import android.os.SystemClock;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads each problem aloud for eyes-free play, see Config.EYES_FREE.
+ *
+ * Text to speech takes far too long to run when a problem comes up,
+ * so during the countdown prepare() synthesizes the game's problems
+ * into WAV files (or finds them in the NarrationCache from an earlier
+ * session) and loads each into a static AudioTrack, like
+ * AnswerFeedback's tones. play() then only has to rewind and start a
+ * track. Problems that weren't prepared (practice mode picks them as
+ * it goes) are loaded from the cache on a background thread by
+ * preload(), or spoken live as a last resort.
+ *
+ * While a clip plays, and for Config.NARRATION_ECHO_GUARD_MS after,
+ * SpeechManager ignores what it hears, so the recognizer can't answer
+ * "7 times 4" with 7 and 4.
+ *
+ * Construct on the main thread, release() when the game ends.
+ */
+public class ProblemNarrator {
+
+    public static final String LOG_TAG = ProblemNarrator.class.getSimpleName();
+
+    // Utterance ids of live speech start with this, synthesized clips
+    // use their cache key
+    private static final String LIVE_UTTERANCE_PREFIX = "live:";
+
+    private final Context context;
+    private final GameStartup startup;
+    private final SpeechManager speechMgr;
+
+    private final TextToSpeech tts;
+
+    /**
+     * Completes with whether text to speech came up in Config.LOCALE.
+     */
+    private final CompletableFuture<Boolean> ttsReady;
+
+    /**
+     * Created by prepare(), null until then.
+     */
+    private volatile NarrationCache cache;
+
+    /**
+     * Loaded clips by cache key. Guarded by this.
+     */
+    private final Map<String, Clip> clips;
+
+    /**
+     * Clips preload() is reading from the cache, by key, each completing
+     * with whether it loaded. Guarded by this.
+     */
+    private final Map<String, CompletableFuture<Boolean>> loading;
+
+    /**
+     * Reads clips for preload(), off the threads play() is called on.
+     */
+    private final ExecutorService loader;
+
+    private final AtomicInteger pendingSyntheses;
+    private long synthesisStartNs;
+    private volatile long synthesisMs = -1;
+    private final AtomicInteger synthesizedCount = new AtomicInteger();
+
+    // Guarded by this
+    private AudioTrack playing;
+    private int playCount;
+    private boolean released;
+    private int playedCount;
+    private int liveCount;
+    private long totalPlayLatencyNs;
+    private long maxPlayLatencyNs;
+
+    /**
+     * A problem's audio, ready to play.
+     */
+    private static final class Clip {
+
+        final AudioTrack track;
+        final int durationMs;
+
+        Clip(AudioTrack track, int durationMs) {
+            this.track = track;
+            this.durationMs = durationMs;
+        }
+
+    }
+
+    /**
+     * 16 bit PCM read from a WAV file.
+     */
+    static final class Wav {
+
+        final int sampleRate;
+        final int channels;
+        final short[] pcm;
+
+        Wav(int sampleRate, int channels, short[] pcm) {
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+            this.pcm = pcm;
+        }
+
+        int durationMs() {
+            return (int) (1000L * pcm.length / channels / sampleRate);
+        }
+
+    }
+
+    public ProblemNarrator(Context context, GameStartup startup, SpeechManager speechMgr) {
+
+        this.context = context;
+        this.startup = startup;
+        this.speechMgr = speechMgr;
+        this.clips = new HashMap<>();
+        this.loading = new HashMap<>();
+        this.loader = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, LOG_TAG + " loader"));
+        this.pendingSyntheses = new AtomicInteger();
+        this.ttsReady = new CompletableFuture<>();
+
+        // Binding the engine takes a while, prepare() waits for it
+        this.tts = new TextToSpeech(context, this::onTtsInit);
+        tts.setOnUtteranceProgressListener(new ProgressListener());
+
+    }
+
+    private void onTtsInit(int status) {
+
+        boolean ready = status == TextToSpeech.SUCCESS && tts.setLanguage(Config.LOCALE) >= 0;
+
+        if (!ready) {
+            Log.e(LOG_TAG, "Text to speech unavailable in " + Config.LOCALE + " (status " + status + ")");
+        }
+
+        ttsReady.complete(ready);
+
+    }
+
+    /**
+     * @return What's said for a problem, ex. "7 times 4".
+     */
+    public static String spokenText(byte operation, int operandOne, int operandTwo) {
+        return operandOne + " " + Config.SPOKEN_OPERATION_WORDS[operation] + " " + operandTwo;
+    }
+
+    private static String key(ProblemSet problems, int index) {
+        return NarrationCache.key(Config.LOCALE, problems.getOperation(index),
+                problems.getOperandOne(index), problems.getOperandTwo(index));
+    }
+
+    /**
+     * Gets a clip ready for every problem in the set, completing
+     * GameStartup.NARRATION once they are. Cached clips are loaded
+     * straight away, the rest are synthesized once text to speech is
+     * up. Disk I/O, call it from the init thread.
+     */
+    public void prepare(ProblemSet problems) {
+
+        cache = NarrationCache.forMaxNumber(new File(context.getCacheDir(), "narration"), Config.MAX_NUMBER);
+
+        // Keyed so a problem that comes up twice is only synthesized once
+        Map<String, String> missing = new LinkedHashMap<>();
+
+        for (int i = 0; i < problems.size(); i++) {
+
+            String key = key(problems, i);
+
+            if (missing.containsKey(key) || loadCached(key)) {
+                continue;
+            }
+
+            missing.put(key, spokenText(problems.getOperation(i), problems.getOperandOne(i), problems.getOperandTwo(i)));
+
+        }
+
+        Log.d(LOG_TAG, problems.size() + " problems, " + missing.size() + " to synthesize. " + cache.summary());
+
+        if (missing.isEmpty()) {
+            startup.complete(GameStartup.NARRATION);
+            return;
+        }
+
+        ttsReady.thenAccept(ready -> synthesize(missing, ready));
+
+    }
+
+    private void synthesize(Map<String, String> missing, boolean ready) {
+
+        if (!ready) {
+            startup.fail(GameStartup.NARRATION, new IllegalStateException("Text to speech unavailable"));
+            return;
+        }
+
+        synthesisStartNs = System.nanoTime();
+        pendingSyntheses.set(missing.size());
+
+        for (Map.Entry<String, String> entry : missing.entrySet()) {
+
+            File pending = cache.pendingFileFor(entry.getKey());
+
+            if (tts.synthesizeToFile(entry.getValue(), null, pending, entry.getKey()) != TextToSpeech.SUCCESS) {
+
+                Log.e(LOG_TAG, "Couldn't queue synthesis of \"" + entry.getValue() + "\"");
+                synthesisFinished();
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Counts a synthesis as done, successful or not. Missing clips are
+     * spoken live instead, so failures don't hold the game up.
+     */
+    private void synthesisFinished() {
+
+        if (pendingSyntheses.decrementAndGet() == 0) {
+
+            synthesisMs = (System.nanoTime() - synthesisStartNs) / 1_000_000;
+            Log.d(LOG_TAG, synthesizedCount.get() + " clip(s) synthesized in " + synthesisMs + " ms.");
+            startup.complete(GameStartup.NARRATION);
+
+        }
+
+    }
+
+    /**
+     * Loads a clip from the cache, if it's there.
+     * @return Whether the clip is loaded now.
+     */
+    private boolean loadCached(String key) {
+
+        File file = cache.get(key);
+        return file != null && load(key, file);
+
+    }
+
+    /**
+     * Reads a clip into a static AudioTrack.
+     * @return Whether it worked.
+     */
+    private boolean load(String key, File file) {
+
+        Wav wav;
+
+        try {
+
+            wav = readWav(readFile(file));
+
+        } catch (IOException e) {
+
+            Log.e(LOG_TAG, "Couldn't read " + file, e);
+            return false;
+
+        }
+
+        if (wav == null) {
+
+            Log.e(LOG_TAG, file + " isn't 16 bit PCM, can't play it.");
+            return false;
+
+        }
+
+        AudioTrack track = createTrack(wav);
+
+        if (track == null) {
+            return false;
+        }
+
+        synchronized (this) {
+
+            if (released) {
+                track.release();
+                return false;
+            }
+
+            Clip previous = clips.put(key, new Clip(track, wav.durationMs()));
+
+            if (previous != null) {
+                previous.track.release();
+            }
+
+        }
+
+        return true;
+
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+
+        byte[] bytes = new byte[(int) file.length()];
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(bytes);
+        }
+
+        return bytes;
+
+    }
+
+    /**
+     * Parses a WAV file, walking its chunks rather than assuming a 44
+     * byte header, since engines add their own.
+     * @return The audio, or null if it isn't 16 bit PCM.
+     */
+    static Wav readWav(byte[] bytes) {
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (bytes.length < 12 || buffer.getInt(0) != 0x46464952 /* RIFF */ || buffer.getInt(8) != 0x45564157 /* WAVE */) {
+            return null;
+        }
+
+        int sampleRate = 0;
+        int channels = 0;
+        int offset = 12;
+
+        while (offset + 8 <= bytes.length) {
+
+            int id = buffer.getInt(offset);
+            // Streaming engines can leave sizes unset, trust the file length
+            long size = Math.min(buffer.getInt(offset + 4) & 0xFFFFFFFFL, bytes.length - offset - 8);
+            int body = offset + 8;
+
+            if (id == 0x20746D66 /* "fmt " */ && size >= 16) {
+
+                int format = buffer.getShort(body) & 0xFFFF;
+                int bitsPerSample = buffer.getShort(body + 14) & 0xFFFF;
+
+                if (format != 1 || bitsPerSample != 16) {
+                    return null;
+                }
+
+                channels = buffer.getShort(body + 2) & 0xFFFF;
+                sampleRate = buffer.getInt(body + 4);
+
+            } else if (id == 0x61746164 /* data */) {
+
+                if (sampleRate <= 0 || channels < 1 || channels > 2) {
+                    return null;
+                }
+
+                short[] pcm = new short[(int) (size / 2)];
+                ByteBuffer data = ByteBuffer.wrap(bytes, body, pcm.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+                data.asShortBuffer().get(pcm);
+                return new Wav(sampleRate, channels, pcm);
+
+            }
+
+            // Chunks are padded to an even length
+            offset = (int) (body + size + (size & 1));
+
+        }
+
+        return null;
+
+    }
+
+    /**
+     * @return A static AudioTrack holding the clip, or null if it
+     * couldn't be created.
+     */
+    private static AudioTrack createTrack(Wav wav) {
+
+        try {
+
+            AudioTrack.Builder builder = new AudioTrack.Builder()
+                    .setAudioAttributes(new AudioAttributes.Builder()
+                            .setUsage(AudioAttributes.USAGE_GAME)
+                            .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                            .build())
+                    .setAudioFormat(new AudioFormat.Builder()
+                            .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                            .setSampleRate(wav.sampleRate)
+                            .setChannelMask(wav.channels == 2 ? AudioFormat.CHANNEL_OUT_STEREO : AudioFormat.CHANNEL_OUT_MONO)
+                            .build())
+                    .setTransferMode(AudioTrack.MODE_STATIC)
+                    .setBufferSizeInBytes(wav.pcm.length * 2);
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                builder.setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY);
+            }
+
+            AudioTrack track = builder.build();
+            track.write(wav.pcm, 0, wav.pcm.length);
+
+            if (track.getState() != AudioTrack.STATE_INITIALIZED) {
+
+                Log.e(LOG_TAG, "Narration AudioTrack didn't initialize.");
+                track.release();
+                return null;
+
+            }
+
+            return track;
+
+        } catch (RuntimeException e) {
+
+            Log.e(LOG_TAG, "Couldn't create narration AudioTrack.", e);
+            return null;
+
+        }
+
+    }
+
+    /**
+     * Starts loading a problem's clip from the cache in the background,
+     * so it's ready by the time play() wants it. For problems prepare()
+     * didn't know about, practice mode picks them as it goes. Safe from
+     * any thread.
+     * @return Completes with whether the clip is loaded.
+     */
+    public CompletableFuture<Boolean> preload(ProblemSet problems, int index) {
+
+        String key = key(problems, index);
+        NarrationCache cache = this.cache;
+
+        synchronized (this) {
+
+            if (released || cache == null) {
+                return CompletableFuture.completedFuture(false);
+            }
+
+            if (clips.containsKey(key)) {
+                return CompletableFuture.completedFuture(true);
+            }
+
+            CompletableFuture<Boolean> load = loading.get(key);
+
+            if (load == null) {
+
+                load = CompletableFuture.supplyAsync(() -> loadCached(key), loader);
+                loading.put(key, load);
+                load.whenComplete((loaded, error) -> {
+                    synchronized (ProblemNarrator.this) {
+                        loading.remove(key);
+                    }
+                });
+
+            }
+
+            return load;
+
+        }
+
+    }
+
+    /**
+     * Reads a problem aloud, cutting off the one before if it's still
+     * going. Safe from any thread, and quick: a rewind and a play when
+     * the problem was prepared. Otherwise the clip is preloaded and
+     * played once it's read, unless another problem has been played
+     * since, and the problem is spoken live if there's no clip.
+     */
+    public void play(ProblemSet problems, int index) {
+
+        long startNs = System.nanoTime();
+        String key = key(problems, index);
+        Clip clip;
+        int token;
+
+        synchronized (this) {
+
+            if (released) {
+                return;
+            }
+
+            clip = clips.get(key);
+            token = ++playCount;
+
+            if (playing != null) {
+                playing.stop();
+                playing = null;
+            }
+
+        }
+
+        if (clip != null) {
+            start(problems, index, clip, token, startNs);
+            return;
+        }
+
+        // No disk I/O here, this can be running under Game's lock
+        preload(problems, index).thenAccept(loaded -> {
+
+            Clip loadedClip;
+
+            synchronized (this) {
+                loadedClip = clips.get(key);
+            }
+
+            start(problems, index, loadedClip, token, startNs);
+
+        });
+
+    }
+
+    /**
+     * Plays a clip, or speaks the problem live without one, as long as
+     * nothing else has been played since play() token.
+     */
+    private synchronized void start(ProblemSet problems, int index, Clip clip, int token, long startNs) {
+
+        if (released || token != playCount) {
+            return;
+        }
+
+        if (clip != null) {
+
+            // Ignore the recognizer until the clip's done, then a bit
+            speechMgr.ignoreSpeechUntil(SystemClock.elapsedRealtime() + clip.durationMs + Config.NARRATION_ECHO_GUARD_MS);
+
+            clip.track.stop();
+            clip.track.reloadStaticData();
+            clip.track.play();
+            playing = clip.track;
+
+        } else {
+
+            // Slow to start, but better than silence. Ignored until
+            // the utterance is done, or the problem's time is up.
+            speechMgr.ignoreSpeechUntil(SystemClock.elapsedRealtime() + Config.TIME_PER_PROBLEM_IN_MS);
+            tts.speak(spokenText(problems.getOperation(index), problems.getOperandOne(index), problems.getOperandTwo(index)),
+                    TextToSpeech.QUEUE_FLUSH, null, LIVE_UTTERANCE_PREFIX + index);
+            liveCount++;
+
+        }
+
+        long latencyNs = System.nanoTime() - startNs;
+        playedCount++;
+        totalPlayLatencyNs += latencyNs;
+        maxPlayLatencyNs = Math.max(maxPlayLatencyNs, latencyNs);
+
+    }
+
+    /**
+     * Hears from the engine as clips are synthesized and live speech
+     * is spoken. Called on a binder thread.
+     */
+    private final class ProgressListener extends UtteranceProgressListener {
+
+        @Override
+        public void onStart(String utteranceId) {
+
+            // Nothing to do until it's done
+
+        }
+
+        @Override
+        public void onDone(String utteranceId) {
+
+            if (utteranceId.startsWith(LIVE_UTTERANCE_PREFIX)) {
+                speechMgr.ignoreSpeechUntil(SystemClock.elapsedRealtime() + Config.NARRATION_ECHO_GUARD_MS);
+                return;
+            }
+
+            File file = cache.put(utteranceId, cache.pendingFileFor(utteranceId));
+
+            if (file != null && load(utteranceId, file)) {
+                synthesizedCount.incrementAndGet();
+            }
+
+            synthesisFinished();
+
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void onError(String utteranceId) {
+
+            Log.e(LOG_TAG, "Text to speech failed on " + utteranceId);
+
+            if (utteranceId.startsWith(LIVE_UTTERANCE_PREFIX)) {
+                speechMgr.ignoreSpeechUntil(SystemClock.elapsedRealtime());
+                return;
+            }
+
+            if (!cache.pendingFileFor(utteranceId).delete()) {
+                Log.d(LOG_TAG, "No partial clip to clean up for " + utteranceId);
+            }
+
+            synthesisFinished();
+
+        }
+
+    }
+
+    /**
+     * @return Preparation and playback figures, for the log.
+     */
+    public synchronized String summary() {
+
+        double averageMs = playedCount == 0 ? 0 : totalPlayLatencyNs / (playedCount * 1e6);
+        NarrationCache cache = this.cache;
+
+        return "Clips ready: " + clips.size() + ", synthesized: " + synthesizedCount.get()
+                + (synthesisMs >= 0 ? " in " + synthesisMs + " ms" : "")
+                + ", played: " + playedCount + " (" + liveCount + " live)"
+                + ", average start: " + ((int) (averageMs * 100)) / 100.0 + "ms"
+                + ", max start: " + ((int) (maxPlayLatencyNs / 1e4)) / 100.0 + "ms"
+                + (cache != null ? ". " + cache.summary() : "");
+
+    }
+
+    /**
+     * Stops and frees everything. Later play() calls do nothing.
+     */
+    public synchronized void release() {
+
+        released = true;
+        loader.shutdown();
+
+        for (Clip clip : clips.values()) {
+            clip.track.release();
+        }
+
+        clips.clear();
+        playing = null;
+
+        tts.stop();
+        tts.shutdown();
+
+    }
+
+}
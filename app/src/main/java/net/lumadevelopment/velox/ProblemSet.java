@@ -0,0 +1,247 @@
+package net.lumadevelopment.velox;
+
+import java.util.Arrays;
+
+/**
+ * Every problem in a game, stored as parallel primitive arrays
+ * (operation, operands, solution, outcome, response time) instead
+ * of one object per problem. Grows by doubling, so long or endless
+ * sessions only allocate when the capacity runs out, and the
+ * equation text is rendered on demand into a caller's char[].
+ */
+public class ProblemSet {
+
+    // Operations, in the same order ProblemGenerator picks them
+    public static final byte ADDITION = 0;
+    public static final byte SUBTRACTION = 1;
+    public static final byte DIVISION = 2;
+    public static final byte MULTIPLICATION = 3;
+    public static final int NUM_OF_OPERATIONS = 4;
+
+    /**
+     * Symbol shown between the operands, indexed by operation.
+     */
+    private static final char[] OPERATION_SYMBOLS = {'+', '-', '/', '*'};
+
+    // Outcomes
+    public static final byte UNANSWERED = 0;
+    public static final byte CORRECT = 1;
+    public static final byte TIMED_OUT = 2;
+
+    /**
+     * Longest equation renderEquation() can write: two 10 digit
+     * operands plus " x ".
+     */
+    public static final int MAX_EQUATION_LENGTH = 23;
+
+    private byte[] operations;
+    private int[] operandOnes;
+    private int[] operandTwos;
+    private int[] solutions;
+    private byte[] outcomes;
+
+    /**
+     * How long the player took on each problem, in ms. Only
+     * meaningful once the outcome isn't UNANSWERED.
+     */
+    private int[] responseTimesInMs;
+
+    private int size;
+
+    public ProblemSet(int initialCapacity) {
+
+        int capacity = Math.max(1, initialCapacity);
+
+        this.operations = new byte[capacity];
+        this.operandOnes = new int[capacity];
+        this.operandTwos = new int[capacity];
+        this.solutions = new int[capacity];
+        this.outcomes = new byte[capacity];
+        this.responseTimesInMs = new int[capacity];
+        this.size = 0;
+
+    }
+
+    /**
+     * Appends a problem (operandOne operation operandTwo = solution).
+     * @return The index of the new problem.
+     */
+    public int add(byte operation, int operandOne, int operandTwo, int solution) {
+
+        if (size == operations.length) {
+            grow();
+        }
+
+        operations[size] = operation;
+        operandOnes[size] = operandOne;
+        operandTwos[size] = operandTwo;
+        solutions[size] = solution;
+        outcomes[size] = UNANSWERED;
+        responseTimesInMs[size] = 0;
+
+        return size++;
+
+    }
+
+    private void grow() {
+
+        int capacity = operations.length * 2;
+
+        operations = Arrays.copyOf(operations, capacity);
+        operandOnes = Arrays.copyOf(operandOnes, capacity);
+        operandTwos = Arrays.copyOf(operandTwos, capacity);
+        solutions = Arrays.copyOf(solutions, capacity);
+        outcomes = Arrays.copyOf(outcomes, capacity);
+        responseTimesInMs = Arrays.copyOf(responseTimesInMs, capacity);
+
+    }
+
+    /**
+     * Records how the player did on a problem.
+     * @param index Problem index
+     * @param outcome CORRECT or TIMED_OUT
+     * @param responseTimeInMs Time from the problem being shown to the outcome
+     */
+    public void recordOutcome(int index, byte outcome, int responseTimeInMs) {
+
+        outcomes[index] = outcome;
+        responseTimesInMs[index] = responseTimeInMs;
+
+    }
+
+    /**
+     * Empties the set but keeps its arrays, so it can be refilled
+     * without allocating.
+     */
+    public void clear() {
+
+        // add() overwrites every field, nothing else to reset
+        size = 0;
+
+    }
+
+    // Getter methods
+
+    public int size() {
+        return size;
+    }
+
+    public byte getOperation(int index) {
+        return operations[index];
+    }
+
+    public int getOperandOne(int index) {
+        return operandOnes[index];
+    }
+
+    public int getOperandTwo(int index) {
+        return operandTwos[index];
+    }
+
+    public int getSolution(int index) {
+        return solutions[index];
+    }
+
+    public byte getOutcome(int index) {
+        return outcomes[index];
+    }
+
+    public int getResponseTimeInMs(int index) {
+        return responseTimesInMs[index];
+    }
+
+    /**
+     * @param outcome UNANSWERED, CORRECT or TIMED_OUT
+     * @return How many problems ended with that outcome.
+     */
+    public int countOutcome(byte outcome) {
+
+        int count = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (outcomes[i] == outcome) {
+                count++;
+            }
+        }
+
+        return count;
+
+    }
+
+    /**
+     * @param outcome UNANSWERED, CORRECT or TIMED_OUT
+     * @return Mean response time of the problems that ended with that
+     * outcome in ms, 0 if there were none.
+     */
+    public int averageResponseTimeInMs(byte outcome) {
+
+        long total = 0;
+        int count = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (outcomes[i] == outcome) {
+                total += responseTimesInMs[i];
+                count++;
+            }
+        }
+
+        return count == 0 ? 0 : (int) (total / count);
+
+    }
+
+    /**
+     * Writes the equation text (ex. "3 + 9") into buffer without
+     * allocating. TextView.setText(char[], int, int) can display
+     * it directly.
+     * @param index Problem index
+     * @param buffer At least MAX_EQUATION_LENGTH chars long
+     * @return Number of chars written
+     */
+    public int renderEquation(int index, char[] buffer) {
+
+        int length = writeNumber(operandOnes[index], buffer, 0);
+
+        buffer[length++] = ' ';
+        buffer[length++] = OPERATION_SYMBOLS[operations[index]];
+        buffer[length++] = ' ';
+
+        return writeNumber(operandTwos[index], buffer, length);
+
+    }
+
+    /**
+     * Equation text as a String, for logging.
+     */
+    public String equationToString(int index) {
+
+        char[] buffer = new char[MAX_EQUATION_LENGTH];
+        return new String(buffer, 0, renderEquation(index, buffer));
+
+    }
+
+    /**
+     * Writes the decimal digits of a non-negative number into buffer.
+     * @param number Number to write, >= 0
+     * @param buffer Destination
+     * @param offset Where to start writing
+     * @return The offset just past the last digit written
+     */
+    public static int writeNumber(int number, char[] buffer, int offset) {
+
+        int digits = 1;
+        for (int remaining = number / 10; remaining > 0; remaining /= 10) {
+            digits++;
+        }
+
+        int end = offset + digits;
+
+        for (int i = end - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + number % 10);
+            number /= 10;
+        }
+
+        return end;
+
+    }
+
+}
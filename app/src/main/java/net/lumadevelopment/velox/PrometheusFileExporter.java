@@ -0,0 +1,50 @@
+package net.lumadevelopment.velox;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes every metric to a file in the Prometheus text format each
+ * time metrics are published, ex. files/metrics.prom. Pull it with
+ *
+ *   adb exec-out run-as net.lumadevelopment.velox cat files/metrics.prom
+ *
+ * and feed it to a node exporter textfile collector or promtool.
+ */
+public class PrometheusFileExporter implements Metrics.Exporter {
+
+    private final File file;
+
+    public PrometheusFileExporter(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public void export(Metrics metrics) throws IOException {
+
+        byte[] text = metrics.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+
+        // Renamed into place, so a reader never sees half a snapshot
+        File temp = new File(file.getPath() + ".tmp");
+
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(text);
+        }
+
+        if (!temp.renameTo(file)) {
+            throw new IOException("Couldn't replace " + file);
+        }
+
+    }
+
+    @Override
+    public void close() {
+
+        // Nothing held between exports
+
+    }
+
+}
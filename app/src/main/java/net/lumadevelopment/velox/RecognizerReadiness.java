@@ -0,0 +1,228 @@
+package net.lumadevelopment.velox;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Decides, ahead of the first game, whether SpeechManager should use
+ * the on device recognizer or the regular one, which can go to the
+ * network despite EXTRA_PREFER_OFFLINE and is much slower and less
+ * predictable when it does.
+ *
+ * On API 33 and up, check() asks whether the on device recognizer has
+ * a model for Config.LOCALE, and if it's supported but not downloaded
+ * yet, asks for the download so a later game can use it. Below that,
+ * the on device recognizer is used wherever it's available, as before.
+ *
+ * Started by Velox.warmUp() once the main screen is up, so the answer
+ * is normally in before the Go button is pressed. Until it is,
+ * choosePath() gives the same answer SpeechManager always has.
+ *
+ * check() and its answer run on the main thread; choosePath() is safe
+ * from any thread.
+ */
+public class RecognizerReadiness {
+
+    public static final String LOG_TAG = RecognizerReadiness.class.getSimpleName();
+
+    // Which recognizer SpeechManager should create
+    public static final int PATH_DEFAULT = 0; // SpeechRecognizer.createSpeechRecognizer()
+    public static final int PATH_ON_DEVICE = 1; // SpeechRecognizer.createOnDeviceSpeechRecognizer()
+
+    public static final String[] PATH_NAMES = {"default", "on-device"};
+
+    // What's known about the on device model
+    public static final int STATUS_NOT_CHECKED = 0; // check() hasn't been called
+    public static final int STATUS_UNAVAILABLE = 1; // No on device recognizer at all
+    public static final int STATUS_UNCHECKABLE = 2; // On device recognizer, but below API 33 so no way to ask about models
+    public static final int STATUS_CHECKING = 3; // Waiting on checkSupport()
+    public static final int STATUS_INSTALLED = 4;
+    public static final int STATUS_DOWNLOADING = 5;
+    public static final int STATUS_DOWNLOAD_REQUESTED = 6; // We called triggerModelDownload()
+    public static final int STATUS_UNSUPPORTED = 7;
+    public static final int STATUS_CHECK_FAILED = 8;
+
+    public static final String[] STATUS_NAMES = {"not checked", "unavailable", "model not checkable", "checking",
+            "model installed", "model downloading", "model download requested", "locale unsupported", "check failed"};
+
+    private static RecognizerReadiness session;
+
+    private final OnDeviceRecognition recognition;
+    private final Locale locale;
+
+    private volatile int status;
+    private volatile int pathWhileChecking;
+    private long checkStartNs;
+    private volatile long checkMs;
+    private boolean downloadRequested;
+
+    public RecognizerReadiness(OnDeviceRecognition recognition, Locale locale) {
+
+        this.recognition = recognition;
+        this.locale = locale;
+        this.status = STATUS_NOT_CHECKED;
+        this.pathWhileChecking = PATH_ON_DEVICE;
+        this.checkMs = -1;
+
+    }
+
+    /**
+     * @return The app wide readiness for Config.LOCALE, checked the first
+     * time this is called. Main thread only.
+     */
+    public static synchronized RecognizerReadiness session(Context context) {
+
+        if (session == null) {
+            session = new RecognizerReadiness(new PlatformOnDeviceRecognition(context), Config.LOCALE);
+            session.check();
+        }
+
+        return session;
+
+    }
+
+    /**
+     * Finds out whether the on device model is ready, requesting a
+     * download if it's supported but missing. The answer can arrive
+     * later, on the main thread.
+     */
+    public void check() {
+
+        if (!recognition.isAvailable()) {
+
+            setStatus(STATUS_UNAVAILABLE);
+            return;
+
+        }
+
+        if (!recognition.canCheckSupport()) {
+
+            setStatus(STATUS_UNCHECKABLE);
+            return;
+
+        }
+
+        // A first check keeps to the old behaviour until it's answered,
+        // a recheck to whatever the last answer said
+        pathWhileChecking = status == STATUS_NOT_CHECKED ? PATH_ON_DEVICE : choosePath();
+
+        setStatus(STATUS_CHECKING);
+        checkStartNs = System.nanoTime();
+
+        recognition.checkSupport(locale, new OnDeviceRecognition.SupportCallback() {
+
+            @Override
+            public void onSupport(int support) {
+
+                checkMs = (System.nanoTime() - checkStartNs) / 1_000_000;
+
+                switch (support) {
+
+                    case OnDeviceRecognition.SUPPORT_INSTALLED:
+                        setStatus(STATUS_INSTALLED);
+                        break;
+
+                    case OnDeviceRecognition.SUPPORT_DOWNLOADING:
+                        setStatus(STATUS_DOWNLOADING);
+                        break;
+
+                    case OnDeviceRecognition.SUPPORT_DOWNLOADABLE:
+
+                        // Only ask once it's gone out; after that it shows up as downloading
+                        if (!downloadRequested) {
+                            downloadRequested = recognition.triggerModelDownload(locale);
+                        }
+
+                        setStatus(STATUS_DOWNLOAD_REQUESTED);
+                        break;
+
+                    default:
+                        setStatus(STATUS_UNSUPPORTED);
+                        break;
+
+                }
+
+            }
+
+            @Override
+            public void onError(int error) {
+
+                checkMs = (System.nanoTime() - checkStartNs) / 1_000_000;
+                Log.e(LOG_TAG, "checkRecognitionSupport() failed with error " + error);
+                setStatus(STATUS_CHECK_FAILED);
+
+            }
+
+        });
+
+    }
+
+    /**
+     * Checks again if the model was still on its way last time, so the
+     * game after it finishes downloading picks it up. Call between
+     * games, ex. when one ends.
+     */
+    public void recheckIfDownloading() {
+
+        if (status == STATUS_DOWNLOADING || status == STATUS_DOWNLOAD_REQUESTED) {
+            check();
+        }
+
+    }
+
+    /**
+     * @return PATH_ON_DEVICE if the on device model is known to be
+     * there, or if there's an on device recognizer and no way to tell.
+     * While a check is out, or if it failed, what was chosen before it
+     * (on device for the first check, as before). PATH_DEFAULT
+     * otherwise.
+     */
+    public int choosePath() {
+
+        switch (status) {
+
+            case STATUS_CHECKING:
+            case STATUS_CHECK_FAILED:
+                return pathWhileChecking;
+
+            case STATUS_UNCHECKABLE:
+            case STATUS_INSTALLED:
+                return PATH_ON_DEVICE;
+
+            case STATUS_NOT_CHECKED:
+                return recognition.isAvailable() ? PATH_ON_DEVICE : PATH_DEFAULT;
+
+            default:
+                return PATH_DEFAULT;
+
+        }
+
+    }
+
+    private void setStatus(int newStatus) {
+
+        status = newStatus;
+        Log.d(LOG_TAG, "On device recognition for " + locale.toLanguageTag() + ": " + STATUS_NAMES[newStatus]
+                + (checkMs >= 0 ? " (checked in " + checkMs + " ms)" : ""));
+
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getStatusName() {
+        return STATUS_NAMES[status];
+    }
+
+    /**
+     * @return How long the last checkSupport() took to answer, -1 if it
+     * hasn't.
+     */
+    public long getCheckMs() {
+        return checkMs;
+    }
+
+}
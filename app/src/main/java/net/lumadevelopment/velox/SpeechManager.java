@@ -5,16 +5,17 @@ import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.speech.RecognitionListener;
 import android.speech.RecognizerIntent;
 import android.speech.SpeechRecognizer;
 import android.util.Log;
 
-import java.util.HashMap;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
-import pl.allegro.finance.tradukisto.ValueConverters;
-
 /**
  * SpeechManager handles everything to do with user input by
  * audio. This includes starting recording, transcribing audio,
@@ -26,6 +27,24 @@ public class SpeechManager implements RecognitionListener {
     // Debug logging
     public static final String LOG_TAG = SpeechManager.class.getSimpleName();
 
+    // Metrics, across every game in the session
+    private static final Metrics.Counter RESULTS =
+            Metrics.registry().counter("velox_speech_results_total", "Recognizer results");
+    private static final Metrics.Counter PARSED =
+            Metrics.registry().counter("velox_speech_parsed_total", "Recognizer results containing a number");
+    private static final Metrics.Counter ERRORS =
+            Metrics.registry().counter("velox_speech_errors_total", "Recognizer errors");
+    private static final Metrics.Counter RESTARTS =
+            Metrics.registry().counter("velox_speech_restarts_total", "Recognizer restarts after results or an error");
+    private static final Metrics.Histogram RECOGNITION_MS =
+            Metrics.registry().histogram("velox_speech_recognition_milliseconds", "End of speech to results");
+    private static final Metrics.Histogram[] RECOGNITION_MS_BY_PATH = {
+            Metrics.registry().histogram("velox_speech_default_recognition_milliseconds",
+                    "End of speech to results, regular recognizer"),
+            Metrics.registry().histogram("velox_speech_on_device_recognition_milliseconds",
+                    "End of speech to results, on device recognizer")
+    };
+
     // SpeechRecognizer needs the application context frequently for
     // permissions and other functions that verify we're allowed to
     // capture audio.
@@ -49,27 +68,231 @@ public class SpeechManager implements RecognitionListener {
     private Intent speechRecognizerIntent;
 
     /**
-     * The number words for every number from 0 (inclusive)
-     * to Config.MAX_NUMBER (inclusive), just in case the
-     * phone predicts a number word instead of an actual
-     * number for the audio.
+     * The number words for every number from 0 (inclusive) to
+     * Config.MAX_NUMBER (inclusive), just in case the phone predicts
+     * a number word instead of an actual number for the audio.
+     * Generated at build time, so loading it is just reading a few
+     * constant tables, and it's shared by every SpeechManager.
+     * Held in its own class so it's loaded the first time it's used
+     * (normally loadLexicon() on the init thread), not whenever
+     * SpeechManager is.
+     */
+    private static class LexiconHolder {
+        static final NumberLexicon lexicon = NumberLexicon.forLocale(Config.LOCALE);
+    }
+
+    /**
+     * Parse results for recently heard predictions, shared by every
+     * SpeechManager so a session keeps benefiting from them. Cached
+     * lists are unmodifiable.
+     */
+    private static final PredictionCache<List<Integer>> intsCache = new PredictionCache<>(Config.PREDICTION_CACHE_SIZE);
+    private static final PredictionCache<Integer> intCache = new PredictionCache<>(Config.PREDICTION_CACHE_SIZE);
+
+    // Speech stats for this game, only touched on the main thread
+    private int resultCount;
+    private int parsedCount;
+    private int errorCount;
+
+    /**
+     * Which recognizer this game uses (a RecognizerReadiness.PATH_
+     * constant) and why, for the stats logged at the end of the game.
+     */
+    private int recognizerPath;
+    private String recognizerReason;
+
+    // End of speech to results this game, main thread only
+    private long recognitionMsTotal;
+    private int recognitionMsCount;
+    private int recognitionMsMax;
+
+    /**
+     * Whether the recognizer intent carries EXTRA_BIASING_STRINGS,
+     * see Config.SPEECH_BIASING. Only Android 13+ understands it.
+     */
+    private boolean biasing;
+
+    /**
+     * What was heard in the current recognizer session, so results are
+     * judged by when they were said rather than when they arrived.
+     * Main thread only.
+     */
+    private final Utterance utterance = new Utterance();
+
+    /**
+     * When the player answered, and which problem they were answering.
+     * The problem is the one on screen when they started speaking: the
+     * end of speech is only detected after some silence, by which time
+     * the next problem can be up. The deadline is judged by when they
+     * started speaking, for the same reason, and the response time runs
+     * to when they stopped.
+     */
+    static final class Utterance {
+
+        static final long NOT_HEARD = -1;
+
+        private long startedAtMs = NOT_HEARD;
+        private long spokenAtMs = NOT_HEARD;
+        private int epoch;
+
+        /**
+         * A new recognizer session, nothing heard in it yet.
+         */
+        void reset() {
+            startedAtMs = NOT_HEARD;
+            spokenAtMs = NOT_HEARD;
+        }
+
+        /**
+         * The player started speaking while problem epoch was up.
+         */
+        void began(int problemEpoch, long nowMs) {
+            startedAtMs = nowMs;
+            spokenAtMs = nowMs;
+            epoch = problemEpoch;
+        }
+
+        /**
+         * The player stopped speaking. Keeps the epoch from began(),
+         * only taking problemEpoch if the start was never reported.
+         */
+        void ended(int problemEpoch, long nowMs) {
+
+            if (spokenAtMs == NOT_HEARD) {
+                epoch = problemEpoch;
+                startedAtMs = nowMs;
+            }
+
+            spokenAtMs = nowMs;
+
+        }
+
+        boolean isHeard() {
+            return spokenAtMs != NOT_HEARD;
+        }
+
+        /**
+         * @return When the player started speaking, what the deadline
+         * is judged by. The end of speech if the start wasn't reported.
+         */
+        long getStartedAtMs() {
+            return startedAtMs;
+        }
+
+        /**
+         * @return When the player stopped speaking, as far as the
+         * recognizer could tell. Ends the response time.
+         */
+        long getSpokenAtMs() {
+            return spokenAtMs;
+        }
+
+        int getEpoch() {
+            return epoch;
+        }
+
+    }
+
+    /**
+     * Solution the biasing strings currently favour, so they're only
+     * rebuilt when the problem changes, or NOT_BIASED if the intent
+     * doesn't have any yet. Main thread only.
+     */
+    private int biasedSolution;
+    private static final int NOT_BIASED = -2;
+
+    /**
+     * Biasing strings for before the first problem, built by
+     * prepareBiasing() on the init thread so the main thread never
+     * loads the lexicon. Null until then.
+     */
+    private volatile ArrayList<String> initialBiasingStrings;
+
+    // Recognizer states, for PerfOverlay
+    public static final int STATE_IDLE = 0; // not started, or destroyed
+    public static final int STATE_STARTING = 1; // startListening() called, not ready yet
+    public static final int STATE_LISTENING = 2; // ready, nothing heard yet
+    public static final int STATE_HEARING = 3; // speech began
+    public static final int STATE_RECOGNIZING = 4; // speech ended, waiting on results
+    private static final String[] STATE_NAMES = {"idle", "starting", "listening", "hearing", "recognizing"};
+
+    // Diagnostics for PerfOverlay. Written on the main thread only,
+    // volatile so the overlay can read them whenever it refreshes.
+    private volatile int state;
+    private volatile long lastStartListeningNs;
+    private volatile int restartCount;
+
+    // When each stage of the current session began, main thread only
+    private long readyNs;
+    private long speechBeganNs;
+    private long speechEndedNs;
+
+    // Stage latencies of the last utterance with results, in ms:
+    // startListening() to ready, ready to speech, speaking, and end
+    // of speech to results. -1 if the recognizer skipped the stage.
+    private volatile int lastReadyMs = -1;
+    private volatile int lastWaitMs = -1;
+    private volatile int lastSpeakingMs = -1;
+    private volatile int lastRecognitionMs = -1;
+
+    /**
+     * The last Config.AUDIO_CAPTURE_SECONDS of audio, null unless
+     * Config.AUDIO_CAPTURE. Main thread only.
+     */
+    private final AudioCapture capture;
+
+    /**
+     * The last N-best list none of whose predictions contained a
+     * number, and the problem epoch it was heard in, kept in case
+     * that problem times out. Null when there isn't one. Main
+     * thread only.
      */
-    public static HashMap<Integer, String> numberWords;
+    private List<String> unparsedPredictions;
+    private float[] unparsedConfidences;
+    private int unparsedEpoch;
+    private int capturedCount;
+
+    /**
+     * SystemClock.elapsedRealtime() until which anything heard is
+     * dropped, because it's probably ProblemNarrator reading a problem
+     * out. Set from whichever thread plays the narration.
+     */
+    private volatile long ignoreSpeechUntilMs;
+    private int ignoredSpeechCount;
+
+    /**
+     * Game startup stages this class is responsible for completing
+     * (GameStartup.RECOGNIZER).
+     */
+    private final GameStartup startup;
 
     /**
      * Marks whether SpeechManager is healthy.
      */
     private boolean ready;
 
-    public SpeechManager(Velox main, Game game) {
+    /**
+     * Whether results are passed on to the Game. The recognizer
+     * starts listening during the countdown so it's warm when the
+     * game starts, but anything heard before run() is dropped.
+     */
+    private volatile boolean acceptingAnswers;
+
+    public SpeechManager(Velox main, Game game, GameStartup startup) {
+
+        long startTime = System.nanoTime();
 
         this.ready = false;
+        this.acceptingAnswers = false;
         this.main = main;
         this.game = game;
-        numberWords = new HashMap<>();
+        this.startup = startup;
+        this.capture = Config.AUDIO_CAPTURE ? AudioCapture.forConfig() : null;
 
         init();
 
+        Log.d(LOG_TAG, LOG_TAG + " constructed in " + (System.nanoTime() - startTime) + " ns.");
+
     }
 
     // Getter/Setter method
@@ -79,36 +302,36 @@ public class SpeechManager implements RecognitionListener {
     }
 
     /**
-     * Fill numberWords map by looping from 0 (inclusive)
-     * to Config.MAX_NUMBER (inclusive) and getting it's
-     * equivalent number word from the ValueConverters class.
+     * Loads the number lexicon if it hasn't been already. Called from
+     * the init thread so the first answer doesn't pay for it.
+     * @return The lexicon for Config.LOCALE
      */
-    public void fillNumberWordsMap() {
+    public static NumberLexicon loadLexicon() {
 
-        // The only thing from an external library in this project.
-        // Not my first guess for external library usage.
-        // Better than hardcoding 0 -> 30.
-        ValueConverters intConverter = ValueConverters.getByLocaleOrDefault(Config.LOCALE, ValueConverters.ENGLISH_INTEGER);
+        NumberLexicon lexicon = LexiconHolder.lexicon;
 
-        for (int i = 0; i <= Config.MAX_NUMBER; i++) {
+        if (lexicon.maxNumber() < Config.MAX_NUMBER) {
 
-            numberWords.put(i, intConverter.asWords(i));
+            // The lexicon is generated from veloxLexiconMaxNumber in gradle.properties,
+            // which has to be kept at or above Config.MAX_NUMBER
+            Log.e(LOG_TAG, "Number lexicon only goes up to " + lexicon.maxNumber() + ", but MAX_NUMBER is " + Config.MAX_NUMBER);
 
         }
 
-        Log.d(LOG_TAG, "Filled the number words map with " + numberWords.size() + " pairs.");
+        return lexicon;
 
     }
 
     /**
-     * Make the call to fill the numberWords map, create the speech recognizer intent,
-     * check if speech recognition is available, create the speech recognizer, and set
-     * this class as the listener for the speech recognizer.
+     * Create the speech recognizer intent, check if speech recognition is available,
+     * create the speech recognizer, and set this class as the listener for the speech
+     * recognizer.
      */
     public void init() {
 
-        // First true initialization task
-        fillNumberWordsMap();
+        // Parse results depend on both, throw them away if either changed
+        intsCache.setContext(Config.LOCALE, Config.MAX_NUMBER);
+        intCache.setContext(Config.LOCALE, Config.MAX_NUMBER);
 
         // We want to recognize speech
         speechRecognizerIntent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
@@ -125,57 +348,246 @@ public class SpeechManager implements RecognitionListener {
         // Configurable locale for answers
         speechRecognizerIntent.putExtra(RecognizerIntent.EXTRA_LANGUAGE, Config.LOCALE);
 
+        // We only ever look at the first few alternatives in selectAnswers()
+        speechRecognizerIntent.putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, Config.MAX_RECOGNITION_RESULTS);
+
+        // Every answer is a number up to MAX_NUMBER, so steer the recognizer
+        // toward those instead of the whole dictation vocabulary. Older
+        // versions just get the free form intent above.
+        this.biasing = Config.SPEECH_BIASING && Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU;
+        this.biasedSolution = NOT_BIASED;
+
+        Log.d(LOG_TAG, "Recognizer biasing " + (biasing ? "on" : "off") + ", SDK_INT = " + Build.VERSION.SDK_INT);
+
         if (!SpeechRecognizer.isRecognitionAvailable(main)) {
 
             Log.e(LOG_TAG, "Speech recognition unavailable!");
+            startup.fail(GameStartup.RECOGNIZER, new IllegalStateException("Speech recognition unavailable"));
             return;
 
         }
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && SpeechRecognizer.isOnDeviceRecognitionAvailable(main)) {
+        // Decided ahead of time by RecognizerReadiness, which on API 33+
+        // also checks the on device model for our locale is downloaded.
+        // Where it's ready, on device recognition is preferred: it never
+        // goes to the network, so it's faster and far more consistent.
+        RecognizerReadiness readiness = RecognizerReadiness.session(main);
+        this.recognizerPath = readiness.choosePath();
+        this.recognizerReason = readiness.getStatusName();
 
-            // Certain devices are qualified for on device speech recognition.
-            // However, with this OS requirements and individual device
-            // requirements, this is pretty rare. Where it's available, it's
-            // preferred.
-            Log.d(LOG_TAG, "Using on device speech recognition!");
+        if (recognizerPath == RecognizerReadiness.PATH_ON_DEVICE) {
+
+            Log.d(LOG_TAG, "Using on device speech recognition! (" + recognizerReason + ")");
             this.recognizer = SpeechRecognizer.createOnDeviceSpeechRecognizer(main);
 
         } else {
 
-            // Give a reason why on device speech recognition failed.
-            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S) {
+            Log.d(LOG_TAG, "Using regular speech recognition, on device " + recognizerReason
+                    + ", SDK_INT = " + Build.VERSION.SDK_INT);
+            this.recognizer = SpeechRecognizer.createSpeechRecognizer(main);
 
-                Log.d(LOG_TAG, "Android OS too old for on-device speech recognition, SDK_INT = " + Build.VERSION.SDK_INT);
+        }
 
-            } else {
+        // This class receives all information from the speech recognizer,
+        // like what words are predicted, error codes, etc.
+        this.recognizer.setRecognitionListener(this);
 
-                Log.d(LOG_TAG, "isOnDeviceRecognitionAvailable() returned false.");
+    }
+
+    /**
+     * Start listening during the countdown so the recognizer is bound
+     * and ready for speech by the time the game starts. Completes
+     * GameStartup.RECOGNIZER from onReadyForSpeech(), or fails it if
+     * the recognizer errors out before then or isn't ready within
+     * Config.RECOGNIZER_READY_TIMEOUT_MS. Anything heard before run()
+     * is ignored.
+     */
+    public void warmUp() {
+
+        if (recognizer == null) {
+            return;
+        }
+
+        Log.d(LOG_TAG, "Warming up speech recognition!");
+        Tracer.instant(Tracer.RECOGNIZER_RESTART);
+        startListening();
+
+        // CompletableFuture.orTimeout() is Java 9, so the failure is scheduled
+        new Handler(Looper.getMainLooper()).postDelayed(() -> {
+
+            if (!startup.isDone(GameStartup.RECOGNIZER)) {
+
+                Log.e(LOG_TAG, "Recognizer not ready after " + Config.RECOGNIZER_READY_TIMEOUT_MS + " ms!");
+                startup.fail(GameStartup.RECOGNIZER, new IllegalStateException("Recognizer not ready in time"));
 
             }
 
-            this.recognizer = SpeechRecognizer.createSpeechRecognizer(main);
+        }, Config.RECOGNIZER_READY_TIMEOUT_MS);
 
-            Log.d(LOG_TAG, "Successfully using regular speech recognizer instead!");
+    }
+
+    /**
+     * Loads the lexicon and builds the biasing strings the recognizer
+     * starts with. Called from the init thread; until it's done, the
+     * recognizer listens without biasing strings.
+     */
+    public void prepareBiasing() {
+
+        NumberLexicon lexicon = loadLexicon();
 
+        if (biasing) {
+            initialBiasingStrings = biasingStrings(lexicon, Config.MAX_NUMBER, -1, Config.BIASING_NEIGHBOURS);
         }
 
-        // This class receives all information from the speech recognizer,
-        // like what words are predicted, error codes, etc.
-        this.recognizer.setRecognitionListener(this);
+    }
+
+    /**
+     * Starts (or restarts) the recognizer. When biasing, the strings
+     * are rebuilt first if the problem on screen changed, so the
+     * current solution and its neighbours come first. problemChanged()
+     * restarts a session that's waiting for speech when the problem
+     * changes under it.
+     */
+    private void startListening() {
+
+        // A new session, nothing heard in it yet
+        utterance.reset();
+        readyNs = 0;
+        speechBeganNs = 0;
+        speechEndedNs = 0;
+
+        if (lastStartListeningNs != 0) {
+            restartCount++;
+            RESTARTS.increment();
+        }
+
+        lastStartListeningNs = System.nanoTime();
+        state = STATE_STARTING;
+
+        if (biasing && initialBiasingStrings != null) {
+
+            int solution = game.getCurrentSolution();
+
+            if (solution != biasedSolution) {
+
+                // Before the first problem the prebuilt strings do, so warming
+                // up never loads the lexicon here
+                ArrayList<String> strings = solution < 0 ? initialBiasingStrings
+                        : biasingStrings(LexiconHolder.lexicon, Config.MAX_NUMBER, solution, Config.BIASING_NEIGHBOURS);
+
+                speechRecognizerIntent.putStringArrayListExtra(RecognizerIntent.EXTRA_BIASING_STRINGS, strings);
+                biasedSolution = solution;
+
+            }
+
+        }
+
+        recognizer.startListening(speechRecognizerIntent);
 
     }
 
     /**
-     * Start listening. Separate from init() because init() runs
-     * at countdown and we don't want speech interpretation before
-     * the game actually starts.
+     * Called on the main thread when a new problem is shown. When
+     * biasing, a session that hasn't heard anything yet still favours
+     * the last problem's solution (or none), so it's restarted with
+     * the new problem's strings. A session that's hearing speech is
+     * left alone; it restarts with them after its result.
+     */
+    public void problemChanged() {
+
+        if (!biasing || recognizer == null || initialBiasingStrings == null) {
+            return;
+        }
+
+        if (state != STATE_STARTING && state != STATE_LISTENING) {
+            return;
+        }
+
+        if (game.getCurrentSolution() == biasedSolution) {
+            return;
+        }
+
+        Tracer.instant(Tracer.RECOGNIZER_RESTART);
+        recognizer.cancel();
+        startListening();
+
+    }
+
+    /**
+     * Builds the biasing strings for EXTRA_BIASING_STRINGS: every
+     * number from 0 to maxNumber as both digits and words, since
+     * recognizers return either. The solution and the numbers within
+     * neighbours of it come first, on the chance the recognizer weighs
+     * earlier strings more.
+     * @param lexicon Number words
+     * @param maxNumber Largest number to include
+     * @param solution Solution of the problem on screen, -1 if none
+     * @param neighbours How many numbers either side of the solution to put first
+     * @return A new list, as the intent keeps a reference to it.
+     */
+    public static ArrayList<String> biasingStrings(NumberLexicon lexicon, int maxNumber, int solution, int neighbours) {
+
+        ArrayList<String> strings = new ArrayList<>(2 * (maxNumber + 1));
+        boolean[] added = new boolean[maxNumber + 1];
+
+        if (solution >= 0 && solution <= maxNumber) {
+
+            addBiasingStrings(strings, added, lexicon, solution);
+
+            for (int distance = 1; distance <= neighbours; distance++) {
+
+                if (solution - distance >= 0) {
+                    addBiasingStrings(strings, added, lexicon, solution - distance);
+                }
+
+                if (solution + distance <= maxNumber) {
+                    addBiasingStrings(strings, added, lexicon, solution + distance);
+                }
+
+            }
+
+        }
+
+        for (int i = 0; i <= maxNumber; i++) {
+            addBiasingStrings(strings, added, lexicon, i);
+        }
+
+        return strings;
+
+    }
+
+    private static void addBiasingStrings(List<String> strings, boolean[] added, NumberLexicon lexicon, int number) {
+
+        if (added[number]) {
+            return;
+        }
+
+        added[number] = true;
+        strings.add(Integer.toString(number));
+
+        String word = lexicon.wordFor(number);
+
+        if (word != null) {
+            strings.add(word);
+        }
+
+    }
+
+    /**
+     * Start passing answers on to the Game. Separate from init() because
+     * init() runs at countdown and we don't want speech interpretation
+     * before the game actually starts.
      */
     public void run() {
 
-        Log.d(LOG_TAG, "Attempting to start speech recognition!");
-        this.recognizer.startListening(speechRecognizerIntent);
+        if (recognizer == null) {
 
+            Log.e(LOG_TAG, "No speech recognizer to run!");
+            return;
+
+        }
+
+        this.acceptingAnswers = true;
         this.ready = true;
 
     }
@@ -184,48 +596,172 @@ public class SpeechManager implements RecognitionListener {
      * Called when the speech recognizer stops due to an error. Attempts
      * to start the recognizer back up again. The most common error is
      * error code 7: 'no match.' This is typically because the user is
-     * not saying anything.
+     * not saying anything. Before the recognizer has ever been ready,
+     * anything but a transient error means it never will be, so the
+     * RECOGNIZER stage fails instead.
      * @param errorCode Error code thrown
      */
     @Override
     public void onError(int errorCode) {
 
+        Tracer.begin(Tracer.SPEECH_ERROR);
+        errorCount++;
+        ERRORS.increment();
+
+        if (!startup.isDone(GameStartup.RECOGNIZER) && !isTransientError(errorCode)) {
+
+            Log.e(LOG_TAG, "SpeechRecognizer threw error code " + errorCode + " before it was ready, giving up!");
+            startup.fail(GameStartup.RECOGNIZER, new IllegalStateException("Recognizer error " + errorCode));
+
+        }
+
+        if (startup.isFailed(GameStartup.RECOGNIZER)) {
+
+            // The game won't start, so there's nothing to listen for
+            state = STATE_IDLE;
+            Tracer.end(Tracer.SPEECH_ERROR);
+            return;
+
+        }
+
         Log.d(LOG_TAG, "SpeechRecognizer threw error code " + errorCode + ", user probably not speaking, attempting to keep listening!");
-        recognizer.startListening(speechRecognizerIntent);
+        Tracer.instant(Tracer.RECOGNIZER_RESTART);
+        startListening();
+
+        Tracer.end(Tracer.SPEECH_ERROR);
 
     }
 
     /**
      * Called when the speech recognizer determines the user has stopped talking
-     * and makes final predictions. Loops through all predictions (most confident
-     * first) and tries to convert that prediction to a number. If successful,
-     * tell the Game object. Either way, continue listening.
+     * and makes final predictions. Parses every prediction, then picks the one
+     * to submit with selectAnswers(), weighing the recognizer's confidence
+     * against the current problem's solution. If successful, tell the Game
+     * object. Either way, continue listening.
      * @param bundle Results from the prediction
      */
     @Override
     public void onResults(Bundle bundle) {
 
+        Tracer.begin(Tracer.SPEECH_RESULTS);
         Log.d(LOG_TAG, "Full recognition results obtained!");
+        recordStageLatencies(System.nanoTime());
 
         List<String> results = bundle.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+        float[] confidences = bundle.getFloatArray(SpeechRecognizer.CONFIDENCE_SCORES);
+        resultCount++;
+        RESULTS.increment();
+
+        if (results != null) {
+
+            List<Integer> answers = selectAnswers(results, confidences, game.getCurrentSolution());
+
+            if (!answers.isEmpty()) {
+
+                parsedCount++;
+                PARSED.increment();
+
+                if (acceptingAnswers) {
+
+                    if (!utterance.isHeard()) {
+
+                        // The recognizer never reported the speech itself,
+                        // the best we can do is now
+                        utterance.ended(game.getProblemEpoch(), SystemClock.elapsedRealtime());
+
+                    }
+
+                    if (utterance.getSpokenAtMs() < ignoreSpeechUntilMs) {
+
+                        // Most likely the narration, not the player
+                        ignoredSpeechCount++;
+                        Log.d(LOG_TAG, "Heard " + answers + " over the narration, ignoring.");
 
-        for (int i = 0; i < results.size(); i++) {
+                    } else {
 
-            // Try to see if the prediction corresponds to an Integer
-            Integer convertedPrediction = intFromPrediction(results.get(i));
+                        game.newAnswers(answers, utterance.getEpoch(), utterance.getStartedAtMs(), utterance.getSpokenAtMs());
 
-            if (convertedPrediction != null) {
+                    }
 
-                // If so, new answer, no need ot keep looking
-                game.newAnswer(convertedPrediction);
-                break;
+                } else {
+                    Log.d(LOG_TAG, "Game hasn't started, ignoring " + answers);
+                }
+
+            } else if (capture != null && acceptingAnswers && !results.isEmpty()) {
+
+                // Something was said but not a number we know. If the
+                // problem then times out, the audio is worth keeping.
+                unparsedPredictions = results;
+                unparsedConfidences = confidences;
+                unparsedEpoch = utterance.isHeard() ? utterance.getEpoch() : game.getProblemEpoch();
 
             }
 
         }
 
         // Listen for next answer
-        recognizer.startListening(speechRecognizerIntent);
+        Tracer.instant(Tracer.RECOGNIZER_RESTART);
+        startListening();
+
+        Tracer.end(Tracer.SPEECH_RESULTS);
+
+    }
+
+    /**
+     * Picks which of the recognizer's N-best predictions to submit. Every
+     * prediction is parsed once. Normally the highest ranked prediction
+     * that contains a number wins, but if a lower ranked prediction's first
+     * number is the expected solution and the recognizer is at least
+     * Config.MIN_ALTERNATIVE_CONFIDENCE sure of it, that one wins instead,
+     * so a wrong top prediction can't hide a correct second one.
+     * @param predictions Predictions, most confident first
+     * @param confidences Confidence of each prediction from 0 to 1, or
+     *                    null (or negative values) if the recognizer
+     *                    doesn't report them
+     * @param expectedSolution Solution of the problem on screen, -1 if none
+     * @return The numbers in the chosen prediction, in spoken order.
+     * Empty if no prediction contained a number.
+     */
+    public static List<Integer> selectAnswers(List<String> predictions, float[] confidences, int expectedSolution) {
+
+        List<Integer> topAnswers = Collections.emptyList();
+
+        for (int i = 0; i < predictions.size(); i++) {
+
+            // Try to see if the prediction contains one or more numbers,
+            // ex. "twelve seven" from a player answering two problems at once
+            List<Integer> answers = intsFromPrediction(predictions.get(i));
+
+            if (answers.isEmpty()) {
+                continue;
+            }
+
+            if (topAnswers.isEmpty()) {
+
+                topAnswers = answers;
+
+                if (expectedSolution < 0 || answers.get(0) == expectedSolution) {
+                    // Nothing better to look for
+                    break;
+                }
+
+                continue;
+
+            }
+
+            float confidence = confidences != null && i < confidences.length ? confidences[i] : -1;
+
+            if (answers.get(0) == expectedSolution && confidence >= Config.MIN_ALTERNATIVE_CONFIDENCE) {
+
+                Log.d(LOG_TAG, "Prediction " + (i + 1) + " (" + predictions.get(i) + ", confidence " + confidence
+                        + ") matches the solution, taking it over " + topAnswers);
+                return answers;
+
+            }
+
+        }
+
+        return topAnswers;
 
     }
 
@@ -238,6 +774,23 @@ public class SpeechManager implements RecognitionListener {
      */
     public static Integer intFromPrediction(String prediction) {
 
+        Tracer.begin(Tracer.INT_FROM_PREDICTION);
+
+        try {
+            return intCache.get(prediction, SpeechManager::parsePrediction);
+        } finally {
+            Tracer.end(Tracer.INT_FROM_PREDICTION);
+        }
+
+    }
+
+    /**
+     * The body of intFromPrediction(), split out so tracing can
+     * wrap its several return points and the cache can call it
+     * on a miss.
+     */
+    private static Integer parsePrediction(String prediction) {
+
         try {
 
             // Approach 1: is the prediction literally just the number?
@@ -252,7 +805,8 @@ public class SpeechManager implements RecognitionListener {
 
         }
 
-        prediction = prediction.toLowerCase();
+        // Number words in the lexicon use spaces instead of hyphens
+        prediction = prediction.toLowerCase().replace('-', ' ');
 
         // Start from max number because if you start from lower numbers
         // the startWith() conditions interpret double digits numbers as
@@ -271,11 +825,11 @@ public class SpeechManager implements RecognitionListener {
 
             }
 
-            String numberWord = numberWords.get(i);
+            String numberWord = LexiconHolder.lexicon.wordFor(i);
 
             if (numberWord == null) {
 
-                // Should be impossible because numberWords are generated up to
+                // Should be impossible because the lexicon is generated up to
                 // and including MAX_NUMBER, but better safe than sorry
                 Log.e(LOG_TAG, "Number word for " + i + " doesn't exist!");
                 return null;
@@ -300,6 +854,123 @@ public class SpeechManager implements RecognitionListener {
 
     }
 
+    /**
+     * Tries to extract an ordered sequence of integers from a String
+     * prediction such as "12 7", "twelve seven", or "twenty one five".
+     * Each whitespace separated token is matched either as a number
+     * word (spanning up to the lexicon's maxWordsPerNumber() tokens, longest match
+     * first) or as a number with trailing characters ("11th", "11:00").
+     * If no token matches on its own, falls back to intFromPrediction()
+     * on the whole prediction.
+     * @param prediction Prediction from speech recognizer
+     * @return Every number found in the prediction, in spoken order.
+     * Empty if none were found. Unmodifiable.
+     */
+    public static List<Integer> intsFromPrediction(String prediction) {
+
+        Tracer.begin(Tracer.INTS_FROM_PREDICTION);
+        List<Integer> numbers = intsCache.get(prediction, SpeechManager::parsePredictionInts);
+        Tracer.end(Tracer.INTS_FROM_PREDICTION);
+
+        return numbers;
+
+    }
+
+    /**
+     * The body of intsFromPrediction(), called by the cache on a miss.
+     */
+    private static List<Integer> parsePredictionInts(String prediction) {
+
+        List<Integer> numbers = new ArrayList<>();
+        String[] tokens = prediction.toLowerCase().replace('-', ' ').trim().split("[\\s,.!?]+");
+
+        int i = 0;
+        while (i < tokens.length) {
+
+            int matchedTokens = 0;
+
+            // Approach 1: Do the next few tokens spell out a number word?
+            // Longest first so "twenty one" isn't read as "twenty", "one"
+            for (int span = Math.min(LexiconHolder.lexicon.maxWordsPerNumber(), tokens.length - i); span > 0; span--) {
+
+                StringBuilder candidate = new StringBuilder(tokens[i]);
+                for (int j = i + 1; j < i + span; j++) {
+                    candidate.append(' ').append(tokens[j]);
+                }
+
+                int value = LexiconHolder.lexicon.valueOf(candidate);
+
+                if (value >= 0 && value <= Config.MAX_NUMBER) {
+
+                    numbers.add(value);
+                    matchedTokens = span;
+                    break;
+
+                }
+
+            }
+
+            // Approach 2: Does the token start with digits? ("12", "12th", "11:00")
+            if (matchedTokens == 0) {
+
+                Integer value = leadingInt(tokens[i]);
+
+                if (value != null) {
+                    numbers.add(value);
+                }
+
+                matchedTokens = 1;
+
+            }
+
+            i += matchedTokens;
+
+        }
+
+        if (numbers.isEmpty()) {
+
+            // Nothing matched token by token, give the looser
+            // single number search a chance
+            Integer single = intFromPrediction(prediction);
+
+            if (single != null) {
+                numbers.add(single);
+            }
+
+        }
+
+        Log.d(LOG_TAG, "Prediction (" + prediction + ") contained numbers: " + numbers);
+        return numbers.isEmpty() ? Collections.<Integer>emptyList() : Collections.unmodifiableList(numbers);
+
+    }
+
+    /**
+     * Parses the run of digits at the start of a token, ignoring
+     * anything that follows ("12th" -> 12, "11:00" -> 11).
+     * @param token A single lower-cased word from a prediction
+     * @return The leading number, or null if the token doesn't
+     * start with a digit or the number is beyond Config.MAX_NUMBER.
+     */
+    private static Integer leadingInt(String token) {
+
+        int value = 0;
+        int digits = 0;
+
+        while (digits < token.length() && Character.isDigit(token.charAt(digits))) {
+
+            value = value * 10 + (token.charAt(digits) - '0');
+            digits++;
+
+            if (value > Config.MAX_NUMBER) {
+                return null;
+            }
+
+        }
+
+        return digits == 0 ? null : value;
+
+    }
+
     /**
      * Kill the SpeechManager. Used when shutting down
      * one Game to start a new one.
@@ -315,30 +986,73 @@ public class SpeechManager implements RecognitionListener {
         mainHandler.post(() -> {
 
             ready = false;
+            acceptingAnswers = false;
+
+            // Compare runs with Config.SPEECH_BIASING on and off using the
+            // parse rate here and the response times in GAME STATS
+            Log.d(LOG_TAG, "SPEECH STATS | Biasing: " + (biasing ? "on" : "off") + ", results: " + resultCount
+                    + " (" + parsedCount + " parsed, " + (resultCount == 0 ? 0 : 100 * parsedCount / resultCount)
+                    + "%), errors: " + errorCount + ", parse cache: " + intsCache.summary()
+                    + (Config.EYES_FREE ? ", ignored over narration: " + ignoredSpeechCount : "")
+                    + (capture != null ? ", audio heard: " + capture.getTotalBytes() / 1024 + " KB, misrecognitions saved: " + capturedCount : ""));
+
+            Log.d(LOG_TAG, "RECOGNIZER STATS | Path: " + RecognizerReadiness.PATH_NAMES[recognizerPath]
+                    + " (" + recognizerReason + "), end of speech to results: "
+                    + (recognitionMsCount == 0 ? "no results"
+                    : "avg " + recognitionMsTotal / recognitionMsCount + " ms, max " + recognitionMsMax
+                    + " ms over " + recognitionMsCount + " results"));
+
+            // If the on device model was still downloading, see if it's
+            // arrived in time for the next game
+            RecognizerReadiness.session(main).recheckIfDownloading();
 
             if (recognizer != null) {
                 recognizer.destroy();
             }
 
             recognizer = null;
+            state = STATE_IDLE;
 
         });
 
     }
 
-    // I don't use these methods, but they're required by the interface.
+    /**
+     * @return Whether the recognizer can be expected to work if it's
+     * simply started again: nothing was said, or it was busy.
+     */
+    private static boolean isTransientError(int errorCode) {
+
+        return errorCode == SpeechRecognizer.ERROR_NO_MATCH
+                || errorCode == SpeechRecognizer.ERROR_SPEECH_TIMEOUT
+                || errorCode == SpeechRecognizer.ERROR_RECOGNIZER_BUSY
+                || errorCode == SpeechRecognizer.ERROR_NETWORK_TIMEOUT;
+
+    }
+
+    // I barely use these methods, but they're required by the interface.
 
     @Override
     public void onReadyForSpeech(Bundle bundle) {
 
         // Ready to hear speech
+        Tracer.instant(Tracer.SPEECH_READY);
+        readyNs = System.nanoTime();
+        state = STATE_LISTENING;
+        startup.complete(GameStartup.RECOGNIZER);
 
     }
 
     @Override
     public void onBeginningOfSpeech() {
 
-        // User has begun speaking
+        // User has begun speaking, so this is the problem they're
+        // answering. The time is only a fallback in case the end of
+        // speech isn't reported.
+        Tracer.instant(Tracer.SPEECH_BEGINNING);
+        speechBeganNs = System.nanoTime();
+        state = STATE_HEARING;
+        utterance.began(game.getProblemEpoch(), SystemClock.elapsedRealtime());
 
     }
 
@@ -352,15 +1066,156 @@ public class SpeechManager implements RecognitionListener {
     @Override
     public void onBufferReceived(byte[] bytes) {
 
-        // Can be used to monitor if audio is being received
+        // Raw audio, only kept for Config.AUDIO_CAPTURE
+        if (capture != null) {
+            capture.write(bytes);
+        }
+
+    }
+
+    /**
+     * Drops whatever the player is heard saying until the given time,
+     * for ProblemNarrator to keep the recognizer from answering with
+     * the numbers it reads out. Later calls replace earlier ones.
+     * Safe from any thread.
+     * @param elapsedRealtimeMs SystemClock.elapsedRealtime() to ignore speech until
+     */
+    public void ignoreSpeechUntil(long elapsedRealtimeMs) {
+        ignoreSpeechUntilMs = elapsedRealtimeMs;
+    }
+
+    /**
+     * Called when a problem runs out of time. If the recognizer heard
+     * something for it that didn't parse as a number, saves the audio
+     * leading up to now to files/misrecognitions as a WAV file, with
+     * the N-best list next to it. Does nothing unless
+     * Config.AUDIO_CAPTURE. Safe from any thread.
+     * @param epoch Index of the problem that timed out
+     * @param equation The problem, as ProblemSet.equationToString()
+     * @param solution The answer that was expected
+     */
+    public void problemTimedOut(int epoch, String equation, int solution) {
+
+        if (capture == null) {
+            return;
+        }
+
+        new Handler(Looper.getMainLooper()).post(() -> {
+
+            if (unparsedPredictions == null || unparsedEpoch != epoch) {
+                return;
+            }
+
+            StringBuilder notes = new StringBuilder();
+            notes.append("problem: ").append(epoch + 1).append('\n');
+            notes.append("equation: ").append(equation).append('\n');
+            notes.append("solution: ").append(solution).append('\n');
+            notes.append("locale: ").append(Config.LOCALE.toLanguageTag()).append('\n');
+            notes.append("biasing: ").append(biasing ? "on" : "off").append('\n');
+
+            for (int i = 0; i < unparsedPredictions.size(); i++) {
+
+                float confidence = unparsedConfidences != null && i < unparsedConfidences.length ? unparsedConfidences[i] : -1;
+                notes.append("prediction ").append(i + 1).append(": ").append(unparsedPredictions.get(i))
+                        .append(" (confidence ").append(confidence).append(")\n");
+
+            }
+
+            byte[] pcm = capture.snapshot();
+            unparsedPredictions = null;
+            unparsedConfidences = null;
+
+            if (pcm.length == 0) {
+
+                Log.d(LOG_TAG, "Problem " + (epoch + 1) + " misrecognized, but the recognizer hasn't shared any audio.");
+                return;
+
+            }
+
+            capturedCount++;
+            File directory = new File(main.getFilesDir(), "misrecognitions");
+            String name = "velox-" + System.currentTimeMillis() + "-" + (epoch + 1);
+
+            new Thread(() -> AudioCapture.save(directory, name, pcm, notes.toString()), "Save misrecognition").start();
+
+        });
 
     }
 
     @Override
     public void onEndOfSpeech() {
 
-        // User has stopped speaking
+        // User has stopped speaking, this is when their answer was given
+        Tracer.instant(Tracer.SPEECH_END);
+        speechEndedNs = System.nanoTime();
+        state = STATE_RECOGNIZING;
+        utterance.ended(game.getProblemEpoch(), SystemClock.elapsedRealtime());
+
+    }
+
+    /**
+     * Publishes how long each stage of the session that just produced
+     * results took, for PerfOverlay.
+     */
+    private void recordStageLatencies(long resultsNs) {
+
+        lastReadyMs = stageMs(lastStartListeningNs, readyNs);
+        lastWaitMs = stageMs(readyNs, speechBeganNs);
+        lastSpeakingMs = stageMs(speechBeganNs, speechEndedNs);
+        lastRecognitionMs = stageMs(speechEndedNs, resultsNs);
+
+        if (lastRecognitionMs >= 0) {
+
+            RECOGNITION_MS.record(lastRecognitionMs);
+            RECOGNITION_MS_BY_PATH[recognizerPath].record(lastRecognitionMs);
+
+            recognitionMsTotal += lastRecognitionMs;
+            recognitionMsCount++;
+            recognitionMsMax = Math.max(recognitionMsMax, lastRecognitionMs);
+
+        }
+
+    }
+
+    private static int stageMs(long fromNs, long toNs) {
+        return fromNs == 0 || toNs == 0 ? -1 : (int) ((toNs - fromNs) / 1_000_000);
+    }
+
+    // Diagnostics getters, safe from any thread
+
+    public String getStateName() {
+        return STATE_NAMES[state];
+    }
+
+    /**
+     * @return System.nanoTime() of the last startListening(), 0 if never.
+     */
+    public long getLastStartListeningNs() {
+        return lastStartListeningNs;
+    }
+
+    /**
+     * @return How many times the recognizer has been restarted after
+     * results or an error.
+     */
+    public int getRestartCount() {
+        return restartCount;
+    }
+
+    public int getLastReadyMs() {
+        return lastReadyMs;
+    }
+
+    public int getLastWaitMs() {
+        return lastWaitMs;
+    }
+
+    public int getLastSpeakingMs() {
+        return lastSpeakingMs;
+    }
 
+    public int getLastRecognitionMs() {
+        return lastRecognitionMs;
     }
 
     @Override
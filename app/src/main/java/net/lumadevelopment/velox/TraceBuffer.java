@@ -0,0 +1,181 @@
+package net.lumadevelopment.velox;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size ring of trace events stored as parallel primitive
+ * arrays, so recording an event never allocates. When full, the
+ * oldest events are overwritten. Safe to record into from any
+ * thread; export while recording may include a half written event
+ * at the head of the ring.
+ *
+ * Exports in the Chrome JSON trace format, which chrome://tracing
+ * and ui.perfetto.dev both open directly.
+ */
+public class TraceBuffer {
+
+    // Event phases, as named by the Chrome trace format
+    public static final byte PHASE_BEGIN = 'B';
+    public static final byte PHASE_END = 'E';
+    public static final byte PHASE_INSTANT = 'i';
+
+    private final int mask;
+    private final long[] timestampsInNs;
+    private final long[] threadIds;
+    private final int[] nameIds;
+    private final byte[] phases;
+
+    /**
+     * Total events ever recorded. The next event goes in
+     * slot (cursor & mask).
+     */
+    private final AtomicLong cursor;
+
+    /**
+     * @param capacity How many events to keep, rounded up to a power of two
+     */
+    public TraceBuffer(int capacity) {
+
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+
+        this.mask = size - 1;
+        this.timestampsInNs = new long[size];
+        this.threadIds = new long[size];
+        this.nameIds = new int[size];
+        this.phases = new byte[size];
+        this.cursor = new AtomicLong();
+
+    }
+
+    /**
+     * Records one event on the calling thread.
+     * @param phase PHASE_BEGIN, PHASE_END or PHASE_INSTANT
+     * @param nameId Index into the names passed to exportChromeJson()
+     * @param timestampInNs Monotonic time, ex. System.nanoTime()
+     */
+    public void record(byte phase, int nameId, long timestampInNs) {
+
+        int slot = (int) (cursor.getAndIncrement() & mask);
+
+        timestampsInNs[slot] = timestampInNs;
+        threadIds[slot] = Thread.currentThread().getId();
+        nameIds[slot] = nameId;
+        phases[slot] = phase;
+
+    }
+
+    /**
+     * @return How many events the ring currently holds.
+     */
+    public int size() {
+        return (int) Math.min(cursor.get(), mask + 1);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public void clear() {
+        cursor.set(0);
+    }
+
+    /**
+     * Writes every event in the ring, oldest first, as a Chrome JSON
+     * trace. Timestamps are converted to microseconds relative to the
+     * oldest event.
+     * @param names Event names, indexed by nameId
+     * @param processId Reported as "pid" on every event
+     * @param out Destination, not closed
+     */
+    public void exportChromeJson(String[] names, int processId, Writer out) throws IOException {
+
+        long end = cursor.get();
+        long start = Math.max(0, end - (mask + 1));
+        long origin = end == start ? 0 : timestampsInNs[(int) (start & mask)];
+
+        out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+
+        for (long i = start; i < end; i++) {
+
+            int slot = (int) (i & mask);
+            int nameId = nameIds[slot];
+            String name = nameId >= 0 && nameId < names.length ? names[nameId] : "event " + nameId;
+
+            if (i != start) {
+                out.write(',');
+            }
+
+            out.write("\n{\"name\":\"");
+            writeEscaped(name, out);
+            out.write("\",\"ph\":\"");
+            out.write((char) phases[slot]);
+            out.write("\",\"ts\":");
+            out.write(formatMicros(timestampsInNs[slot] - origin));
+            out.write(",\"pid\":");
+            out.write(Integer.toString(processId));
+            out.write(",\"tid\":");
+            out.write(Long.toString(threadIds[slot]));
+
+            if (phases[slot] == PHASE_INSTANT) {
+                // Thread scoped instant, drawn on the thread's track
+                out.write(",\"s\":\"t\"");
+            }
+
+            out.write('}');
+
+        }
+
+        out.write("\n]}\n");
+
+    }
+
+    /**
+     * Nanoseconds to a microsecond value with three decimal places,
+     * the resolution the Chrome trace format accepts.
+     */
+    private static String formatMicros(long nanos) {
+
+        long micros = nanos / 1000;
+        long remainder = Math.abs(nanos % 1000);
+
+        StringBuilder text = new StringBuilder();
+
+        if (nanos < 0 && micros == 0) {
+            text.append('-');
+        }
+
+        text.append(micros).append('.');
+
+        if (remainder < 100) {
+            text.append('0');
+        }
+        if (remainder < 10) {
+            text.append('0');
+        }
+
+        return text.append(remainder).toString();
+
+    }
+
+    private static void writeEscaped(String text, Writer out) throws IOException {
+
+        for (int i = 0; i < text.length(); i++) {
+
+            char c = text.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < ' ') {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+
+        }
+
+    }
+
+}
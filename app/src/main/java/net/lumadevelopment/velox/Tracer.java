@@ -0,0 +1,163 @@
+package net.lumadevelopment.velox;
+
+import android.content.Context;
+import android.os.Process;
+import android.os.Trace;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Opt-in session tracer. Records begin/end events for the game loop,
+ * UI posts, speech callbacks and screen inflation into a TraceBuffer,
+ * and mirrors them into android.os.Trace sections so they also show
+ * up in systrace/Perfetto captures. Disabled by default; while
+ * disabled every call is a single static field check.
+ *
+ * Begin and end calls have to be paired on the same thread.
+ */
+public class Tracer {
+
+    public static final String LOG_TAG = Tracer.class.getSimpleName();
+
+    // Event names. The ids index into NAMES.
+    public static final int GAME_INIT = 0;
+    public static final int GAME_UPDATE = 1;
+    public static final int GAME_UPDATE_UI = 2;
+    public static final int SPEECH_RESULTS = 3;
+    public static final int SPEECH_ERROR = 4;
+    public static final int SPEECH_READY = 5;
+    public static final int SPEECH_BEGINNING = 6;
+    public static final int SPEECH_END = 7;
+    public static final int RECOGNIZER_RESTART = 8;
+    public static final int INT_FROM_PREDICTION = 9;
+    public static final int INFLATE_COUNTDOWN = 10;
+    public static final int INFLATE_PROBLEM = 11;
+    public static final int INFLATE_GAME_OVER = 12;
+    public static final int INTS_FROM_PREDICTION = 13;
+    public static final int ANSWER_FEEDBACK = 14;
+    public static final int LAUNCH_WARM_UP = 15;
+
+    public static final String[] NAMES = {
+            "Game.init",
+            "Game.update",
+            "Game.update UI",
+            "SpeechManager.onResults",
+            "SpeechManager.onError",
+            "SpeechManager.onReadyForSpeech",
+            "SpeechManager.onBeginningOfSpeech",
+            "SpeechManager.onEndOfSpeech",
+            "Recognizer restart",
+            "SpeechManager.intFromPrediction",
+            "Inflate countdown",
+            "Inflate problem",
+            "Inflate game over",
+            "SpeechManager.intsFromPrediction",
+            "AnswerFeedback.play",
+            "Velox.warmUp"
+    };
+
+    private static final TraceBuffer buffer = new TraceBuffer(Config.TRACE_BUFFER_EVENTS);
+
+    /**
+     * Not volatile on purpose: this is read on every traced call and
+     * only changes when a tester turns tracing on or off.
+     */
+    private static boolean enabled = Config.TRACING_ENABLED;
+
+    private Tracer() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Tracer.enabled = enabled;
+    }
+
+    public static void begin(int nameId) {
+
+        if (!enabled) {
+            return;
+        }
+
+        buffer.record(TraceBuffer.PHASE_BEGIN, nameId, System.nanoTime());
+        Trace.beginSection(NAMES[nameId]);
+
+    }
+
+    public static void end(int nameId) {
+
+        if (!enabled) {
+            return;
+        }
+
+        Trace.endSection();
+        buffer.record(TraceBuffer.PHASE_END, nameId, System.nanoTime());
+
+    }
+
+    /**
+     * Records a point in time rather than a span, ex. a recognizer
+     * restart. Not mirrored into android.os.Trace, which only has
+     * sections.
+     */
+    public static void instant(int nameId) {
+
+        if (!enabled) {
+            return;
+        }
+
+        buffer.record(TraceBuffer.PHASE_INSTANT, nameId, System.nanoTime());
+
+    }
+
+    /**
+     * Writes everything in the ring to a Chrome JSON trace in the
+     * app's files directory (files/traces/). Open it in
+     * ui.perfetto.dev or chrome://tracing.
+     * @param context For the files directory
+     * @return The trace file, or null if there was nothing to export
+     * or writing failed.
+     */
+    public static File export(Context context) {
+
+        if (buffer.size() == 0) {
+
+            Log.d(LOG_TAG, "Trace buffer empty, nothing to export.");
+            return null;
+
+        }
+
+        File directory = new File(context.getFilesDir(), "traces");
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+
+            Log.e(LOG_TAG, "Couldn't create " + directory);
+            return null;
+
+        }
+
+        File traceFile = new File(directory, "velox-" + System.currentTimeMillis() + ".json");
+
+        try (Writer out = new FileWriter(traceFile)) {
+
+            buffer.exportChromeJson(NAMES, Process.myPid(), out);
+
+        } catch (IOException e) {
+
+            Log.e(LOG_TAG, "Failed to export trace to " + traceFile, e);
+            return null;
+
+        }
+
+        Log.d(LOG_TAG, "Exported " + buffer.size() + " trace events to " + traceFile);
+        return traceFile;
+
+    }
+
+}
@@ -9,12 +9,20 @@ import android.Manifest;
 import android.app.AlertDialog;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.Process;
+import android.os.SystemClock;
+import android.text.TextUtils;
 import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.Button;
 import android.widget.TextView;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The main launching point for the app. Deals with the activity_main.xml layout,
@@ -25,8 +33,42 @@ public class Velox extends AppCompatActivity {
 
     public static final String LOG_TAG = Velox.class.getSimpleName();
 
+    private static final Metrics.Histogram CREATE_MS =
+            Metrics.registry().histogram("velox_activity_create_milliseconds", "Velox.onCreate() run time");
+    private static final Metrics.Counter GAMES_STARTED =
+            Metrics.registry().counter("velox_games_started_total", "Countdowns started");
+    private static final Metrics.Histogram COLD_FIRST_FRAME_MS =
+            Metrics.registry().histogram("velox_cold_launch_first_frame_milliseconds", "Process start to first frame");
+    private static final Metrics.Histogram COLD_FULLY_DRAWN_MS =
+            Metrics.registry().histogram("velox_cold_launch_fully_drawn_milliseconds",
+                    "Process start to reportFullyDrawn(), after the deferred warm up");
+
+    /**
+     * The activity is recreated on rotation and the like, but metrics
+     * exporters are only set up once per process.
+     */
+    private static final AtomicBoolean exportersStarted = new AtomicBoolean(false);
+
+    /**
+     * Set by the first onCreate() in the process, so later ones (the
+     * activity being recreated) are timed as warm launches.
+     */
+    private static final AtomicBoolean launchedBefore = new AtomicBoolean(false);
+
+    /**
+     * Startup timings for this activity's launch, only touched on the
+     * UI thread until fully drawn.
+     */
+    private LaunchTimings launch;
+
     private final ActivityResultLauncher<String> requestPermissionLauncher;
 
+    /**
+     * Accounting for the next game, started when Go is pressed so the
+     * permission phase is included. Only touched on the UI thread.
+     */
+    private GameCost pendingCost;
+
     public Velox() {
 
         // Instantiate request permission launcher
@@ -53,7 +95,28 @@ public class Velox extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
 
+        long createStartMs = SystemClock.elapsedRealtime();
+
+        launch = new LaunchTimings(!launchedBefore.getAndSet(true), Process.getStartElapsedRealtime());
+        launch.markCreateStart(createStartMs);
+
         super.onCreate(savedInstanceState);
+        showMainScreen();
+
+        // Everything else waits for the first frame, see warmUp()
+        awaitFirstFrame();
+
+        long createEndMs = SystemClock.elapsedRealtime();
+        launch.markCreateEnd(createEndMs);
+        CREATE_MS.record(createEndMs - createStartMs);
+
+    }
+
+    /**
+     * Shows activity_main.xml, whose Go button starts a game.
+     */
+    private void showMainScreen() {
+
         setContentView(R.layout.activity_main);
 
         Button button = findViewById(R.id.goButton);
@@ -61,10 +124,164 @@ public class Velox extends AppCompatActivity {
         button.setOnClickListener(view -> {
 
             Log.d(LOG_TAG, "Go button pressed!");
+            pendingCost = new GameCost(GameCost.PHASE_PERMISSION);
             permissionLayer();
 
         });
 
+        if (BuildConfig.DEBUG) {
+
+            // Long press the title to turn tracing on or off for the games
+            // that follow, export it from the game over screen
+            findViewById(R.id.readyText).setOnLongClickListener(view -> {
+
+                Tracer.setEnabled(!Tracer.isEnabled());
+                Log.d(LOG_TAG, "Tracing " + (Tracer.isEnabled() ? "enabled" : "disabled"));
+                return true;
+
+            });
+
+        }
+
+    }
+
+    /**
+     * Marks the first frame once it's drawn, then starts warmUp().
+     */
+    private void awaitFirstFrame() {
+
+        View decorView = getWindow().getDecorView();
+
+        decorView.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+
+            private boolean drawn;
+
+            @Override
+            public void onDraw() {
+
+                if (drawn) {
+                    return;
+                }
+
+                drawn = true;
+                launch.markFirstFrame(SystemClock.elapsedRealtime());
+
+                // Listeners can't be removed while they're being called,
+                // and the warm up shouldn't hold up this frame anyway
+                ViewTreeObserver.OnDrawListener listener = this;
+
+                decorView.post(() -> {
+
+                    decorView.getViewTreeObserver().removeOnDrawListener(listener);
+                    warmUp();
+
+                });
+
+            }
+
+        });
+
+    }
+
+    /**
+     * Work that used to happen in onCreate() or when Go was pressed,
+     * done once the main screen is up instead: the metrics exporters,
+     * the on device speech model check, and the lexicon and divisor
+     * table the first game needs (and the practice deck in practice
+     * mode), loaded off the UI thread. Reports fully drawn when it's
+     * done, since Go won't stall on any of it from then on.
+     */
+    private void warmUp() {
+
+        // Has to be on the UI thread, and answers asynchronously
+        RecognizerReadiness.session(this);
+
+        new Thread(() -> {
+
+            Tracer.begin(Tracer.LAUNCH_WARM_UP);
+
+            startMetricsExporters();
+
+            try {
+
+                SpeechManager.loadLexicon();
+                DivisorTable.forMaxNumber(Config.MAX_NUMBER);
+
+                if (Config.PRACTICE_MODE) {
+                    PracticeDeck.session(getFilesDir());
+                }
+
+            } catch (RuntimeException e) {
+
+                // The game loads whatever's missing again, and reports it properly
+                Log.e(LOG_TAG, "Warming up failed!", e);
+
+            }
+
+            Tracer.end(Tracer.LAUNCH_WARM_UP);
+            runOnUiThread(this::onFullyDrawn);
+
+        }, LOG_TAG + " warm up").start();
+
+    }
+
+    private void onFullyDrawn() {
+
+        reportFullyDrawn();
+        launch.markFullyDrawn(SystemClock.elapsedRealtime());
+
+        Log.d(LOG_TAG, "LAUNCH STATS | " + launch.summary());
+
+        if (launch.isCold()) {
+            COLD_FIRST_FRAME_MS.record(launch.toFirstFrameMs());
+            COLD_FULLY_DRAWN_MS.record(launch.toFullyDrawnMs());
+        }
+
+        LaunchTimings finished = launch;
+        File file = new File(getFilesDir(), "launch_timings.csv");
+
+        new Thread(() -> {
+
+            try {
+                finished.appendTo(file, Config.LAUNCH_TIMINGS_KEPT);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Couldn't record launch timings", e);
+            }
+
+            Metrics.registry().publish();
+
+        }, LOG_TAG + " launch timings").start();
+
+    }
+
+    /**
+     * Writes metrics to files/metrics.prom whenever they're published,
+     * and in debug builds serves them over loopback HTTP too.
+     */
+    private void startMetricsExporters() {
+
+        if (!exportersStarted.compareAndSet(false, true)) {
+            return;
+        }
+
+        Metrics metrics = Metrics.registry();
+        metrics.addExporter(new PrometheusFileExporter(new File(getFilesDir(), "metrics.prom")));
+
+        if (BuildConfig.DEBUG && Config.METRICS_HTTP) {
+
+            // Binding a socket is network I/O, not allowed on the UI thread
+            new Thread(() -> {
+
+                try {
+                    metrics.addExporter(new MetricsHttpServer(metrics, Config.METRICS_HTTP_PORT));
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Couldn't start the metrics server", e);
+                }
+
+            }, MetricsHttpServer.LOG_TAG + " start").start();
+
+        }
+
     }
 
     /**
@@ -102,26 +319,70 @@ public class Velox extends AppCompatActivity {
      * and by new games prompted from the GameOver screen.
      *
      * Starts a TimerTask to deal with the countdown and concurrently
-     * launches the new Game object's init() function.
+     * launches the new Game object's init() function. When the count
+     * reaches 0 the game starts as soon as every startup stage is
+     * ready, and the quick start button starts it the moment they are.
      */
     public void countdown() {
 
         Log.d(LOG_TAG, "countdown() called, bringing up countdown content view...");
+        GAMES_STARTED.increment();
+
+        GameCost cost = pendingCost;
+        pendingCost = null;
+
+        if (cost == null) {
+
+            // Started from the GameOver screen, there's no permission phase
+            cost = new GameCost(GameCost.PHASE_COUNTDOWN);
+
+        } else {
+
+            cost.beginPhase(GameCost.PHASE_COUNTDOWN, 0, GameCost.THREAD_MAIN);
+
+        }
+
+        // Initialize the objects we'll need
+        Timer timer = new Timer();
+        final Game game = new Game(this, cost);
+        final GameStartup startup = game.getStartup();
 
         // Pull up the countdown screen
         runOnUiThread(() -> {
 
+            Tracer.begin(Tracer.INFLATE_COUNTDOWN);
             setContentView(R.layout.countdown);
             TextView countdownNumber = findViewById(R.id.countdownNum);
 
             // Initially countdown value is the number of seconds in the countdown time
             countdownNumber.setText("" + Config.COUNTDOWN_TIME_IN_SECONDS);
+            Tracer.end(Tracer.INFLATE_COUNTDOWN);
+
+            Button quickStartButton = findViewById(R.id.quickStartButton);
+
+            quickStartButton.setOnClickListener(view -> {
+
+                // Start the moment everything is ready instead of
+                // waiting for the count to reach 0
+                Log.d(LOG_TAG, "Quick start pressed! Waiting on " + startup.pendingStages());
+
+                timer.cancel();
+                timer.purge();
+
+                quickStartButton.setEnabled(false);
+                startWhenReady(game);
+
+            });
+
+            showReadiness(startup);
+
+            // Inflate the problem screen and warm up the recognizer
+            game.prepare();
 
         });
 
-        // Initialize the objects we'll need
-        Timer timer = new Timer();
-        final Game game = new Game(this);
+        // Refresh the readiness text whenever the last stage finishes
+        startup.whenReady().whenComplete((ignored, error) -> runOnUiThread(() -> showReadiness(startup)));
 
         // Countdown TimerTask, waits one second, runs for
         // the first time, then runs every second after that
@@ -132,10 +393,6 @@ public class Velox extends AppCompatActivity {
             // needs to be one second lower than the countdown time
             int count = Config.COUNTDOWN_TIME_IN_SECONDS - 1;
 
-            // Having the make a countdownNumber variable twice hurts my soul,
-            // but it works out best this way.
-            final TextView countdownNumber = findViewById(R.id.countdownNum);
-
             @Override
             public void run() {
 
@@ -146,20 +403,22 @@ public class Velox extends AppCompatActivity {
                     if (count == 0) {
 
                         // The clock strikes 0
-                        Log.d(LOG_TAG, "Count is 0! Cancelling timers and running game!");
+                        Log.d(LOG_TAG, "Count is 0! Cancelling timers and running game once ready!");
 
                         timer.cancel();
                         timer.purge();
 
                         // Start the game!
-                        game.run();
+                        startWhenReady(game);
 
                         return;
 
                     }
 
                     // Update UI with new countdown number and decrement the count variable by 1
+                    TextView countdownNumber = findViewById(R.id.countdownNum);
                     countdownNumber.setText("" + count);
+                    showReadiness(startup);
                     count--;
 
                 });
@@ -169,7 +428,90 @@ public class Velox extends AppCompatActivity {
         }, 1000, 1000);
 
         // Initialize Game object while countdown is running
-        new Thread(game::init).start();
+        new Thread(game::init, Game.LOG_TAG + " init").start();
+
+    }
+
+    /**
+     * Runs the game on the UI thread once every startup stage is ready.
+     * If a stage failed, says which one instead of silently never
+     * starting, shuts the game down, and offers a way back to the main
+     * screen.
+     * @param game The game to start
+     */
+    private void startWhenReady(Game game) {
+
+        GameStartup startup = game.getStartup();
+
+        startup.whenReady().whenComplete((ignored, error) -> runOnUiThread(() -> {
+
+            if (error != null) {
+
+                Log.e(LOG_TAG, "Game can't start, failed stages: " + startup.failedStages());
+                showReadiness(startup);
+                game.kill();
+                showStartupFailedDialog(startup);
+                return;
+
+            }
+
+            game.run();
+
+        }));
+
+    }
+
+    /**
+     * Shows which startup stages are holding the game up, if any.
+     * Must be called on the UI thread while the countdown screen is up.
+     * @param startup Startup stages of the upcoming game
+     */
+    private void showReadiness(GameStartup startup) {
+
+        TextView readinessText = findViewById(R.id.readinessText);
+
+        if (readinessText == null) {
+            // Countdown screen is already gone
+            return;
+        }
+
+        if (!startup.failedStages().isEmpty()) {
+
+            readinessText.setText(Config.READINESS_FAILED_PREFIX + TextUtils.join(", ", startup.failedStages()));
+
+        } else if (startup.isReady()) {
+
+            readinessText.setText(Config.READINESS_READY_TEXT);
+
+        } else {
+
+            readinessText.setText(Config.READINESS_WAITING_PREFIX + TextUtils.join(", ", startup.pendingStages()));
+
+        }
+
+    }
+
+    /**
+     * Tells the user the game couldn't start and why, then goes back
+     * to the main screen so they can try again.
+     * @param startup Startup stages of the game that failed
+     */
+    private void showStartupFailedDialog(GameStartup startup) {
+
+        AlertDialog.Builder startupFailedDialog = new AlertDialog.Builder(this);
+
+        startupFailedDialog.setMessage(Config.STARTUP_FAILED_MSG + TextUtils.join(", ", startup.failedStages()))
+                .setTitle(Config.STARTUP_FAILED_TITLE);
+
+        startupFailedDialog.setPositiveButton("Back", (dialogInterface, i) -> {
+
+            Log.d(LOG_TAG, "Returning to the main screen after a failed startup.");
+            showMainScreen();
+
+        });
+
+        startupFailedDialog.setCancelable(false);
+        startupFailedDialog.create().show();
 
     }
 
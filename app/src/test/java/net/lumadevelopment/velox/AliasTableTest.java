@@ -0,0 +1,75 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.SplittableRandom;
+
+public class AliasTableTest {
+
+    private static final int DRAWS = 4_000_000;
+
+    /**
+     * Draws DRAWS samples and returns Pearson's chi-square statistic
+     * against the distribution the weights describe.
+     */
+    private static double chiSquare(double[] weights, long seed) {
+
+        AliasTable table = new AliasTable(weights);
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] counts = new long[weights.length];
+
+        for (int i = 0; i < DRAWS; i++) {
+            counts[table.sample(random)]++;
+        }
+
+        double sum = 0;
+        for (double weight : weights) {
+            sum += weight;
+        }
+
+        double chiSquare = 0;
+
+        for (int i = 0; i < weights.length; i++) {
+
+            double expected = DRAWS * weights[i] / sum;
+
+            if (expected == 0) {
+                assertEquals("Zero weight outcome " + i + " was drawn", 0, counts[i]);
+                continue;
+            }
+
+            chiSquare += (counts[i] - expected) * (counts[i] - expected) / expected;
+
+        }
+
+        return chiSquare;
+
+    }
+
+    @Test
+    public void sample_matchesUniformWeights() {
+
+        // Critical value for 3 degrees of freedom at p = 0.001
+        assertTrue(chiSquare(new double[]{1, 1, 1, 1}, 1) < 16.27);
+
+    }
+
+    @Test
+    public void sample_matchesSkewedWeights() {
+
+        assertTrue(chiSquare(new double[]{1, 2, 3, 4}, 2) < 16.27);
+
+        // One outcome can never come up; 2 degrees of freedom remain
+        assertTrue(chiSquare(new double[]{0.5, 0, 7, 0.25}, 3) < 13.82);
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsAllZeroWeights() {
+
+        new AliasTable(new double[]{0, 0});
+
+    }
+}
@@ -0,0 +1,81 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+public class AudioCaptureTest {
+
+    private static byte[] bytes(int from, int count) {
+
+        byte[] bytes = new byte[count];
+
+        for (int i = 0; i < count; i++) {
+            bytes[i] = (byte) (from + i);
+        }
+
+        return bytes;
+
+    }
+
+    @Test
+    public void snapshot_keepsTheNewestBytesInOrder() {
+
+        AudioCapture capture = new AudioCapture(10);
+
+        capture.write(bytes(0, 6));
+        assertArrayEquals(bytes(0, 6), capture.snapshot());
+
+        // Wraps around the end of the ring
+        capture.write(bytes(6, 8));
+        assertEquals(10, capture.size());
+        assertEquals(14, capture.getTotalBytes());
+        assertArrayEquals(bytes(4, 10), capture.snapshot());
+
+        // A chunk bigger than the ring only keeps its end
+        capture.write(bytes(50, 24));
+        assertArrayEquals(bytes(64, 10), capture.snapshot());
+
+    }
+
+    @Test
+    public void snapshot_trimsToWholeFrames() {
+
+        AudioCapture capture = new AudioCapture(11);
+        assertEquals(10, capture.capacity());
+
+        capture.write(bytes(0, 3));
+        assertArrayEquals(bytes(1, 2), capture.snapshot());
+
+    }
+
+    @Test
+    public void writeWav_writesAPlayableHeader() throws IOException {
+
+        byte[] pcm = bytes(0, AudioCapture.BYTES_PER_SECOND / 10);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AudioCapture.writeWav(out, pcm);
+
+        byte[] wav = out.toByteArray();
+        ByteBuffer header = ByteBuffer.wrap(wav).order(ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals("RIFF", new String(wav, 0, 4));
+        assertEquals(wav.length - 8, header.getInt(4));
+        assertEquals("WAVE", new String(wav, 8, 4));
+        assertEquals(1, header.getShort(20));
+        assertEquals(AudioCapture.CHANNELS, header.getShort(22));
+        assertEquals(AudioCapture.SAMPLE_RATE, header.getInt(24));
+        assertEquals(AudioCapture.BITS_PER_SAMPLE, header.getShort(34));
+        assertEquals("data", new String(wav, 36, 4));
+        assertEquals(pcm.length, header.getInt(40));
+        assertArrayEquals(pcm, Arrays.copyOfRange(wav, 44, wav.length));
+
+    }
+
+}
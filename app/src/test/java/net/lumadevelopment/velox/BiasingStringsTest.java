@@ -0,0 +1,43 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+public class BiasingStringsTest {
+
+    private static final NumberLexicon LEXICON = SpeechManager.loadLexicon();
+
+    @Test
+    public void biasingStrings_coverEveryNumberAsDigitsAndWords() {
+
+        List<String> strings = SpeechManager.biasingStrings(LEXICON, 30, -1, 2);
+
+        assertEquals(62, strings.size());
+        assertEquals(strings.size(), new HashSet<>(strings).size());
+        assertEquals(Arrays.asList("0", "zero", "1", "one"), strings.subList(0, 4));
+        assertTrue(strings.contains("twenty one"));
+        assertTrue(strings.contains("30"));
+
+    }
+
+    @Test
+    public void biasingStrings_putSolutionAndNeighboursFirst() {
+
+        List<String> strings = SpeechManager.biasingStrings(LEXICON, 30, 12, 1);
+
+        assertEquals(Arrays.asList("12", "twelve", "11", "eleven", "13", "thirteen", "0", "zero"), strings.subList(0, 8));
+        assertEquals(62, strings.size());
+
+        // Neighbours past either end are skipped
+        strings = SpeechManager.biasingStrings(LEXICON, 30, 30, 2);
+        assertEquals(Arrays.asList("30", "thirty", "29", "twenty nine", "28", "twenty eight", "0"), strings.subList(0, 7));
+        assertEquals(62, strings.size());
+
+    }
+
+}
@@ -0,0 +1,107 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.Locale;
+
+public class DivisorTableTest {
+
+    private static final boolean BENCHMARK = Boolean.getBoolean("velox.divisorBenchmark");
+
+    @Test
+    public void table_matchesTrialDivision() {
+
+        for (int maxNumber : new int[] {0, 1, 4, 12, 30, 1000}) {
+
+            DivisorTable table = new DivisorTable(maxNumber);
+            int compositeIndex = 0;
+
+            for (int n = 0; n <= maxNumber; n++) {
+
+                int divisorIndex = 0;
+
+                for (int d = 2; d < n; d++) {
+                    if (n % d == 0) {
+                        assertEquals(d, table.getDivisor(n, divisorIndex++));
+                    }
+                }
+
+                assertEquals(divisorIndex, table.getDivisorCount(n));
+
+                if (divisorIndex > 0) {
+                    assertEquals(n, table.getComposite(compositeIndex++));
+                }
+
+            }
+
+            assertEquals(compositeIndex, table.getCompositeCount());
+
+        }
+
+    }
+
+    @Test
+    public void forMaxNumber_sharesTables() {
+
+        assertSame(DivisorTable.forMaxNumber(30), DivisorTable.forMaxNumber(30));
+        assertEquals(31, DivisorTable.forMaxNumber(31).getMaxNumber());
+
+    }
+
+    @Test
+    public void sizeInBytes_countsEveryDivisor() {
+
+        DivisorTable table = new DivisorTable(1000);
+        long divisors = 0;
+
+        for (int n = 0; n <= 1000; n++) {
+            divisors += table.getDivisorCount(n);
+        }
+
+        assertEquals(4 * (table.getCompositeCount() + 1000 + 2 + divisors), table.sizeInBytes());
+
+    }
+
+    /**
+     * Not a budget, just figures to compare against when hard modes
+     * with bigger max numbers come up. Builds tables of up to 56 MB,
+     * so it only runs when asked for:
+     *
+     *   ./gradlew :app:testDebugUnitTest --tests '*DivisorTableTest' -PdivisorBenchmark
+     */
+    @Test
+    public void construction_scalesToAMillion() {
+
+        Assume.assumeTrue("Run with -PdivisorBenchmark", BENCHMARK);
+
+        System.out.println("DivisorTable construction (max number, ms, MB, composites, divisors)");
+
+        for (int maxNumber = 1_000; maxNumber <= 1_000_000; maxNumber *= 10) {
+
+            // Best of a few, so JIT warm up doesn't count
+            long bestNs = Long.MAX_VALUE;
+            DivisorTable table = null;
+
+            for (int run = 0; run < 3; run++) {
+
+                long start = System.nanoTime();
+                table = new DivisorTable(maxNumber);
+                bestNs = Math.min(bestNs, System.nanoTime() - start);
+
+            }
+
+            System.out.printf(Locale.US, "  %,10d %8.1f %8.1f %,10d %,12d%n", maxNumber, bestNs / 1e6,
+                    table.sizeInBytes() / 1e6, table.getCompositeCount(), (table.sizeInBytes() / 4
+                            - table.getCompositeCount() - maxNumber - 2));
+
+            // Every composite has at least one divisor
+            assertTrue(table.getDivisorCount(table.getComposite(table.getCompositeCount() - 1)) > 0);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,61 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameStatsTest {
+
+    private static final long FRAME_60_HZ = 16_666_667L;
+
+    @Test
+    public void classification_isCorrect() {
+
+        FrameStats stats = new FrameStats(FRAME_60_HZ);
+
+        // On time, or a little late but still within the same vsync
+        assertFalse(stats.isJanky(FRAME_60_HZ));
+        assertFalse(stats.isJanky(20_000_000L));
+
+        // One missed vsync is janky, but not a stall of a whole extra frame
+        assertTrue(stats.isJanky(2 * FRAME_60_HZ));
+        assertFalse(stats.isStall(2 * FRAME_60_HZ));
+
+        assertTrue(stats.isStall(3 * FRAME_60_HZ));
+        assertFalse(stats.isFrozen(3 * FRAME_60_HZ));
+
+        assertTrue(stats.isFrozen(FrameStats.FROZEN_FRAME_NS));
+
+    }
+
+    @Test
+    public void counters_areBrokenDownByPhase() {
+
+        FrameStats stats = new FrameStats(FRAME_60_HZ);
+
+        stats.addFrameInterval(FrameStats.PHASE_COUNTDOWN, FRAME_60_HZ);
+        stats.addFrameInterval(FrameStats.PHASE_COUNTDOWN, 800_000_000L);
+        stats.addFrameInterval(FrameStats.PHASE_PLAYING, FRAME_60_HZ);
+        stats.addFrameInterval(FrameStats.PHASE_PLAYING, 2 * FRAME_60_HZ);
+        stats.addFrameInterval(FrameStats.PHASE_TRANSITION, 4 * FRAME_60_HZ);
+        stats.addRenderedFrame(FrameStats.PHASE_TRANSITION, 20_000_000L);
+        stats.addRenderedFrame(FrameStats.PHASE_TRANSITION, 5_000_000L);
+
+        assertEquals(2, stats.getFrames(FrameStats.PHASE_COUNTDOWN));
+        assertEquals(1, stats.getJankyFrames(FrameStats.PHASE_COUNTDOWN));
+        assertEquals(1, stats.getFrozenFrames(FrameStats.PHASE_COUNTDOWN));
+        assertEquals(800_000_000L, stats.getWorstIntervalNs(FrameStats.PHASE_COUNTDOWN));
+
+        assertEquals(2, stats.getFrames(FrameStats.PHASE_PLAYING));
+        assertEquals(1, stats.getJankyFrames(FrameStats.PHASE_PLAYING));
+        assertEquals(0, stats.getStalls(FrameStats.PHASE_PLAYING));
+
+        assertEquals(1, stats.getStalls(FrameStats.PHASE_TRANSITION));
+        assertEquals(3 * FRAME_60_HZ, stats.getStalledTimeNs(FrameStats.PHASE_TRANSITION));
+        assertEquals(2, stats.getRenderedFrames(FrameStats.PHASE_TRANSITION));
+        assertEquals(1, stats.getSlowRenderedFrames(FrameStats.PHASE_TRANSITION));
+
+        assertEquals(2, stats.getTotalStalls());
+
+    }
+}
@@ -0,0 +1,58 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GameCostTest {
+
+    @Test
+    public void phases_takeDifferencesOfReadings() {
+
+        GameCost cost = new GameCost(GameCost.PHASE_PERMISSION, 1_000, 200);
+
+        cost.recordThreadCpuNs(GameCost.THREAD_MAIN, 5_000_000);
+        cost.beginPhase(GameCost.PHASE_COUNTDOWN, 0, 3_000, 210);
+
+        cost.recordThreadCpuNs(GameCost.THREAD_MAIN, 9_000_000);
+        cost.recordThreadCpuNs(GameCost.THREAD_INIT, 40_000_000);
+        cost.beginPhase(GameCost.PHASE_PROBLEM, 1, 8_000, 270);
+
+        cost.recordThreadCpuNs(GameCost.THREAD_SCHEDULER, 12_000_000);
+        cost.beginPhase(GameCost.PHASE_GAME_OVER, 0, 9_500, 290);
+        cost.finish(9_700, 300);
+
+        assertEquals(4, cost.size());
+        assertEquals(GameCost.PHASE_PERMISSION, cost.getPhase(0));
+        assertEquals(2_000, cost.getWallMs(0));
+        assertEquals(10, cost.getProcessCpuMs(0));
+        assertEquals(5, cost.getThreadCpuMs(0, GameCost.THREAD_MAIN));
+
+        assertEquals(4, cost.getThreadCpuMs(1, GameCost.THREAD_MAIN));
+        assertEquals(40, cost.getThreadCpuMs(1, GameCost.THREAD_INIT));
+
+        assertEquals(GameCost.PHASE_PROBLEM, cost.getPhase(2));
+        assertEquals(12, cost.getThreadCpuMs(2, GameCost.THREAD_SCHEDULER));
+        assertEquals(0, cost.getThreadCpuMs(2, GameCost.THREAD_INIT));
+
+        assertEquals(200, cost.getWallMs(3));
+        assertEquals(100, cost.getTotalProcessCpuMs());
+
+    }
+
+    @Test
+    public void finish_endsAccounting() {
+
+        GameCost cost = new GameCost(GameCost.PHASE_COUNTDOWN, 0, 0);
+        cost.finish(100, 10);
+        cost.beginPhase(GameCost.PHASE_PROBLEM, 1, 200, 20);
+        cost.finish(300, 30);
+
+        assertEquals(1, cost.size());
+
+        String csv = cost.toCsv();
+        assertTrue(csv, csv.contains("\ncountdown,,100,10,0,0,0\n"));
+
+    }
+
+}
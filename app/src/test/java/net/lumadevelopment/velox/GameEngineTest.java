@@ -0,0 +1,255 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class GameEngineTest {
+
+    private static final int TIME_PER_PROBLEM_MS = 3000;
+    private static final int GRACE_MS = 500;
+
+    private static GameEngine startedEngine(ProblemSet problems) {
+
+        GameEngine engine = new GameEngine(problems, TIME_PER_PROBLEM_MS, GRACE_MS, 2, null);
+        engine.start(0);
+        engine.problemShown(0, 0);
+        return engine;
+
+    }
+
+    private static ProblemSet twoProblems() {
+
+        ProblemSet problems = new ProblemSet(2);
+        problems.add(ProblemSet.ADDITION, 3, 9, 12);
+        problems.add(ProblemSet.SUBTRACTION, 9, 4, 5);
+        return problems;
+
+    }
+
+    /**
+     * Problems 1 + 1 = 2, 1 + 2 = 3, and so on.
+     */
+    private static ProblemSet additions(int count) {
+
+        ProblemSet problems = new ProblemSet(count);
+
+        for (int i = 1; i <= count; i++) {
+            problems.add(ProblemSet.ADDITION, 1, i, 1 + i);
+        }
+
+        return problems;
+
+    }
+
+    @Test
+    public void answers_carryOverOnceTheNextProblemIsShown() {
+
+        ProblemSet problems = twoProblems();
+        GameEngine engine = startedEngine(problems);
+
+        // "twelve five" in one breath
+        engine.answers(Arrays.asList(12, 5), 0, 1200, 1500, 1800);
+
+        assertEquals(ProblemSet.CORRECT, problems.getOutcome(0));
+        assertEquals(1500, problems.getResponseTimeInMs(0));
+
+        // Not checked until the player has seen problem 2
+        assertEquals(ProblemSet.UNANSWERED, problems.getOutcome(1));
+
+        engine.problemShown(1, 1850);
+
+        assertEquals(ProblemSet.CORRECT, problems.getOutcome(1));
+        assertEquals(0, problems.getResponseTimeInMs(1));
+        assertTrue(engine.isOver());
+
+    }
+
+    @Test
+    public void answers_afterAWrongOneAreNotCheckedAgainstTheSameProblem() {
+
+        ProblemSet problems = twoProblems();
+        GameEngine engine = startedEngine(problems);
+
+        // Wrong for problem 1; the 12 was meant for problem 2, not a correction
+        engine.answers(Arrays.asList(11, 12), 0, 1200, 1500, 1800);
+
+        assertEquals(ProblemSet.UNANSWERED, problems.getOutcome(0));
+        assertEquals(11, engine.getLastAnswer());
+        assertEquals(0, engine.getCurrentProblemIndex());
+
+        long timedOutAt = TIME_PER_PROBLEM_MS + GRACE_MS + 1;
+        assertTrue(engine.tick(timedOutAt));
+        engine.problemShown(1, timedOutAt);
+
+        assertEquals(ProblemSet.TIMED_OUT, problems.getOutcome(0));
+        assertEquals(ProblemSet.UNANSWERED, problems.getOutcome(1));
+
+    }
+
+    @Test
+    public void answers_beyondTheLookaheadAreIgnored() {
+
+        ProblemSet problems = additions(4);
+        GameEngine engine = startedEngine(problems);
+
+        // Look-ahead is 2, so the fourth answer doesn't carry over
+        engine.answers(Arrays.asList(2, 3, 4, 5), 0, 600, 1000, 1200);
+        engine.problemShown(1, 1300);
+        engine.problemShown(2, 1400);
+        engine.problemShown(3, 1500);
+
+        assertEquals(ProblemSet.CORRECT, problems.getOutcome(0));
+        assertEquals(ProblemSet.CORRECT, problems.getOutcome(1));
+        assertEquals(ProblemSet.CORRECT, problems.getOutcome(2));
+        assertEquals(ProblemSet.UNANSWERED, problems.getOutcome(3));
+        assertEquals(3, engine.getCurrentProblemIndex());
+
+    }
+
+    @Test
+    public void answers_queuedForAProblemThatTimesOutAreDiscarded() {
+
+        ProblemSet problems = additions(3);
+        GameEngine engine = startedEngine(problems);
+
+        // Right for problem 1, but problem 2 is never shown in time
+        engine.answers(Arrays.asList(2, 3, 4), 0, 600, 1000, 1200);
+        assertEquals(ProblemSet.CORRECT, problems.getOutcome(0));
+
+        long timedOutAt = 1200 + TIME_PER_PROBLEM_MS + GRACE_MS + 1;
+        assertTrue(engine.tick(timedOutAt));
+        engine.problemShown(2, timedOutAt);
+
+        // The 4 meant for problem 3 doesn't spill onto it
+        assertEquals(ProblemSet.TIMED_OUT, problems.getOutcome(1));
+        assertEquals(ProblemSet.UNANSWERED, problems.getOutcome(2));
+
+    }
+
+    @Test
+    public void answers_spokenInTimeCountDuringGrace() {
+
+        ProblemSet problems = twoProblems();
+        GameEngine engine = startedEngine(problems);
+
+        // The deadline passes while the recognizer is still working
+        assertFalse(engine.tick(TIME_PER_PROBLEM_MS + GRACE_MS / 2));
+        engine.answers(Collections.singletonList(12), 0, 2700, 2900, TIME_PER_PROBLEM_MS + GRACE_MS / 2);
+
+        assertEquals(ProblemSet.CORRECT, problems.getOutcome(0));
+        assertEquals(2900, problems.getResponseTimeInMs(0));
+        assertEquals(1, engine.getCurrentProblemIndex());
+
+    }
+
+    @Test
+    public void answers_spokenAfterDeadlineAreDropped() {
+
+        ProblemSet problems = twoProblems();
+        GameEngine engine = startedEngine(problems);
+
+        engine.answers(Collections.singletonList(12), 0, TIME_PER_PROBLEM_MS + 50, TIME_PER_PROBLEM_MS + 100,
+                TIME_PER_PROBLEM_MS + 200);
+        assertEquals(ProblemSet.UNANSWERED, problems.getOutcome(0));
+        assertEquals(1, engine.getLateAnswerCount());
+
+        assertTrue(engine.tick(TIME_PER_PROBLEM_MS + GRACE_MS + 1));
+        assertEquals(ProblemSet.TIMED_OUT, problems.getOutcome(0));
+        assertEquals(TIME_PER_PROBLEM_MS, problems.getResponseTimeInMs(0));
+
+    }
+
+    @Test
+    public void answers_forResolvedProblemAreNotCheckedAgainstTheNext() {
+
+        ProblemSet problems = twoProblems();
+        GameEngine engine = startedEngine(problems);
+
+        long timedOutAt = TIME_PER_PROBLEM_MS + GRACE_MS + 1;
+        assertTrue(engine.tick(timedOutAt));
+        engine.problemShown(1, timedOutAt);
+
+        // Spoken during problem 1, happens to be problem 2's solution
+        engine.answers(Collections.singletonList(5), 0, 1800, 2000, timedOutAt + 100);
+
+        assertEquals(ProblemSet.UNANSWERED, problems.getOutcome(1));
+        assertEquals(GameEngine.NO_ANSWER, engine.getLastAnswer());
+        assertEquals(1, engine.getLateAnswerCount());
+
+    }
+
+    @Test
+    public void answers_startedBeforeTheDeadlineCount() {
+
+        ProblemSet problems = twoProblems();
+        GameEngine engine = startedEngine(problems);
+        SpeechManager.Utterance utterance = new SpeechManager.Utterance();
+
+        // The player starts answering problem 1 just before its deadline...
+        utterance.began(engine.getCurrentProblemIndex(), 2800);
+
+        // ...and finishes by 2600 ms later, but the recognizer only
+        // detects the end of speech after its trailing silence
+        utterance.ended(engine.getCurrentProblemIndex(), TIME_PER_PROBLEM_MS + 200);
+        assertFalse(engine.tick(TIME_PER_PROBLEM_MS + 300));
+
+        engine.answers(Collections.singletonList(12), utterance.getEpoch(), utterance.getStartedAtMs(),
+                utterance.getSpokenAtMs(), TIME_PER_PROBLEM_MS + 400);
+
+        assertEquals(ProblemSet.CORRECT, problems.getOutcome(0));
+        assertEquals(TIME_PER_PROBLEM_MS + 200, problems.getResponseTimeInMs(0));
+        assertEquals(0, engine.getLateAnswerCount());
+
+    }
+
+    @Test
+    public void answers_keepTheProblemTheyWereStartedDuring() {
+
+        ProblemSet problems = twoProblems();
+        GameEngine engine = startedEngine(problems);
+        SpeechManager.Utterance utterance = new SpeechManager.Utterance();
+
+        // The player starts answering problem 1 just before its deadline...
+        utterance.began(engine.getCurrentProblemIndex(), 2800);
+
+        // ...but the recognizer only detects the end of speech once
+        // the grace window is over and problem 2 is up
+        long timedOutAt = TIME_PER_PROBLEM_MS + GRACE_MS + 1;
+        assertTrue(engine.tick(timedOutAt));
+        engine.problemShown(1, timedOutAt);
+        utterance.ended(engine.getCurrentProblemIndex(), timedOutAt + 100);
+
+        assertEquals(0, utterance.getEpoch());
+        assertEquals(2800, utterance.getStartedAtMs());
+        assertEquals(timedOutAt + 100, utterance.getSpokenAtMs());
+
+        // Problem 2's solution, but it was said for problem 1, which has timed out
+        engine.answers(Collections.singletonList(5), utterance.getEpoch(), utterance.getStartedAtMs(),
+                utterance.getSpokenAtMs(), timedOutAt + 300);
+
+        assertEquals(ProblemSet.UNANSWERED, problems.getOutcome(1));
+        assertEquals(1, engine.getLateAnswerCount());
+
+    }
+
+    @Test
+    public void utterance_withoutABeginningTakesTheEpochAtTheEnd() {
+
+        SpeechManager.Utterance utterance = new SpeechManager.Utterance();
+        assertFalse(utterance.isHeard());
+
+        utterance.ended(3, 1000);
+
+        assertTrue(utterance.isHeard());
+        assertEquals(3, utterance.getEpoch());
+
+        utterance.reset();
+        assertFalse(utterance.isHeard());
+
+    }
+
+}
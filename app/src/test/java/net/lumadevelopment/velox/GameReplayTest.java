@@ -0,0 +1,175 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class GameReplayTest {
+
+    private static final int GAMES = 5_000;
+    private static final int TICK_MS = (int) (1000 / Config.TICKS_PER_SECOND);
+    private static final double[] WEIGHTS = GameJournal.storableWeights(new double[]{1, 0.7, 1.3, 0.9});
+
+    /**
+     * Plays a whole game the way Game drives the engine: a tick every
+     * TICK_MS, the problem shown one tick after it comes up, and a
+     * simulated player who answers at random times, sometimes wrong,
+     * sometimes several problems at once, with the recognizer taking
+     * up to a second to return each answer.
+     * @param journalOut Receives the game's journal
+     * @return The finished engine
+     */
+    private static GameEngine play(long seed, SplittableRandom player, GameJournal[] journalOut) {
+
+        GameJournal journal = new GameJournal(seed, WEIGHTS, Config.MAX_NUMBER, Config.NUM_OF_PROBLEMS,
+                Config.TIME_PER_PROBLEM_IN_MS, Config.ANSWER_GRACE_MS, Config.MAX_ANSWER_LOOKAHEAD);
+        ProblemSet problems = new ProblemSet(Config.NUM_OF_PROBLEMS);
+        ProblemGenerator generator = new ProblemGenerator(seed, WEIGHTS, Config.MAX_NUMBER);
+
+        for (int i = 0; i < Config.NUM_OF_PROBLEMS; i++) {
+            generator.generateProblem(problems);
+        }
+
+        GameEngine engine = new GameEngine(problems, Config.TIME_PER_PROBLEM_IN_MS, Config.ANSWER_GRACE_MS,
+                Config.MAX_ANSWER_LOOKAHEAD, journal);
+
+        // Arbitrary, elapsedRealtime() doesn't start at 0
+        long now = 1_000_000 + player.nextInt(1_000_000);
+        engine.start(now);
+
+        int displayed = -1;
+        List<Integer> answers = new ArrayList<>();
+
+        // The utterance the recognizer is still working on, if any
+        int epoch = -1;
+        long startedAtMs = 0;
+        long spokenAtMs = 0;
+        long arrivesAtMs = Long.MAX_VALUE;
+
+        while (!engine.isOver()) {
+
+            engine.problemShown(displayed, now);
+            engine.tick(now);
+
+            if (engine.isOver()) {
+                break;
+            }
+
+            displayed = engine.getCurrentProblemIndex();
+
+            // Recognizer results land between ticks
+            if (now >= arrivesAtMs) {
+
+                engine.answers(answers, epoch, startedAtMs, spokenAtMs, now + player.nextInt(TICK_MS));
+                arrivesAtMs = Long.MAX_VALUE;
+
+            } else if (arrivesAtMs == Long.MAX_VALUE && player.nextInt(20) == 0) {
+
+                answers.clear();
+                int count = 1 + player.nextInt(4);
+
+                for (int i = 0; i < count; i++) {
+
+                    int index = Math.min(engine.getCurrentProblemIndex() + i, problems.size() - 1);
+                    answers.add(player.nextInt(3) == 0 ? player.nextInt(100) : problems.getSolution(index));
+
+                }
+
+                epoch = engine.getCurrentProblemIndex();
+                startedAtMs = now + player.nextInt(TICK_MS);
+                spokenAtMs = startedAtMs + player.nextInt(800);
+                arrivesAtMs = spokenAtMs + player.nextInt(1000);
+
+            }
+
+            now += TICK_MS + player.nextInt(3);
+
+        }
+
+        journalOut[0] = journal;
+        return engine;
+
+    }
+
+    @Test
+    public void replay_reproducesThousandsOfGames() {
+
+        SplittableRandom seeds = new SplittableRandom(34);
+        GameJournal[] journal = new GameJournal[1];
+        long totalBytes = 0;
+
+        for (int game = 0; game < GAMES; game++) {
+
+            long seed = seeds.nextLong();
+            ProblemSet played = play(seed, seeds.split(), journal).getProblems();
+            byte[] bytes = journal[0].toByteArray();
+            totalBytes += bytes.length;
+
+            ProblemSet replayed = GameReplayer.replay(bytes);
+
+            for (int i = 0; i < played.size(); i++) {
+
+                String where = "game " + game + " (seed " + seed + "), problem " + i;
+                assertEquals(where, played.equationToString(i), replayed.equationToString(i));
+                assertEquals(where, played.getOutcome(i), replayed.getOutcome(i));
+                assertEquals(where, played.getResponseTimeInMs(i), replayed.getResponseTimeInMs(i));
+
+            }
+
+        }
+
+        // About 30 bytes of header and 2 to 7 per event. This player
+        // talks a lot more than a real one, so allow some slack.
+        assertTrue("Average journal is " + (totalBytes / GAMES) + " bytes", totalBytes / GAMES < 240);
+
+    }
+
+    @Test
+    public void problemGenerator_sameSeedSameProblems() {
+
+        ProblemSet first = new ProblemSet(Config.NUM_OF_PROBLEMS);
+        ProblemSet second = new ProblemSet(Config.NUM_OF_PROBLEMS);
+        ProblemGenerator firstGenerator = new ProblemGenerator(42, WEIGHTS, Config.MAX_NUMBER);
+        ProblemGenerator secondGenerator = new ProblemGenerator(42, WEIGHTS, Config.MAX_NUMBER);
+
+        for (int i = 0; i < Config.NUM_OF_PROBLEMS; i++) {
+
+            firstGenerator.generateProblem(first);
+            secondGenerator.generateProblem(second);
+            assertEquals(first.equationToString(i), second.equationToString(i));
+
+        }
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void replay_rejectsEarlyTimeout() {
+
+        GameJournal journal = new GameJournal(7, WEIGHTS, Config.MAX_NUMBER, Config.NUM_OF_PROBLEMS,
+                Config.TIME_PER_PROBLEM_IN_MS, Config.ANSWER_GRACE_MS, Config.MAX_ANSWER_LOOKAHEAD);
+        journal.start(0);
+
+        // Past the deadline, but not the grace window
+        journal.timeout(Config.TIME_PER_PROBLEM_IN_MS + Config.ANSWER_GRACE_MS / 2);
+
+        GameReplayer.replay(journal.toByteArray());
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void replay_rejectsTruncatedJournal() {
+
+        GameJournal[] journal = new GameJournal[1];
+        play(1, new SplittableRandom(1), journal);
+        byte[] bytes = journal[0].toByteArray();
+
+        GameReplayer.replay(Arrays.copyOf(bytes, bytes.length - 1));
+
+    }
+
+}
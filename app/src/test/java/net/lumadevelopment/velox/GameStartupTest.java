@@ -0,0 +1,56 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class GameStartupTest {
+    @Test
+    public void whenReady_waitsForEveryStage() {
+
+        GameStartup startup = new GameStartup();
+
+        startup.complete(GameStartup.PROBLEMS);
+        startup.complete(GameStartup.SCREEN);
+
+        assertFalse(startup.isReady());
+        assertEquals(Arrays.asList("lexicon", "recognizer", "narration"), startup.pendingStages());
+
+        startup.complete(GameStartup.LEXICON);
+        startup.complete(GameStartup.NARRATION);
+        startup.complete(GameStartup.RECOGNIZER);
+
+        // Repeated completions (ex. every onReadyForSpeech) are ignored
+        long recognizerTime = startup.getStageTimeNs(GameStartup.RECOGNIZER);
+        startup.complete(GameStartup.RECOGNIZER);
+
+        assertTrue(startup.isReady());
+        assertTrue(startup.whenReady().isDone());
+        assertEquals(Collections.emptyList(), startup.pendingStages());
+        assertEquals(recognizerTime, startup.getStageTimeNs(GameStartup.RECOGNIZER));
+
+    }
+
+    @Test
+    public void whenReady_failsWithAnyStage() {
+
+        GameStartup startup = new GameStartup();
+
+        startup.complete(GameStartup.PROBLEMS);
+        startup.fail(GameStartup.RECOGNIZER, new IllegalStateException("unavailable"));
+
+        assertTrue(startup.whenReady().isCompletedExceptionally());
+        assertFalse(startup.isReady());
+        assertEquals(Collections.singletonList("recognizer"), startup.failedStages());
+        assertTrue(startup.isFailed(GameStartup.RECOGNIZER));
+        assertFalse(startup.isFailed(GameStartup.PROBLEMS));
+
+        // A late onReadyForSpeech() can't undo the failure
+        startup.complete(GameStartup.RECOGNIZER);
+        assertTrue(startup.isFailed(GameStartup.RECOGNIZER));
+
+    }
+}
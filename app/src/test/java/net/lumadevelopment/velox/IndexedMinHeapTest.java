@@ -0,0 +1,80 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.SplittableRandom;
+
+public class IndexedMinHeapTest {
+
+    private static int minId(long[] keys) {
+
+        int min = 0;
+
+        for (int id = 1; id < keys.length; id++) {
+            if (keys[id] < keys[min]) {
+                min = id;
+            }
+        }
+
+        return min;
+
+    }
+
+    @Test
+    public void peek_followsRandomUpdates() {
+
+        SplittableRandom random = new SplittableRandom(44);
+        int size = 500;
+        long[] keys = new long[size];
+        long[] expected = new long[size];
+
+        for (int id = 0; id < size; id++) {
+            keys[id] = random.nextLong(-1_000, 1_000);
+            expected[id] = keys[id];
+        }
+
+        IndexedMinHeap heap = new IndexedMinHeap(keys);
+
+        for (int i = 0; i < 20_000; i++) {
+
+            // Ties can come out in any order, only the key has to match
+            assertEquals(expected[minId(expected)], heap.getKey(heap.peek()));
+
+            int id = random.nextInt(size);
+            long key = random.nextLong(-1_000, 1_000);
+            expected[id] = key;
+            heap.update(id, key);
+
+        }
+
+    }
+
+    @Test
+    public void update_cyclesThroughEveryId() {
+
+        int size = 100;
+        long[] keys = new long[size];
+
+        for (int id = 0; id < size; id++) {
+            keys[id] = size - id;
+        }
+
+        IndexedMinHeap heap = new IndexedMinHeap(keys);
+
+        // Sending the top to the back, like a deck of cards, visits
+        // every id once in key order
+        for (int i = 0; i < size; i++) {
+
+            int top = heap.peek();
+            assertEquals(size - 1 - i, top);
+            heap.update(top, 1_000 + i);
+
+        }
+
+        assertEquals(size - 1, heap.peek());
+
+    }
+
+}
@@ -4,6 +4,8 @@ import org.junit.Test;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
 
 public class IntFromPredictionTest {
@@ -16,4 +18,15 @@ public class IntFromPredictionTest {
         assertEquals(11, (int) SpeechManager.intFromPrediction("eleven"));
 
     }
+
+    @Test
+    public void intsFromPrediction_isCorrect() {
+
+        assertEquals(Arrays.asList(12, 7), SpeechManager.intsFromPrediction("12 7"));
+        assertEquals(Arrays.asList(12, 7), SpeechManager.intsFromPrediction("12th, 7"));
+        assertEquals(Collections.singletonList(11), SpeechManager.intsFromPrediction("11:00"));
+        assertEquals(Arrays.asList(12, 7), SpeechManager.intsFromPrediction("twelve seven"));
+        assertEquals(Arrays.asList(21, 5), SpeechManager.intsFromPrediction("twenty-one five"));
+
+    }
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+public class LaunchTimingsTest {
+
+    private static LaunchTimings launch(boolean cold, long processStartMs, long createStartMs, long createEndMs,
+                                        long firstFrameMs, long fullyDrawnMs) {
+
+        LaunchTimings launch = new LaunchTimings(cold, processStartMs);
+        launch.markCreateStart(createStartMs);
+        launch.markCreateEnd(createEndMs);
+        launch.markFirstFrame(firstFrameMs);
+        launch.markFullyDrawn(fullyDrawnMs);
+        return launch;
+
+    }
+
+    @Test
+    public void coldLaunch_isTimedFromProcessStart() {
+
+        LaunchTimings launch = launch(true, 1000, 1150, 1230, 1400, 1520);
+
+        assertEquals(150, launch.phaseMs(LaunchTimings.PHASE_PROCESS));
+        assertEquals(80, launch.phaseMs(LaunchTimings.PHASE_CREATE));
+        assertEquals(170, launch.phaseMs(LaunchTimings.PHASE_FIRST_FRAME));
+        assertEquals(120, launch.phaseMs(LaunchTimings.PHASE_WARM_UP));
+        assertEquals(400, launch.toFirstFrameMs());
+        assertEquals(520, launch.toFullyDrawnMs());
+        assertEquals("cold,150,80,170,120,400,520", launch.toCsvRow());
+
+    }
+
+    @Test
+    public void warmLaunch_isTimedFromOnCreate() {
+
+        LaunchTimings launch = launch(false, 1000, 50000, 50040, 50100, 50110);
+
+        assertEquals(-1, launch.phaseMs(LaunchTimings.PHASE_PROCESS));
+        assertEquals(100, launch.toFirstFrameMs());
+        assertEquals("warm,,40,60,10,100,110", launch.toCsvRow());
+        assertFalse(launch.summary().contains("process"));
+
+    }
+
+    @Test
+    public void unfinishedPhases_areUnknown() {
+
+        LaunchTimings launch = new LaunchTimings(true, 1000);
+        launch.markCreateStart(1100);
+
+        assertEquals(100, launch.phaseMs(LaunchTimings.PHASE_PROCESS));
+        assertEquals(-1, launch.phaseMs(LaunchTimings.PHASE_CREATE));
+        assertEquals(-1, launch.toFullyDrawnMs());
+
+    }
+
+    @Test
+    public void appendTo_keepsTheMostRecentLaunches() throws IOException {
+
+        File file = new File(Files.createTempDirectory("launch").toFile(), "launch_timings.csv");
+
+        for (int i = 0; i < 5; i++) {
+            launch(true, 0, 100, 200, 300, 400 + i).appendTo(file, 3);
+        }
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+
+        assertEquals(4, lines.size());
+        assertEquals(LaunchTimings.CSV_HEADER, lines.get(0));
+        assertEquals("cold,100,100,100,102,300,402", lines.get(1));
+        assertEquals("cold,100,100,100,104,300,404", lines.get(3));
+
+    }
+
+}
@@ -0,0 +1,196 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+
+public class MetricsTest {
+
+    @Test
+    public void concurrentRecording_losesNoUpdates() throws InterruptedException {
+
+        Metrics metrics = new Metrics();
+        Metrics.Counter counter = metrics.counter("test_total", "Test counter");
+        Metrics.Gauge gauge = metrics.gauge("test_gauge", "Test gauge");
+        Metrics.Histogram histogram = metrics.histogram("test_values", "Test histogram");
+
+        int threads = 16;
+        int perThread = 100_000;
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+
+        for (int t = 0; t < threads; t++) {
+
+            int thread = t;
+
+            workers[t] = new Thread(() -> {
+
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                for (int i = 0; i < perThread; i++) {
+
+                    counter.increment();
+                    gauge.add(1);
+                    histogram.record(i % 1024 + thread);
+
+                    // Snapshots while recording mustn't lose anything either
+                    if (i % 20_000 == 0) {
+                        metrics.toPrometheusText();
+                    }
+
+                }
+
+            });
+
+            workers[t].start();
+
+        }
+
+        start.countDown();
+
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long total = (long) threads * perThread;
+        long expectedSum = 0;
+
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < perThread; i++) {
+                expectedSum += i % 1024 + t;
+            }
+        }
+
+        assertEquals(total, counter.get());
+        assertEquals(total, gauge.get());
+        assertEquals(total, histogram.getCount());
+        assertEquals(expectedSum, histogram.getSum());
+
+    }
+
+    @Test
+    public void histogram_bucketsByPowersOfTwo() {
+
+        assertEquals(0, Metrics.Histogram.bucketOf(-5));
+        assertEquals(0, Metrics.Histogram.bucketOf(0));
+        assertEquals(1, Metrics.Histogram.bucketOf(1));
+        assertEquals(2, Metrics.Histogram.bucketOf(3));
+        assertEquals(3, Metrics.Histogram.bucketOf(4));
+        assertEquals(63, Metrics.Histogram.bucketOf(Long.MAX_VALUE));
+
+        for (long value : new long[] {1, 2, 3, 100, 1023, 1024, 1L << 40}) {
+
+            int bucket = Metrics.Histogram.bucketOf(value);
+            assertTrue(value <= Metrics.Histogram.upperBound(bucket));
+            assertTrue(value > Metrics.Histogram.upperBound(bucket - 1));
+
+        }
+
+    }
+
+    @Test
+    public void toPrometheusText_isCumulativeAndSorted() {
+
+        Metrics metrics = new Metrics();
+        Metrics.Histogram latency = metrics.histogram("b_latency_ms", "Latency");
+        metrics.counter("a_total", "Things").add(3);
+
+        latency.record(0);
+        latency.record(2);
+        latency.record(3);
+        latency.record(6);
+
+        assertEquals("# HELP a_total Things\n"
+                + "# TYPE a_total counter\n"
+                + "a_total 3\n"
+                + "# HELP b_latency_ms Latency\n"
+                + "# TYPE b_latency_ms histogram\n"
+                + "b_latency_ms_bucket{le=\"0\"} 1\n"
+                + "b_latency_ms_bucket{le=\"1\"} 1\n"
+                + "b_latency_ms_bucket{le=\"3\"} 3\n"
+                + "b_latency_ms_bucket{le=\"7\"} 4\n"
+                + "b_latency_ms_bucket{le=\"+Inf\"} 4\n"
+                + "b_latency_ms_sum 11\n"
+                + "b_latency_ms_count 4\n", metrics.toPrometheusText());
+
+    }
+
+    @Test
+    public void register_returnsTheSameMetric() {
+
+        Metrics metrics = new Metrics();
+
+        assertSame(metrics.counter("x_total", "X"), metrics.counter("x_total", "X"));
+
+        try {
+            metrics.gauge("x_total", "X");
+            fail("Registered a gauge over a counter");
+        } catch (IllegalArgumentException expected) {
+            // Good
+        }
+
+        try {
+            metrics.counter("not a name", "X");
+            fail("Registered an invalid name");
+        } catch (IllegalArgumentException expected) {
+            // Good
+        }
+
+    }
+
+    @Test
+    public void exporters_publishTheRegistry() throws IOException {
+
+        Metrics metrics = new Metrics();
+        metrics.counter("served_total", "Served").increment();
+
+        File file = new File(Files.createTempDirectory("metrics").toFile(), "metrics.prom");
+        metrics.addExporter(new PrometheusFileExporter(file));
+        metrics.publish();
+
+        assertEquals(metrics.toPrometheusText(), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+
+        MetricsHttpServer server = new MetricsHttpServer(metrics, 0);
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+
+            OutputStream out = socket.getOutputStream();
+            out.write("GET /metrics HTTP/1.0\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[1024];
+
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                response.write(buffer, 0, read);
+            }
+
+            String text = new String(response.toByteArray(), StandardCharsets.UTF_8);
+            assertTrue(text, text.startsWith("HTTP/1.0 200 OK"));
+            assertTrue(text, text.endsWith("served_total 1\n"));
+
+        } finally {
+
+            server.close();
+
+        }
+
+    }
+
+}
@@ -0,0 +1,101 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Locale;
+
+public class NarrationCacheTest {
+
+    private static File synthesize(NarrationCache cache, String key, int bytes) throws IOException {
+
+        File pending = cache.pendingFileFor(key);
+
+        try (FileOutputStream out = new FileOutputStream(pending)) {
+            out.write(new byte[bytes]);
+        }
+
+        return cache.put(key, pending);
+
+    }
+
+    @Test
+    public void key_namesLocaleAndEquation() {
+        assertEquals("en-US_7_times_4", NarrationCache.key(Locale.US, ProblemSet.MULTIPLICATION, 7, 4));
+        assertEquals("de-DE_12_div_3", NarrationCache.key(Locale.GERMANY, ProblemSet.DIVISION, 12, 3));
+    }
+
+    @Test
+    public void bytesFor_fitsEveryProblemAtTheDefaultMaxNumber() {
+
+        int problems = new FactUniverse(Config.MAX_NUMBER).size();
+
+        assertTrue(NarrationCache.bytesFor(problems) >= (long) problems * Config.NARRATION_CLIP_BYTES);
+        assertEquals(Config.NARRATION_CACHE_MAX_BYTES, NarrationCache.bytesFor(Integer.MAX_VALUE));
+
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() throws IOException {
+
+        File directory = Files.createTempDirectory("narration").toFile();
+        NarrationCache cache = new NarrationCache(directory, 250);
+
+        File one = synthesize(cache, "one", 100);
+        synthesize(cache, "two", 100);
+        assertTrue(one.isFile());
+
+        // Using "one" makes "two" the oldest
+        assertNotNull(cache.get("one"));
+        synthesize(cache, "three", 100);
+
+        assertNotNull(cache.get("one"));
+        assertNull(cache.get("two"));
+        assertNotNull(cache.get("three"));
+        assertEquals(200, cache.getTotalBytes());
+        assertFalse(new File(directory, "two.wav").exists());
+
+        // Nothing half written is left behind
+        assertFalse(cache.pendingFileFor("three").exists());
+
+    }
+
+    @Test
+    public void cache_survivesRestarts() throws IOException {
+
+        File directory = Files.createTempDirectory("narration").toFile();
+        NarrationCache cache = new NarrationCache(directory, 1_000);
+
+        File old = synthesize(cache, "old", 300);
+        File recent = synthesize(cache, "recent", 300);
+        assertTrue(old.setLastModified(1_000_000));
+        assertTrue(recent.setLastModified(2_000_000));
+
+        // A smaller limit on the next launch drops the oldest clip
+        NarrationCache reopened = new NarrationCache(directory, 400);
+
+        assertEquals(1, reopened.size());
+        assertNull(reopened.get("old"));
+        assertEquals(recent, reopened.get("recent"));
+
+    }
+
+    @Test
+    public void get_forgetsClipsDeletedFromUnderIt() throws IOException {
+
+        File directory = Files.createTempDirectory("narration").toFile();
+        NarrationCache cache = new NarrationCache(directory, 1_000);
+
+        assertTrue(synthesize(cache, "gone", 100).delete());
+
+        assertNull(cache.get("gone"));
+        assertEquals(0, cache.getTotalBytes());
+
+    }
+
+}
@@ -0,0 +1,27 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NumberLexiconTest {
+
+    /**
+     * veloxLexiconMaxNumber in gradle.properties has to keep up with
+     * Config.MAX_NUMBER, or answers near the top won't parse.
+     */
+    @Test
+    public void lexicon_coversEveryPossibleAnswer() {
+
+        NumberLexicon lexicon = NumberLexicon.forLocale(Config.LOCALE);
+
+        assertTrue("veloxLexiconMaxNumber is " + lexicon.maxNumber() + ", below MAX_NUMBER " + Config.MAX_NUMBER,
+                lexicon.maxNumber() >= Config.MAX_NUMBER);
+
+        for (int i = 0; i <= Config.MAX_NUMBER; i++) {
+            assertEquals(i, lexicon.valueOf(lexicon.wordFor(i)));
+        }
+
+    }
+
+}
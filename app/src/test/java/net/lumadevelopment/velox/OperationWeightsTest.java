@@ -0,0 +1,26 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OperationWeightsTest {
+    @Test
+    public void record_tracksAccuracyAndResponseTime() {
+
+        OperationWeights weights = new OperationWeights(new double[]{1, 1, 1, 1});
+
+        for (int i = 0; i < 20; i++) {
+            weights.record(ProblemSet.ADDITION, true, 500);
+            weights.record(ProblemSet.DIVISION, false, Config.TIME_PER_PROBLEM_IN_MS);
+        }
+
+        assertTrue(weights.getAccuracy(ProblemSet.ADDITION) > 0.99);
+        assertTrue(weights.getAccuracy(ProblemSet.DIVISION) < 0.05);
+        assertEquals(500, weights.getResponseTimeInMs(ProblemSet.ADDITION), 50);
+
+        // Untouched operations keep their starting averages
+        assertEquals(1, weights.getAccuracy(ProblemSet.SUBTRACTION), 0);
+
+    }
+}
@@ -0,0 +1,348 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * Fails when the core game paths start allocating or burning more CPU
+ * than the budgets checked in to src/test/resources/perf-budgets.properties.
+ * Each scenario is split into phases, measured with the thread's
+ * allocated bytes and CPU time, and a failure prints every phase
+ * against its budget.
+ *
+ * After an intended change, refresh the budgets with:
+ *
+ *   ./gradlew :app:testDebugUnitTest --tests '*PerformanceBudgetTest' -PupdatePerfBudgets
+ */
+public class PerformanceBudgetTest {
+
+    private static final String BUDGET_FILE = "src/test/resources/perf-budgets.properties";
+
+    private static final int WARM_UP_RUNS = 5;
+    private static final int MEASURED_RUNS = 5;
+    private static final int PARSES = 10_000;
+    private static final int TICK_MS = (int) (1000 / Config.TICKS_PER_SECOND);
+
+    // Headroom given to budgets when they're updated. CPU time is a
+    // lot noisier than allocation, especially on shared CI machines.
+    private static final double BYTES_HEADROOM = 1.25;
+    private static final long BYTES_SLACK = 1024;
+    private static final double CPU_HEADROOM = 3;
+    private static final long CPU_SLACK_US = 5_000;
+
+    private static final List<String> HYPOTHESES = Arrays.asList(
+            "13", "twenty three", "the answer is seven", "twelve seven",
+            "11th", "twenty-one five", "hello", "4:00", "thirty", "one two three");
+
+    private static com.sun.management.ThreadMXBean threads;
+    private static boolean update;
+    private static File budgetFile;
+    private static Properties budgets;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        Assume.assumeTrue("JVM can't measure per-thread allocation",
+                bean instanceof com.sun.management.ThreadMXBean && bean.isCurrentThreadCpuTimeSupported());
+
+        threads = (com.sun.management.ThreadMXBean) bean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+        threads.setThreadCpuTimeEnabled(true);
+
+        update = Boolean.getBoolean("velox.updatePerfBudgets");
+        budgetFile = new File(System.getProperty("velox.perfBudgets", BUDGET_FILE));
+        budgets = new Properties();
+
+        if (budgetFile.isFile()) {
+            try (InputStream in = new FileInputStream(budgetFile)) {
+                budgets.load(in);
+            }
+        }
+
+    }
+
+    /**
+     * One phase of a scenario, run once per call.
+     */
+    private interface Phase {
+        void run();
+    }
+
+    /**
+     * Cheapest of MEASURED_RUNS runs, after warming up. The minimum
+     * filters out GC pauses and scheduling noise.
+     */
+    private static final class Measurement {
+        long bytes = Long.MAX_VALUE;
+        long cpuUs = Long.MAX_VALUE;
+    }
+
+    /**
+     * Runs every phase in order, WARM_UP_RUNS + MEASURED_RUNS times,
+     * then checks (or updates) the budgets.
+     * @param scenario Prefix for the budget keys
+     * @param setUp Runs before each pass, unmeasured
+     */
+    private static void measure(String scenario, Runnable setUp, Map<String, Phase> phases) throws IOException {
+
+        Map<String, Measurement> results = new LinkedHashMap<>();
+
+        for (String name : phases.keySet()) {
+            results.put(name, new Measurement());
+        }
+
+        long threadId = Thread.currentThread().getId();
+
+        for (int run = 0; run < WARM_UP_RUNS + MEASURED_RUNS; run++) {
+
+            setUp.run();
+
+            for (Map.Entry<String, Phase> phase : phases.entrySet()) {
+
+                long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+                long cpuBefore = threads.getCurrentThreadCpuTime();
+
+                phase.getValue().run();
+
+                long cpuNs = threads.getCurrentThreadCpuTime() - cpuBefore;
+                long bytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+                if (run >= WARM_UP_RUNS) {
+                    Measurement measurement = results.get(phase.getKey());
+                    measurement.bytes = Math.min(measurement.bytes, bytes);
+                    measurement.cpuUs = Math.min(measurement.cpuUs, cpuNs / 1000);
+                }
+
+            }
+
+        }
+
+        if (update) {
+
+            StringBuilder updated = new StringBuilder(scenario + " (bytes, CPU us: measured / new budget)\n");
+
+            for (Map.Entry<String, Measurement> result : results.entrySet()) {
+
+                Measurement measurement = result.getValue();
+                String key = scenario + "." + result.getKey();
+                long bytesBudget = Math.max((long) (measurement.bytes * BYTES_HEADROOM), measurement.bytes + BYTES_SLACK);
+                long cpuBudget = (long) (measurement.cpuUs * CPU_HEADROOM) + CPU_SLACK_US;
+
+                budgets.setProperty(key + ".bytes", Long.toString(bytesBudget));
+                budgets.setProperty(key + ".cpuUs", Long.toString(cpuBudget));
+
+                updated.append(String.format("       %-28s %10d / %-10d %8d / %d%n", result.getKey(),
+                        measurement.bytes, bytesBudget, measurement.cpuUs, cpuBudget));
+
+            }
+
+            // Shown so the new budgets can be sanity checked before committing them
+            System.out.print(updated);
+            writeBudgets();
+            return;
+
+        }
+
+        StringBuilder breakdown = new StringBuilder(scenario + " (bytes, CPU us: measured / budget)\n");
+        boolean overBudget = false;
+
+        for (Map.Entry<String, Measurement> result : results.entrySet()) {
+
+            Measurement measurement = result.getValue();
+            String key = scenario + "." + result.getKey();
+            long bytesBudget = Long.parseLong(budgets.getProperty(key + ".bytes", "-1"));
+            long cpuBudget = Long.parseLong(budgets.getProperty(key + ".cpuUs", "-1"));
+
+            boolean over = bytesBudget < 0 || cpuBudget < 0
+                    || measurement.bytes > bytesBudget || measurement.cpuUs > cpuBudget;
+            overBudget |= over;
+
+            breakdown.append(over ? "  OVER " : "       ")
+                    .append(String.format("%-28s %10d / %-10d %8d / %d%n", result.getKey(),
+                            measurement.bytes, bytesBudget, measurement.cpuUs, cpuBudget));
+
+        }
+
+        // Passing runs stay quiet; the table is only worth reading when something's over
+        if (overBudget) {
+            fail(breakdown + "A budget of -1 means none is checked in yet. If the change is intended, run\n"
+                    + "./gradlew :app:testDebugUnitTest --tests '*PerformanceBudgetTest' -PupdatePerfBudgets");
+        }
+
+    }
+
+    /**
+     * Writes the budgets sorted, without the timestamp Properties.store()
+     * adds, so updates make small diffs.
+     */
+    private static void writeBudgets() throws IOException {
+
+        try (Writer out = new FileWriter(budgetFile)) {
+
+            out.write("# Checked by PerformanceBudgetTest. Regenerate with:\n");
+            out.write("# ./gradlew :app:testDebugUnitTest --tests '*PerformanceBudgetTest' -PupdatePerfBudgets\n");
+
+            for (String key : new TreeSet<>(budgets.stringPropertyNames())) {
+                out.write(key + "=" + budgets.getProperty(key) + "\n");
+            }
+
+        }
+
+    }
+
+    // Set up before each pass of fullGame_withinBudget(), unmeasured
+    private ProblemSet problems;
+    private GameJournal journal;
+    private List<List<Integer>> script;
+
+    @Test
+    public void fullGame_withinBudget() throws IOException {
+
+        double[] weights = GameJournal.storableWeights(Config.operationWeights());
+        long seed = 37;
+
+        Map<String, Phase> phases = new LinkedHashMap<>();
+
+        phases.put("generateProblems", () -> {
+
+            ProblemSet generated = new ProblemSet(Config.NUM_OF_PROBLEMS);
+            ProblemGenerator generator = new ProblemGenerator(seed, weights, Config.MAX_NUMBER);
+
+            for (int i = 0; i < Config.NUM_OF_PROBLEMS; i++) {
+                generator.generateProblem(generated);
+            }
+
+        });
+
+        // Every third problem gets a wrong answer first, every fifth
+        // one times out, the rest are answered after about a second
+        phases.put("playGame", () -> {
+
+            GameEngine engine = new GameEngine(problems, Config.TIME_PER_PROBLEM_IN_MS,
+                    Config.ANSWER_GRACE_MS, Config.MAX_ANSWER_LOOKAHEAD, journal);
+            long now = 0;
+            engine.start(now);
+
+            while (!engine.isOver()) {
+
+                int index = engine.getCurrentProblemIndex();
+                engine.problemShown(index, now);
+                engine.tick(now);
+
+                int onProblemMs = engine.getTimeOnProblemInMs(now);
+
+                if (index % 5 != 4 && index == engine.getCurrentProblemIndex()) {
+
+                    if (index % 3 == 0 && onProblemMs == 10 * TICK_MS) {
+                        engine.answers(script.get(2 * index), index, now - TICK_MS, now - TICK_MS, now);
+                    } else if (onProblemMs == 30 * TICK_MS) {
+                        engine.answers(script.get(2 * index + 1), index, now - TICK_MS, now - TICK_MS, now);
+                    }
+
+                }
+
+                now += TICK_MS;
+
+            }
+
+        });
+
+        phases.put("replayGame", () -> GameReplayer.replay(journal.toByteArray()));
+
+        measure("game", () -> {
+
+            problems = new ProblemSet(Config.NUM_OF_PROBLEMS);
+            ProblemGenerator generator = new ProblemGenerator(seed, weights, Config.MAX_NUMBER);
+            script = new ArrayList<>();
+
+            for (int i = 0; i < Config.NUM_OF_PROBLEMS; i++) {
+
+                generator.generateProblem(problems);
+                script.add(Collections.singletonList(problems.getSolution(i) + 1));
+                script.add(Collections.singletonList(problems.getSolution(i)));
+
+            }
+
+            journal = new GameJournal(seed, weights, Config.MAX_NUMBER, Config.NUM_OF_PROBLEMS,
+                    Config.TIME_PER_PROBLEM_IN_MS, Config.ANSWER_GRACE_MS, Config.MAX_ANSWER_LOOKAHEAD);
+
+        }, phases);
+
+    }
+
+    @Test
+    public void parses_withinBudget() throws IOException {
+
+        // Parsed once up front so the lexicon is loaded before measuring
+        SpeechManager.intsFromPrediction(HYPOTHESES.get(0));
+
+        Map<String, Phase> phases = new LinkedHashMap<>();
+
+        phases.put("intFromPrediction", () -> {
+            for (int i = 0; i < PARSES; i++) {
+                SpeechManager.intFromPrediction(HYPOTHESES.get(i % HYPOTHESES.size()));
+            }
+        });
+
+        phases.put("intsFromPrediction", () -> {
+            for (int i = 0; i < PARSES; i++) {
+                SpeechManager.intsFromPrediction(HYPOTHESES.get(i % HYPOTHESES.size()));
+            }
+        });
+
+        // Every one different, so the parse cache can't help
+        List<String> distinct = new ArrayList<>(PARSES);
+
+        for (int i = 0; i < PARSES; i++) {
+            distinct.add(HYPOTHESES.get(i % HYPOTHESES.size()) + " " + i);
+        }
+
+        phases.put("intsFromPredictionUncached", () -> {
+            for (int i = 0; i < PARSES; i++) {
+                SpeechManager.intsFromPrediction(distinct.get(i));
+            }
+        });
+
+        float[] confidences = {0.6f, 0.5f, 0.4f, 0.3f, 0.2f, 0.2f, 0.1f, 0.1f, 0.1f, 0.1f};
+
+        phases.put("selectAnswers", () -> {
+            for (int i = 0; i < PARSES / HYPOTHESES.size(); i++) {
+                SpeechManager.selectAnswers(HYPOTHESES, confidences, i % Config.MAX_NUMBER);
+            }
+        });
+
+        measure("parse", () -> {}, phases);
+
+    }
+
+    @Test
+    public void budgetFile_exists() {
+
+        if (!update) {
+            assertTrue("Missing " + budgetFile.getAbsolutePath(), budgetFile.isFile());
+        }
+
+    }
+
+}
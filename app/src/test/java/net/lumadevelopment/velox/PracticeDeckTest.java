@@ -0,0 +1,204 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+public class PracticeDeckTest {
+
+    private static final long NOW = 1_700_000_000L;
+
+    @Test
+    public void universe_holdsEveryValidProblemOnce() {
+
+        for (int maxNumber : new int[] {4, 12, 30, 100}) {
+
+            FactUniverse universe = new FactUniverse(maxNumber);
+            Set<String> facts = new HashSet<>();
+
+            for (int fact = 0; fact < universe.size(); fact++) {
+
+                byte op = universe.getOperation(fact);
+                int a = universe.getOperandOne(fact);
+                int b = universe.getOperandTwo(fact);
+                int solution = universe.getSolution(fact);
+
+                assertTrue(solution >= 1 && solution <= maxNumber && a <= maxNumber);
+
+                if (op == ProblemSet.DIVISION) {
+                    assertTrue(b >= 2 && b < a && a % b == 0);
+                } else if (op == ProblemSet.MULTIPLICATION) {
+                    assertTrue(a >= 2 && b >= 2);
+                }
+
+                assertTrue(facts.add(op + ":" + a + ":" + b));
+
+            }
+
+            // Brute force count of the same constraints
+            int expected = 0;
+
+            for (int a = 1; a <= maxNumber; a++) {
+                for (int b = 1; b <= maxNumber; b++) {
+
+                    if (a + b <= maxNumber) expected++;
+                    if (a - b >= 1) expected++;
+                    if (b >= 2 && b < a && a % b == 0) expected++;
+                    if (a >= 2 && b >= 2 && a <= maxNumber / 2 && a * b <= maxNumber) expected++;
+
+                }
+            }
+
+            assertEquals(expected, universe.size());
+
+        }
+
+    }
+
+    @Test
+    public void record_bringsMissedFactsBackOnceDue() {
+
+        FactUniverse universe = new FactUniverse(30);
+        PracticeDeck deck = PracticeDeck.create(universe, NOW, 7);
+
+        int missed = deck.next(NOW);
+        deck.record(missed, false, Config.TIME_PER_PROBLEM_IN_MS, NOW);
+
+        int known = deck.next(NOW);
+        assertTrue(missed != known);
+        deck.record(known, true, 500, NOW);
+
+        assertEquals(1, deck.getBox(known));
+        assertEquals(0, deck.getBox(missed));
+        assertTrue(deck.getErrorScore(missed) > 0);
+        assertEquals(NOW + 30, deck.getDueSeconds(missed));
+        assertTrue(deck.getDueSeconds(missed) < deck.getDueSeconds(known));
+        assertEquals(2, deck.getSeenCount());
+
+        // Until the missed fact is due, new facts come up, one every 3 s
+        long now = NOW;
+
+        for (; now < NOW + 30; now += 3) {
+
+            int next = deck.next(now);
+            assertEquals(Long.MAX_VALUE, deck.getDueSeconds(next));
+            deck.record(next, true, 500, now);
+
+        }
+
+        // Then it's back, ahead of every new fact
+        assertEquals(missed, deck.next(now));
+
+    }
+
+    @Test
+    public void next_servesReviewsBeforeNewFacts() {
+
+        PracticeDeck deck = PracticeDeck.create(new FactUniverse(12), NOW, 5);
+        int first = deck.next(NOW);
+        deck.record(first, true, 500, NOW);
+
+        // In box 1 now, due again 2 minutes later
+        assertTrue(deck.next(NOW + 119) != first);
+        assertEquals(first, deck.next(NOW + 120));
+
+    }
+
+    @Test
+    public void next_reviewsOnceEveryFactIsSeen() {
+
+        FactUniverse universe = new FactUniverse(4);
+        PracticeDeck deck = PracticeDeck.create(universe, NOW, 2);
+        Set<Integer> seen = new HashSet<>();
+
+        for (int i = 0; i < universe.size(); i++) {
+
+            int fact = deck.next(NOW);
+            assertTrue(seen.add(fact));
+            deck.record(fact, true, 500, NOW);
+
+        }
+
+        // Nothing due, nothing new: the soonest due comes up early
+        assertTrue(seen.contains(deck.next(NOW)));
+
+    }
+
+    @Test
+    public void record_keepsSlowAnswersInTheirBox() {
+
+        PracticeDeck deck = PracticeDeck.create(new FactUniverse(12), NOW, 3);
+        int fact = deck.next(NOW);
+
+        deck.record(fact, true, 100, NOW);
+        deck.record(fact, true, Config.TIME_PER_PROBLEM_IN_MS - 100, NOW + 60);
+
+        assertEquals(1, deck.getBox(fact));
+
+    }
+
+    @Test
+    public void writeAndRead_roundTrip() throws IOException {
+
+        FactUniverse universe = new FactUniverse(100);
+        PracticeDeck deck = PracticeDeck.create(universe, NOW, 11);
+
+        for (int i = 0; i < 500; i++) {
+            deck.record(deck.next(NOW + i), i % 3 != 0, 400 + i, NOW + i);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        deck.write(out);
+
+        PracticeDeck read = PracticeDeck.read(new ByteArrayInputStream(out.toByteArray()), universe);
+
+        assertEquals(deck.getSeenCount(), read.getSeenCount());
+        assertEquals(deck.next(NOW), read.next(NOW));
+
+        for (int fact = 0; fact < universe.size(); fact++) {
+            assertEquals(deck.getBox(fact), read.getBox(fact));
+            assertEquals(deck.getErrorScore(fact), read.getErrorScore(fact));
+            assertEquals(deck.getDueSeconds(fact), read.getDueSeconds(fact));
+        }
+
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsOtherMaxNumbers() throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PracticeDeck.create(new FactUniverse(30), NOW, 1).write(out);
+
+        PracticeDeck.read(new ByteArrayInputStream(out.toByteArray()), new FactUniverse(31));
+
+    }
+
+    @Test
+    public void largeDeck_loadsQuickly() throws IOException {
+
+        FactUniverse universe = new FactUniverse(1000);
+        PracticeDeck deck = PracticeDeck.create(universe, NOW, 5);
+
+        for (int i = 0; i < 2_000; i++) {
+            deck.record(deck.next(NOW + i), i % 4 != 0, 700, NOW + i);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        deck.write(out);
+        long created = System.nanoTime();
+
+        PracticeDeck read = PracticeDeck.read(new ByteArrayInputStream(out.toByteArray()), universe);
+        long loaded = System.nanoTime();
+
+        assertEquals(deck.next(NOW), read.next(NOW));
+        assertTrue("Loading took " + (loaded - created) / 1_000_000 + " ms", loaded - created < 1_000_000_000L);
+
+    }
+
+}
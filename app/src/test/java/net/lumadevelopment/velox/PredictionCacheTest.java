@@ -0,0 +1,121 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PredictionCacheTest {
+
+    @Test
+    public void get_cachesResultsIncludingNull() {
+
+        PredictionCache<Integer> cache = new PredictionCache<>(4);
+        AtomicInteger parses = new AtomicInteger();
+        PredictionCache.Parser<Integer> parser = key -> {
+            parses.incrementAndGet();
+            return key.equals("hello") ? null : key.length();
+        };
+
+        assertEquals(5, (int) cache.get("seven", parser));
+        assertEquals(5, (int) cache.get("seven", parser));
+        assertNull(cache.get("hello", parser));
+        assertNull(cache.get("hello", parser));
+
+        assertEquals(2, parses.get());
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate(), 1e-9);
+
+    }
+
+    @Test
+    public void get_evictsUnreferencedEntriesFirst() {
+
+        PredictionCache<String> cache = new PredictionCache<>(3);
+        AtomicInteger parses = new AtomicInteger();
+        PredictionCache.Parser<String> parser = key -> {
+            parses.incrementAndGet();
+            return key;
+        };
+
+        cache.get("a", parser);
+        cache.get("b", parser);
+        cache.get("c", parser);
+
+        // "a" gets a second chance, so adding "d" evicts "b"
+        cache.get("a", parser);
+        cache.get("d", parser);
+        assertEquals(3, cache.size());
+
+        parses.set(0);
+        cache.get("a", parser);
+        cache.get("c", parser);
+        cache.get("d", parser);
+        assertEquals(0, parses.get());
+
+        cache.get("b", parser);
+        assertEquals(1, parses.get());
+
+    }
+
+    @Test
+    public void setContext_clearsOnChange() {
+
+        PredictionCache<Integer> cache = new PredictionCache<>(4);
+        PredictionCache.Parser<Integer> parser = String::length;
+
+        cache.setContext(Locale.US, 30);
+        cache.get("twelve", parser);
+        cache.setContext(Locale.US, 30);
+        assertEquals(1, cache.size());
+
+        cache.setContext(Locale.US, 100);
+        assertEquals(0, cache.size());
+
+        cache.get("twelve", parser);
+        cache.setContext(Locale.GERMANY, 100);
+        assertEquals(0, cache.size());
+
+    }
+
+    @Test
+    public void get_isSafeAcrossThreads() throws InterruptedException {
+
+        PredictionCache<Integer> cache = new PredictionCache<>(8);
+        PredictionCache.Parser<Integer> parser = key -> Integer.parseInt(key) * 2;
+        AtomicInteger wrong = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+
+        for (int t = 0; t < threads.length; t++) {
+
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+
+                    // More keys than entries, so eviction runs concurrently too
+                    String key = Integer.toString(i % 12);
+
+                    if (cache.get(key, parser) != (i % 12) * 2) {
+                        wrong.incrementAndGet();
+                    }
+
+                }
+            });
+
+            threads[t].start();
+
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, wrong.get());
+        assertEquals(400_000, cache.getHits() + cache.getMisses());
+        assertTrue(cache.size() <= 8);
+
+    }
+
+}
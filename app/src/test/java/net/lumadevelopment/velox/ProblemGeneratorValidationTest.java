@@ -0,0 +1,407 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Generates problems on every core with fork/join and checks every
+ * invariant ProblemGenerator promises, for a range of MAX_NUMBER
+ * values. Then checks that the operation mix follows the weights and
+ * that each operation's first operand is uniform over its range, with
+ * Pearson's chi-square. Solution histograms aren't uniform by design,
+ * so their chi-square is printed for reference but not asserted.
+ *
+ * The quick mode runs with the rest of the tests. The full mode
+ * generates 500 million problems:
+ *
+ *   ./gradlew :app:testDebugUnitTest --tests '*ProblemGeneratorValidationTest' -PfullValidation
+ */
+public class ProblemGeneratorValidationTest {
+
+    private static final boolean FULL = Boolean.getBoolean("velox.fullValidation");
+
+    private static final int[] MAX_NUMBERS = {6, 12, 30, 100, 1000};
+    private static final long PROBLEMS_PER_MAX_NUMBER = FULL ? 100_000_000L : 1_000_000L;
+    private static final int PROBLEMS_PER_LEAF = 1 << 16;
+
+    // One-sided normal quantile for p = 0.0001. Seeds are fixed, so a
+    // pass is reproducible, this just leaves room for changing them.
+    private static final double Z = 3.719;
+
+    // One set per worker, refilled by every leaf it runs, so the full
+    // mode doesn't churn through gigabytes of arrays
+    private static final ThreadLocal<ProblemSet> LEAF_PROBLEMS =
+            ThreadLocal.withInitial(() -> new ProblemSet(PROBLEMS_PER_LEAF));
+
+    private static final String[] OPERATION_NAMES = {"addition", "subtraction", "division", "multiplication"};
+
+    /**
+     * Counts from some number of generated problems, merged up the
+     * fork/join tree.
+     */
+    private static final class Tally {
+
+        final long[] operations = new long[ProblemSet.NUM_OF_OPERATIONS];
+        final long[][] operandOnes;
+        final long[][] solutions;
+
+        long problems;
+        long violations;
+        String firstViolation;
+
+        Tally(int maxNumber) {
+            this.operandOnes = new long[ProblemSet.NUM_OF_OPERATIONS][maxNumber + 1];
+            this.solutions = new long[ProblemSet.NUM_OF_OPERATIONS][maxNumber + 1];
+        }
+
+        void merge(Tally other) {
+
+            problems += other.problems;
+            violations += other.violations;
+
+            if (firstViolation == null) {
+                firstViolation = other.firstViolation;
+            }
+
+            for (int op = 0; op < ProblemSet.NUM_OF_OPERATIONS; op++) {
+
+                operations[op] += other.operations[op];
+
+                for (int i = 0; i < operandOnes[op].length; i++) {
+                    operandOnes[op][i] += other.operandOnes[op][i];
+                    solutions[op][i] += other.solutions[op][i];
+                }
+
+            }
+
+        }
+
+    }
+
+    private static final class GenerateTask extends RecursiveTask<Tally> {
+
+        private final int maxNumber;
+        private final double[] weights;
+        private final long seed;
+        private final long firstLeaf;
+        private final long leaves;
+
+        GenerateTask(int maxNumber, double[] weights, long seed, long firstLeaf, long leaves) {
+            this.maxNumber = maxNumber;
+            this.weights = weights;
+            this.seed = seed;
+            this.firstLeaf = firstLeaf;
+            this.leaves = leaves;
+        }
+
+        @Override
+        protected Tally compute() {
+
+            if (leaves == 1) {
+                return generateLeaf();
+            }
+
+            long half = leaves / 2;
+            GenerateTask left = new GenerateTask(maxNumber, weights, seed, firstLeaf, half);
+            GenerateTask right = new GenerateTask(maxNumber, weights, seed, firstLeaf + half, leaves - half);
+
+            left.fork();
+            Tally tally = right.compute();
+            tally.merge(left.join());
+            return tally;
+
+        }
+
+        private Tally generateLeaf() {
+
+            // Not seed + leaf: SplittableRandom streams from nearby
+            // seeds along its own gamma would overlap
+            ProblemGenerator generator = new ProblemGenerator(
+                    seed ^ (firstLeaf * 0xBF58476D1CE4E5B9L), weights, maxNumber);
+            ProblemSet problems = LEAF_PROBLEMS.get();
+            problems.clear();
+            Tally tally = new Tally(maxNumber);
+
+            for (int i = 0; i < PROBLEMS_PER_LEAF; i++) {
+                generator.generateProblem(problems);
+            }
+
+            for (int i = 0; i < problems.size(); i++) {
+
+                byte op = problems.getOperation(i);
+                int a = problems.getOperandOne(i);
+                int b = problems.getOperandTwo(i);
+                int solution = problems.getSolution(i);
+
+                if (!isValid(op, a, b, solution, maxNumber)) {
+
+                    tally.violations++;
+
+                    if (tally.firstViolation == null) {
+                        tally.firstViolation = problems.equationToString(i) + " = " + solution
+                                + " (MAX_NUMBER " + maxNumber + ")";
+                    }
+
+                    continue;
+
+                }
+
+                tally.operations[op]++;
+                tally.operandOnes[op][a]++;
+                tally.solutions[op][solution]++;
+
+            }
+
+            tally.problems = problems.size();
+            return tally;
+
+        }
+
+    }
+
+    /**
+     * The invariants ProblemGenerator's comments describe.
+     */
+    private static boolean isValid(byte op, int a, int b, int solution, int maxNumber) {
+
+        if (solution < 1 || solution > maxNumber || a < 1 || b < 1 || a > maxNumber) {
+            return false;
+        }
+
+        switch (op) {
+            case ProblemSet.ADDITION:
+                return a + b == solution;
+            case ProblemSet.SUBTRACTION:
+                return a - b == solution;
+            case ProblemSet.DIVISION:
+                // Exact, and never by 1 or the number itself
+                return b >= 2 && b < a && a % b == 0 && a / b == solution;
+            case ProblemSet.MULTIPLICATION:
+                return a >= 2 && b >= 2 && a * b == solution;
+            default:
+                return false;
+        }
+
+    }
+
+    private static boolean isComposite(int number) {
+
+        for (int i = 2; i * i <= number; i++) {
+            if (number % i == 0) {
+                return true;
+            }
+        }
+
+        return false;
+
+    }
+
+    /**
+     * @return The values each operation's first operand should be
+     * drawn from, uniformly.
+     */
+    private static List<List<Integer>> operandOneSupports(int maxNumber) {
+
+        List<List<Integer>> supports = new ArrayList<>();
+
+        for (int op = 0; op < ProblemSet.NUM_OF_OPERATIONS; op++) {
+            supports.add(new ArrayList<>());
+        }
+
+        for (int a = 1; a <= maxNumber; a++) {
+
+            if (a <= maxNumber - 1) {
+                supports.get(ProblemSet.ADDITION).add(a);
+            }
+
+            if (a >= 2) {
+                supports.get(ProblemSet.SUBTRACTION).add(a);
+            }
+
+            if (isComposite(a)) {
+                supports.get(ProblemSet.DIVISION).add(a);
+            }
+
+            if (a >= 2 && a <= maxNumber / 2) {
+                supports.get(ProblemSet.MULTIPLICATION).add(a);
+            }
+
+        }
+
+        return supports;
+
+    }
+
+    /**
+     * Pearson's chi-square of counts against the expected share of
+     * each category. Categories with no expected share must be empty.
+     */
+    private static double chiSquare(long[] counts, double[] expectedShares) {
+
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+
+        double chiSquare = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+
+            if (expectedShares[i] == 0) {
+
+                if (counts[i] != 0) {
+                    return Double.POSITIVE_INFINITY;
+                }
+
+                continue;
+
+            }
+
+            double expected = total * expectedShares[i];
+            chiSquare += (counts[i] - expected) * (counts[i] - expected) / expected;
+
+        }
+
+        return chiSquare;
+
+    }
+
+    /**
+     * Wilson-Hilferty approximation of the chi-square critical value,
+     * plenty accurate for the hundreds of degrees of freedom the
+     * larger MAX_NUMBERs give.
+     */
+    private static double criticalValue(int degreesOfFreedom) {
+
+        double k = degreesOfFreedom;
+        double term = 1 - 2 / (9 * k) + Z * Math.sqrt(2 / (9 * k));
+        return k * term * term * term;
+
+    }
+
+    /**
+     * Chi-square of an operand or solution histogram against a
+     * uniform distribution over support.
+     */
+    private static double uniformChiSquare(long[] histogram, List<Integer> support) {
+
+        double[] shares = new double[histogram.length];
+
+        for (int value : support) {
+            shares[value] = 1.0 / support.size();
+        }
+
+        return chiSquare(histogram, shares);
+
+    }
+
+    private static String histogram(long[] counts) {
+
+        StringBuilder line = new StringBuilder();
+
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                line.append(i).append(':').append(counts[i]).append(' ');
+            }
+        }
+
+        return line.toString().trim();
+
+    }
+
+    @Test
+    public void generator_holdsInvariantsAndDistributions() {
+
+        double[] weights = GameJournal.storableWeights(Config.operationWeights());
+        double weightSum = 0;
+        for (double weight : weights) {
+            weightSum += weight;
+        }
+
+        double[] operationShares = new double[weights.length];
+        for (int op = 0; op < weights.length; op++) {
+            operationShares[op] = weights[op] / weightSum;
+        }
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        List<String> failures = new ArrayList<>();
+
+        System.out.println((FULL ? "Full" : "Quick") + " ProblemGenerator validation on "
+                + pool.getParallelism() + " worker(s)");
+
+        for (int maxNumber : MAX_NUMBERS) {
+
+            long leaves = PROBLEMS_PER_MAX_NUMBER / PROBLEMS_PER_LEAF + 1;
+            long seed = new SplittableRandom(maxNumber).nextLong();
+            long start = System.nanoTime();
+
+            Tally tally = pool.invoke(new GenerateTask(maxNumber, weights, seed, 0, leaves));
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf(Locale.US, "MAX_NUMBER %d: %,d problems in %.2f s (%,.0f/s), %d invariant violation(s)%n",
+                    maxNumber, tally.problems, seconds, tally.problems / seconds, tally.violations);
+
+            if (tally.violations > 0) {
+                failures.add(tally.violations + " invalid problem(s), first: " + tally.firstViolation);
+            }
+
+            double operationChi = chiSquare(tally.operations, operationShares);
+            double operationCritical = criticalValue(weights.length - 1);
+            System.out.printf(Locale.US, "  operation mix: chi-square %.1f (critical %.1f)%n", operationChi, operationCritical);
+
+            if (operationChi > operationCritical) {
+                failures.add("MAX_NUMBER " + maxNumber + " operation mix doesn't follow the weights");
+            }
+
+            List<List<Integer>> supports = operandOneSupports(maxNumber);
+
+            for (int op = 0; op < ProblemSet.NUM_OF_OPERATIONS; op++) {
+
+                if (tally.operations[op] == 0) {
+                    continue;
+                }
+
+                List<Integer> support = supports.get(op);
+                double operandChi = uniformChiSquare(tally.operandOnes[op], support);
+                double operandCritical = criticalValue(support.size() - 1);
+
+                // The support of the solutions is whatever came up
+                List<Integer> solutionSupport = new ArrayList<>();
+                for (int s = 0; s <= maxNumber; s++) {
+                    if (tally.solutions[op][s] > 0) {
+                        solutionSupport.add(s);
+                    }
+                }
+
+                System.out.printf(Locale.US, "  %-14s first operand chi-square %.1f (critical %.1f), "
+                                + "solutions vs uniform %.1f over %d values%n",
+                        OPERATION_NAMES[op], operandChi, operandCritical,
+                        uniformChiSquare(tally.solutions[op], solutionSupport), solutionSupport.size());
+
+                if (maxNumber <= 30) {
+                    System.out.println("    first operands: " + histogram(tally.operandOnes[op]));
+                    System.out.println("    solutions:      " + histogram(tally.solutions[op]));
+                }
+
+                if (operandChi > operandCritical) {
+                    failures.add("MAX_NUMBER " + maxNumber + " " + OPERATION_NAMES[op]
+                            + " first operand isn't uniform (chi-square " + operandChi + ")");
+                }
+
+            }
+
+        }
+
+        assertTrue(String.join("\n", failures), failures.isEmpty());
+
+    }
+
+}
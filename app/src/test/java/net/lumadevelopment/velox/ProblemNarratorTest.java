@@ -0,0 +1,69 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class ProblemNarratorTest {
+
+    @Test
+    public void spokenText_readsTheEquation() {
+        assertEquals("7 times 4", ProblemNarrator.spokenText(ProblemSet.MULTIPLICATION, 7, 4));
+        assertEquals("12 divided by 3", ProblemNarrator.spokenText(ProblemSet.DIVISION, 12, 3));
+    }
+
+    @Test
+    public void readWav_readsPcm() throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AudioCapture.writeWav(out, new byte[] {1, 0, -1, -1, 0, 1});
+
+        ProblemNarrator.Wav wav = ProblemNarrator.readWav(out.toByteArray());
+
+        assertEquals(AudioCapture.SAMPLE_RATE, wav.sampleRate);
+        assertEquals(1, wav.channels);
+        assertArrayEquals(new short[] {1, -1, 256}, wav.pcm);
+
+    }
+
+    @Test
+    public void readWav_skipsOtherChunks() {
+
+        // RIFF, fmt, an odd sized LIST chunk with its pad byte, then data
+        ByteBuffer wav = ByteBuffer.allocate(12 + 24 + 8 + 3 + 1 + 8 + 4000).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put("RIFF".getBytes()).putInt(wav.capacity() - 8).put("WAVE".getBytes());
+        wav.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) 1)
+                .putInt(24_000).putInt(48_000).putShort((short) 2).putShort((short) 16);
+        wav.put("LIST".getBytes()).putInt(3).put(new byte[4]);
+        // Streamed, so the data size was never filled in
+        wav.put("data".getBytes()).putInt(-1);
+
+        ProblemNarrator.Wav parsed = ProblemNarrator.readWav(wav.array());
+
+        assertEquals(24_000, parsed.sampleRate);
+        assertEquals(2_000, parsed.pcm.length);
+        assertEquals(83, parsed.durationMs());
+
+    }
+
+    @Test
+    public void readWav_rejectsWhatItCantPlay() {
+
+        assertNull(ProblemNarrator.readWav(new byte[] {1, 2, 3}));
+
+        ByteBuffer floatWav = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+        floatWav.put("RIFF".getBytes()).putInt(36).put("WAVE".getBytes());
+        floatWav.put("fmt ".getBytes()).putInt(16).putShort((short) 3).putShort((short) 1)
+                .putInt(24_000).putInt(96_000).putShort((short) 4).putShort((short) 32);
+        floatWav.put("data".getBytes()).putInt(0);
+
+        assertNull(ProblemNarrator.readWav(floatWav.array()));
+
+    }
+
+}
@@ -0,0 +1,40 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ProblemSetTest {
+    @Test
+    public void renderEquation_isCorrect() {
+
+        ProblemSet problems = new ProblemSet(1);
+        problems.add(ProblemSet.ADDITION, 3, 9, 12);
+        problems.add(ProblemSet.DIVISION, 30, 10, 3);
+
+        char[] buffer = new char[ProblemSet.MAX_EQUATION_LENGTH];
+
+        assertEquals("3 + 9", new String(buffer, 0, problems.renderEquation(0, buffer)));
+        assertEquals("30 / 10", new String(buffer, 0, problems.renderEquation(1, buffer)));
+
+    }
+
+    @Test
+    public void recordOutcome_survivesGrowth() {
+
+        ProblemSet problems = new ProblemSet(1);
+        problems.add(ProblemSet.MULTIPLICATION, 2, 4, 8);
+        problems.recordOutcome(0, ProblemSet.CORRECT, 1200);
+
+        for (int i = 0; i < 100; i++) {
+            problems.add(ProblemSet.SUBTRACTION, 9, 4, 5);
+        }
+
+        assertEquals(101, problems.size());
+        assertEquals(ProblemSet.CORRECT, problems.getOutcome(0));
+        assertEquals(1200, problems.getResponseTimeInMs(0));
+        assertEquals(1, problems.countOutcome(ProblemSet.CORRECT));
+        assertEquals(100, problems.countOutcome(ProblemSet.UNANSWERED));
+
+    }
+}
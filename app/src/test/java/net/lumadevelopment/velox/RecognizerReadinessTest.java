@@ -0,0 +1,184 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class RecognizerReadinessTest {
+
+    /**
+     * Answers checkSupport() only when told to, like the real service
+     * answering later on the main thread.
+     */
+    private static class FakeRecognition implements OnDeviceRecognition {
+
+        boolean available = true;
+        boolean canCheck = true;
+        boolean downloadsGoOut = true;
+        final List<SupportCallback> pending = new ArrayList<>();
+        final List<Locale> downloads = new ArrayList<>();
+        int checks;
+
+        @Override
+        public boolean isAvailable() {
+            return available;
+        }
+
+        @Override
+        public boolean canCheckSupport() {
+            return canCheck;
+        }
+
+        @Override
+        public void checkSupport(Locale locale, SupportCallback callback) {
+            checks++;
+            pending.add(callback);
+        }
+
+        @Override
+        public boolean triggerModelDownload(Locale locale) {
+            downloads.add(locale);
+            return downloadsGoOut;
+        }
+
+        void answer(int support) {
+            pending.remove(0).onSupport(support);
+        }
+
+    }
+
+    private static RecognizerReadiness checked(FakeRecognition recognition) {
+
+        RecognizerReadiness readiness = new RecognizerReadiness(recognition, Locale.US);
+        readiness.check();
+        return readiness;
+
+    }
+
+    @Test
+    public void installedModel_usesOnDevice() {
+
+        FakeRecognition recognition = new FakeRecognition();
+        RecognizerReadiness readiness = checked(recognition);
+
+        recognition.answer(OnDeviceRecognition.SUPPORT_INSTALLED);
+
+        assertEquals(RecognizerReadiness.STATUS_INSTALLED, readiness.getStatus());
+        assertEquals(RecognizerReadiness.PATH_ON_DEVICE, readiness.choosePath());
+        assertTrue(recognition.downloads.isEmpty());
+        assertTrue(readiness.getCheckMs() >= 0);
+
+    }
+
+    @Test
+    public void downloadableModel_requestsDownloadOnceAndUsesDefault() {
+
+        FakeRecognition recognition = new FakeRecognition();
+        RecognizerReadiness readiness = checked(recognition);
+
+        recognition.answer(OnDeviceRecognition.SUPPORT_DOWNLOADABLE);
+
+        assertEquals(RecognizerReadiness.STATUS_DOWNLOAD_REQUESTED, readiness.getStatus());
+        assertEquals(RecognizerReadiness.PATH_DEFAULT, readiness.choosePath());
+        assertEquals(1, recognition.downloads.size());
+        assertEquals(Locale.US, recognition.downloads.get(0));
+
+        // Still not there on the recheck; don't ask again
+        readiness.recheckIfDownloading();
+        recognition.answer(OnDeviceRecognition.SUPPORT_DOWNLOADABLE);
+
+        assertEquals(1, recognition.downloads.size());
+
+    }
+
+    @Test
+    public void downloadThatDidntGoOut_isRequestedAgain() {
+
+        FakeRecognition recognition = new FakeRecognition();
+        recognition.downloadsGoOut = false;
+        RecognizerReadiness readiness = checked(recognition);
+
+        recognition.answer(OnDeviceRecognition.SUPPORT_DOWNLOADABLE);
+        recognition.downloadsGoOut = true;
+
+        readiness.recheckIfDownloading();
+        recognition.answer(OnDeviceRecognition.SUPPORT_DOWNLOADABLE);
+
+        readiness.recheckIfDownloading();
+        recognition.answer(OnDeviceRecognition.SUPPORT_DOWNLOADABLE);
+
+        assertEquals(2, recognition.downloads.size());
+
+    }
+
+    @Test
+    public void recheck_keepsDefaultUntilModelArrives() {
+
+        FakeRecognition recognition = new FakeRecognition();
+        RecognizerReadiness readiness = checked(recognition);
+        recognition.answer(OnDeviceRecognition.SUPPORT_DOWNLOADING);
+
+        readiness.recheckIfDownloading();
+
+        assertEquals(RecognizerReadiness.STATUS_CHECKING, readiness.getStatus());
+        assertEquals(RecognizerReadiness.PATH_DEFAULT, readiness.choosePath());
+
+        recognition.answer(OnDeviceRecognition.SUPPORT_INSTALLED);
+
+        assertEquals(RecognizerReadiness.PATH_ON_DEVICE, readiness.choosePath());
+
+        // Nothing left to wait for
+        readiness.recheckIfDownloading();
+        assertEquals(2, recognition.checks);
+
+    }
+
+    @Test
+    public void unsupportedLocale_usesDefault() {
+
+        FakeRecognition recognition = new FakeRecognition();
+        RecognizerReadiness readiness = checked(recognition);
+
+        recognition.answer(OnDeviceRecognition.SUPPORT_UNSUPPORTED);
+
+        assertEquals(RecognizerReadiness.PATH_DEFAULT, readiness.choosePath());
+        assertTrue(recognition.downloads.isEmpty());
+
+    }
+
+    @Test
+    public void unansweredOrFailedFirstCheck_keepsOldBehaviour() {
+
+        FakeRecognition recognition = new FakeRecognition();
+        RecognizerReadiness readiness = checked(recognition);
+
+        assertEquals(RecognizerReadiness.PATH_ON_DEVICE, readiness.choosePath());
+
+        recognition.pending.remove(0).onError(5);
+
+        assertEquals(RecognizerReadiness.STATUS_CHECK_FAILED, readiness.getStatus());
+        assertEquals(RecognizerReadiness.PATH_ON_DEVICE, readiness.choosePath());
+
+    }
+
+    @Test
+    public void noWayToCheck_usesOnDeviceWhereAvailable() {
+
+        FakeRecognition recognition = new FakeRecognition();
+        recognition.canCheck = false;
+
+        assertEquals(RecognizerReadiness.PATH_ON_DEVICE, checked(recognition).choosePath());
+        assertEquals(0, recognition.checks);
+
+        recognition.available = false;
+
+        assertEquals(RecognizerReadiness.STATUS_UNAVAILABLE, checked(recognition).getStatus());
+        assertEquals(RecognizerReadiness.PATH_DEFAULT, checked(recognition).choosePath());
+
+    }
+
+}
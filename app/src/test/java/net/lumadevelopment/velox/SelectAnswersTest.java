@@ -0,0 +1,45 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class SelectAnswersTest {
+
+    private static final List<String> PREDICTIONS = Arrays.asList("13", "30", "hello");
+
+    @Test
+    public void selectAnswers_prefersTopPrediction() {
+
+        // Top prediction is right, or nothing else matches
+        assertEquals(Collections.singletonList(13), SpeechManager.selectAnswers(PREDICTIONS, new float[]{0.9f, 0.8f, 0.1f}, 13));
+        assertEquals(Collections.singletonList(13), SpeechManager.selectAnswers(PREDICTIONS, new float[]{0.9f, 0.8f, 0.1f}, 7));
+
+        // No problem on screen
+        assertEquals(Collections.singletonList(13), SpeechManager.selectAnswers(PREDICTIONS, null, -1));
+
+    }
+
+    @Test
+    public void selectAnswers_takesConfidentAlternativeMatchingSolution() {
+
+        assertEquals(Collections.singletonList(30), SpeechManager.selectAnswers(PREDICTIONS, new float[]{0.6f, 0.5f, 0.1f}, 30));
+
+        // Not confident enough, or confidence not reported
+        assertEquals(Collections.singletonList(13), SpeechManager.selectAnswers(PREDICTIONS, new float[]{0.9f, 0.1f, 0.1f}, 30));
+        assertEquals(Collections.singletonList(13), SpeechManager.selectAnswers(PREDICTIONS, null, 30));
+
+    }
+
+    @Test
+    public void selectAnswers_skipsPredictionsWithoutNumbers() {
+
+        assertEquals(Collections.singletonList(30), SpeechManager.selectAnswers(Arrays.asList("hello", "30"), null, 13));
+        assertEquals(Collections.emptyList(), SpeechManager.selectAnswers(Collections.singletonList("hello"), null, 13));
+
+    }
+}
@@ -0,0 +1,82 @@
+package net.lumadevelopment.velox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class TraceBufferTest {
+
+    private static final String[] NAMES = {"update", "say \"hi\""};
+
+    // One Chrome trace event, as TraceBuffer writes it
+    private static final Pattern EVENT = Pattern.compile(
+            "\\{\"name\":\"((?:[^\"\\\\]|\\\\.)*)\",\"ph\":\"([BEi])\",\"ts\":(-?\\d+\\.\\d{3}),\"pid\":(\\d+),\"tid\":(\\d+)(,\"s\":\"t\")?}");
+
+    @Test
+    public void exportChromeJson_isValidTrace() throws IOException {
+
+        TraceBuffer buffer = new TraceBuffer(16);
+        buffer.record(TraceBuffer.PHASE_BEGIN, 0, 5_000_000L);
+        buffer.record(TraceBuffer.PHASE_INSTANT, 1, 5_001_500L);
+        buffer.record(TraceBuffer.PHASE_END, 0, 5_002_250L);
+
+        StringWriter out = new StringWriter();
+        buffer.exportChromeJson(NAMES, 42, out);
+        String json = out.toString();
+
+        assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+        assertTrue(json.trim().endsWith("]}"));
+
+        Matcher events = EVENT.matcher(json);
+
+        assertTrue(events.find());
+        assertEquals("update", events.group(1));
+        assertEquals("B", events.group(2));
+        assertEquals("0.000", events.group(3));
+        assertEquals("42", events.group(4));
+        assertEquals(String.valueOf(Thread.currentThread().getId()), events.group(5));
+
+        assertTrue(events.find());
+        assertEquals("say \\\"hi\\\"", events.group(1));
+        assertEquals("i", events.group(2));
+        assertEquals("1.500", events.group(3));
+        assertNotNull(events.group(6));
+
+        assertTrue(events.find());
+        assertEquals("E", events.group(2));
+        assertEquals("2.250", events.group(3));
+
+        assertFalse(events.find());
+
+    }
+
+    @Test
+    public void record_overwritesOldestWhenFull() throws IOException {
+
+        TraceBuffer buffer = new TraceBuffer(4);
+
+        for (int i = 0; i < 10; i++) {
+            buffer.record(TraceBuffer.PHASE_INSTANT, 0, i * 1000L);
+        }
+
+        assertEquals(4, buffer.size());
+
+        StringWriter out = new StringWriter();
+        buffer.exportChromeJson(NAMES, 1, out);
+        Matcher events = EVENT.matcher(out.toString());
+
+        // Events 6 to 9 survive, timestamps relative to event 6
+        for (int i = 0; i < 4; i++) {
+            assertTrue(events.find());
+            assertEquals(i + ".000", events.group(3));
+        }
+
+        assertFalse(events.find());
+
+    }
+}